@@ -0,0 +1,208 @@
+package com.peircean.glusterfs;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link AsynchronousFileChannel} over a {@link GlusterFileChannel}.
+ * <p/>
+ * Reads and writes are positional glfs_pread/glfs_pwrite calls run on the given executor, or on a shared pool of
+ * {@link #DEFAULT_THREADS} daemon threads when the channel is opened without one. Each running operation holds its
+ * thread until gfapi returns, so beyond that many, operations of such channels wait in the pool's queue; pass an
+ * executor to allow more in flight. Positional I/O doesn't touch the file pointer, so operations on one file don't
+ * have to wait for each other. Closing the channel waits for the operations already running against the
+ * file; those that haven't started yet fail with {@link AsynchronousCloseException}.
+ */
+@Getter(AccessLevel.PACKAGE)
+public class GlusterAsynchronousFileChannel extends AsynchronousFileChannel {
+    public static final int DEFAULT_THREADS = 8;
+
+    private static final ExecutorService defaultExecutor = Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gluster-async-io");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final GlusterFileChannel channel;
+    private final ExecutorService executor;
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed = false;
+
+    GlusterAsynchronousFileChannel(GlusterFileChannel channel, ExecutorService executor) {
+        this.channel = channel;
+        this.executor = null == executor ? defaultExecutor : executor;
+    }
+
+    @Override
+    public long size() throws IOException {
+        guardClosed();
+        return channel.size();
+    }
+
+    @Override
+    public AsynchronousFileChannel truncate(long size) throws IOException {
+        guardClosed();
+        channel.truncate(size);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        guardClosed();
+        channel.force(metaData);
+    }
+
+    @Override
+    public <A> void lock(long position, long size, boolean shared, A attachment, CompletionHandler<FileLock, ? super A> handler) {
+        throw new UnsupportedOperationException("Locking is not supported at this time");
+    }
+
+    @Override
+    public Future<FileLock> lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Locking is not supported at this time");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        throw new UnsupportedOperationException("Locking is not supported at this time");
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        if (null == handler) {
+            throw new NullPointerException("handler");
+        }
+        submit(readTask(dst, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst, long position) {
+        return submit(readTask(dst, position), null, null);
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        if (null == handler) {
+            throw new NullPointerException("handler");
+        }
+        submit(writeTask(src, position), attachment, handler);
+    }
+
+    @Override
+    public Future<Integer> write(ByteBuffer src, long position) {
+        return submit(writeTask(src, position), null, null);
+    }
+
+    Callable<Integer> readTask(final ByteBuffer dst, final long position) {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("Read-only buffer");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        if (!channel.getOptions().contains(StandardOpenOption.READ)) {
+            throw new NonReadableChannelException();
+        }
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                closeLock.readLock().lock();
+                try {
+                    guardOpen();
+                    return channel.read(dst, position);
+                } finally {
+                    closeLock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    Callable<Integer> writeTask(final ByteBuffer src, final long position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        if (!channel.getOptions().contains(StandardOpenOption.WRITE)) {
+            throw new NonWritableChannelException();
+        }
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                closeLock.readLock().lock();
+                try {
+                    guardOpen();
+                    return channel.write(src, position);
+                } finally {
+                    closeLock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs the task on the executor, handing its outcome to the handler if there is one.
+     */
+    <V, A> Future<V> submit(Callable<V> task, final A attachment, final CompletionHandler<V, ? super A> handler) {
+        FutureTask<V> future = new FutureTask<V>(task) {
+            @Override
+            protected void done() {
+                if (null == handler) {
+                    return;
+                }
+                try {
+                    handler.completed(get(), attachment);
+                } catch (ExecutionException e) {
+                    handler.failed(e.getCause(), attachment);
+                } catch (CancellationException | InterruptedException e) {
+                    handler.failed(e, attachment);
+                }
+            }
+        };
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.cancel(false);
+        }
+        return future;
+    }
+
+    void guardOpen() throws AsynchronousCloseException {
+        if (closed) {
+            throw new AsynchronousCloseException();
+        }
+    }
+
+    void guardClosed() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeLock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                channel.close();
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.structs.stat;
+
+import java.util.*;
+
+/**
+ * The result of {@link GlusterFileSystemProvider#readAttributes(java.nio.file.Path, String, java.nio.file.LinkOption...)}:
+ * the requested attributes of one stat, each decoded from the struct only when it is read.
+ * <p/>
+ * Attributes are requested the way {@link java.nio.file.Files#readAttributes(java.nio.file.Path, String,
+ * java.nio.file.LinkOption...)} describes, as an optional view name followed by a comma separated list of names or *.
+ * The basic, posix and unix views are supported; each includes the attributes of the one before it.
+ */
+class GlusterAttributeMap extends AbstractMap<String, Object> {
+    static final List<String> BASIC = Arrays.asList("lastModifiedTime", "lastAccessTime", "creationTime", "size",
+            "isRegularFile", "isDirectory", "isSymbolicLink", "isOther", "fileKey");
+    static final List<String> POSIX = concat(BASIC, "permissions", "owner", "group");
+    static final List<String> UNIX = concat(POSIX, "mode", "ino", "dev", "rdev", "nlink", "uid", "gid", "ctime");
+    static final Map<String, List<String>> VIEWS = new LinkedHashMap<String, List<String>>();
+
+    static {
+        VIEWS.put("basic", BASIC);
+        VIEWS.put("posix", POSIX);
+        VIEWS.put("unix", UNIX);
+    }
+
+    private final stat stat;
+    private final List<String> names;
+    private GlusterFileAttributes attributes;
+
+    GlusterAttributeMap(stat stat, List<String> names) {
+        this.stat = stat;
+        this.names = names;
+    }
+
+    /**
+     * The attribute names an attributes string asks for, in the order of the view.
+     *
+     * @throws UnsupportedOperationException if the view isn't one of basic, posix or unix
+     * @throws IllegalArgumentException      if a name isn't part of the view
+     */
+    static List<String> parse(String attributes) {
+        String view = "basic";
+        int colon = attributes.indexOf(':');
+        if (colon >= 0) {
+            view = attributes.substring(0, colon);
+            attributes = attributes.substring(colon + 1);
+        }
+        List<String> names = VIEWS.get(view);
+        if (null == names) {
+            throw new UnsupportedOperationException("View '" + view + "' not available");
+        }
+
+        Set<String> requested = new HashSet<String>(Arrays.asList(attributes.split(",")));
+        if (requested.contains("*")) {
+            return names;
+        }
+        for (String name : requested) {
+            if (!names.contains(name)) {
+                throw new IllegalArgumentException("'" + name + "' not recognized");
+            }
+        }
+        List<String> selected = new ArrayList<String>(requested.size());
+        for (String name : names) {
+            if (requested.contains(name)) {
+                selected.add(name);
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return names.contains(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return containsKey(key) ? decode((String) key) : null;
+    }
+
+    @Override
+    public int size() {
+        return names.size();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                final Iterator<String> iterator = names.iterator();
+                return new Iterator<Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        final String name = iterator.next();
+                        return new Entry<String, Object>() {
+                            @Override
+                            public String getKey() {
+                                return name;
+                            }
+
+                            @Override
+                            public Object getValue() {
+                                return decode(name);
+                            }
+
+                            @Override
+                            public Object setValue(Object value) {
+                                throw new UnsupportedOperationException();
+                            }
+
+                            @Override
+                            public boolean equals(Object o) {
+                                if (!(o instanceof Entry)) {
+                                    return false;
+                                }
+                                Entry<?, ?> entry = (Entry<?, ?>) o;
+                                Object value = getValue();
+                                return name.equals(entry.getKey())
+                                        && (null == value ? null == entry.getValue() : value.equals(entry.getValue()));
+                            }
+
+                            @Override
+                            public int hashCode() {
+                                Object value = getValue();
+                                return name.hashCode() ^ (null == value ? 0 : value.hashCode());
+                            }
+
+                            @Override
+                            public String toString() {
+                                return name + "=" + getValue();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return names.size();
+            }
+        };
+    }
+
+    Object decode(String name) {
+        switch (name) {
+            case "size":
+                return stat.st_size;
+            case "mode":
+                return stat.st_mode;
+            case "ino":
+                return stat.st_ino;
+            case "dev":
+                return stat.st_dev;
+            case "rdev":
+                return stat.st_rdev;
+            case "nlink":
+                return (int) stat.st_nlink;
+            case "uid":
+                return stat.st_uid;
+            case "gid":
+                return stat.st_gid;
+            case "ctime":
+                return GlusterFileAttributes.fileTime(stat.ctime, stat.ctime_nsec);
+        }
+
+        GlusterFileAttributes attributes = attributes();
+        switch (name) {
+            case "lastModifiedTime":
+                return attributes.lastModifiedTime();
+            case "lastAccessTime":
+                return attributes.lastAccessTime();
+            case "creationTime":
+                return attributes.creationTime();
+            case "isRegularFile":
+                return attributes.isRegularFile();
+            case "isDirectory":
+                return attributes.isDirectory();
+            case "isSymbolicLink":
+                return attributes.isSymbolicLink();
+            case "isOther":
+                return attributes.isOther();
+            case "fileKey":
+                return attributes.fileKey();
+            case "permissions":
+                return attributes.permissions();
+            case "owner":
+                return attributes.owner();
+            case "group":
+                return attributes.group();
+            default:
+                throw new IllegalArgumentException("'" + name + "' not recognized");
+        }
+    }
+
+    private GlusterFileAttributes attributes() {
+        if (null == attributes) {
+            attributes = GlusterFileAttributes.fromStat(stat);
+        }
+        return attributes;
+    }
+
+    private static List<String> concat(List<String> names, String... more) {
+        List<String> all = new ArrayList<String>(names);
+        all.addAll(Arrays.asList(more));
+        return Collections.unmodifiableList(all);
+    }
+}
@@ -0,0 +1,209 @@
+package com.peircean.glusterfs;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import sun.nio.ch.DirectBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Page aligned direct buffers shared by every channel, so that native memory handed to libgfapi is reused instead of
+ * being allocated for each call.
+ * <p/>
+ * Buffers come in power of two size classes from {@link #MIN_CLASS} to {@link #MAX_CLASS}; larger requests get a
+ * buffer of their own that is left to the garbage collector when released. Each thread keeps one released buffer of
+ * every class up to {@link #THREAD_CACHED_CLASS} for itself, anything else goes back to shared per-class queues as long
+ * as they hold less than {@link #getMaxPooled()} bytes.
+ */
+@Getter
+public class GlusterBufferPool {
+    public static final int ALIGNMENT = 4096;
+    public static final int MIN_CLASS = 4096;
+    public static final int MAX_CLASS = 4 * 1024 * 1024;
+    public static final int THREAD_CACHED_CLASS = 64 * 1024;
+    public static final long DEFAULT_MAX_POOLED = 64L * 1024 * 1024;
+
+    private static final GlusterBufferPool instance = new GlusterBufferPool(DEFAULT_MAX_POOLED);
+
+    @Getter(AccessLevel.NONE)
+    private final Queue<ByteBuffer>[] free;
+    @Getter(AccessLevel.NONE)
+    private final ThreadLocal<ByteBuffer[]> cache = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[sizeClass(THREAD_CACHED_CLASS) + 1];
+        }
+    };
+    private volatile long maxPooled;
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong pooled = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong inUse = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong allocated = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong hits = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong misses = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    GlusterBufferPool(long maxPooled) {
+        this.maxPooled = maxPooled;
+        free = new Queue[sizeClass(MAX_CLASS) + 1];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * The pool shared by every gluster channel in the JVM.
+     */
+    public static GlusterBufferPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * A cleared, page aligned direct buffer with at least size bytes of capacity and its limit at size.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Buffer size can't be negative: " + size);
+        }
+        ByteBuffer buffer = null;
+        if (size <= MAX_CLASS) {
+            int sizeClass = sizeClass(size);
+            ByteBuffer[] cached = cache.get();
+            if (sizeClass < cached.length && null != cached[sizeClass]) {
+                buffer = cached[sizeClass];
+                cached[sizeClass] = null;
+            } else {
+                buffer = free[sizeClass].poll();
+                if (null != buffer) {
+                    pooled.addAndGet(-buffer.capacity());
+                }
+            }
+            if (null == buffer) {
+                buffer = allocate(MIN_CLASS << sizeClass);
+            } else {
+                hits.incrementAndGet();
+            }
+        } else {
+            buffer = allocate(size);
+        }
+        inUse.addAndGet(buffer.capacity());
+        buffer.clear();
+        buffer.limit(size);
+        return buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Hands a buffer from {@link #acquire} back. The caller must not touch it afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (null == buffer) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        inUse.addAndGet(-capacity);
+        if (!pooledClass(buffer)) {
+            return;
+        }
+        int sizeClass = sizeClass(capacity);
+        ByteBuffer[] cached = cache.get();
+        if (sizeClass < cached.length && null == cached[sizeClass]) {
+            cached[sizeClass] = buffer;
+            return;
+        }
+        if (pooled.addAndGet(capacity) > maxPooled) {
+            pooled.addAndGet(-capacity);
+            return;
+        }
+        free[sizeClass].offer(buffer);
+    }
+
+    /**
+     * Sets how many bytes the shared queues may hold, dropping pooled buffers until they fit.
+     */
+    public void setMaxPooled(long maxPooled) {
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("Pool size can't be negative: " + maxPooled);
+        }
+        this.maxPooled = maxPooled;
+        for (int i = free.length - 1; i >= 0 && pooled.get() > maxPooled; i--) {
+            ByteBuffer buffer;
+            while (pooled.get() > maxPooled && null != (buffer = free[i].poll())) {
+                pooled.addAndGet(-buffer.capacity());
+            }
+        }
+    }
+
+    /**
+     * Bytes held by the shared queues, not counting the per thread caches.
+     */
+    public long getPooledBytes() {
+        return pooled.get();
+    }
+
+    /**
+     * Bytes handed out by {@link #acquire} and not released yet.
+     */
+    public long getInUseBytes() {
+        return inUse.get();
+    }
+
+    /**
+     * Bytes of native memory allocated by the pool since the JVM started.
+     */
+    public long getAllocatedBytes() {
+        return allocated.get();
+    }
+
+    /**
+     * Acquires served by a pooled buffer.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Acquires that had to allocate.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    ByteBuffer allocate(int size) {
+        misses.incrementAndGet();
+        allocated.addAndGet(size);
+        return allocateAligned(size);
+    }
+
+    /**
+     * A new direct buffer of size bytes starting on an {@link #ALIGNMENT} boundary, as O_DIRECT needs, that is not
+     * part of any pool.
+     */
+    public static ByteBuffer allocateAligned(int size) {
+        ByteBuffer raw = ByteBuffer.allocateDirect(size + ALIGNMENT - 1);
+        int offset = (int) ((ALIGNMENT - ((DirectBuffer) raw).address() % ALIGNMENT) % ALIGNMENT);
+        raw.position(offset);
+        raw.limit(offset + size);
+        return raw.slice();
+    }
+
+    boolean pooledClass(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        return buffer.isDirect() && !buffer.isReadOnly() && capacity >= MIN_CLASS && capacity <= MAX_CLASS
+                && Integer.bitCount(capacity) == 1 && 0 == ((DirectBuffer) buffer).address() % ALIGNMENT;
+    }
+
+    static int sizeClass(int size) {
+        if (size <= MIN_CLASS) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_CLASS);
+    }
+}
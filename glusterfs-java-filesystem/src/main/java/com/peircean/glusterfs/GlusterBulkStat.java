@@ -0,0 +1,226 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Attributes of many known paths of one {@link GlusterFileSystem}, fetched on up to {@link #getParallelism()} threads
+ * instead of one round trip after another.
+ * <p/>
+ * Paths are grouped by their parent directory and handed to the threads in batches of up to
+ * {@link #getBatchSize()}, so that the entries of a directory are looked up one after another relative to the same
+ * cached parent handle. Each path gets its own {@link Result}, holding either its attributes or the exception looking
+ * it up failed with. {@link #stat} waits for all of them; {@link #results} hands them out as they arrive.
+ */
+@Getter
+public class GlusterBulkStat {
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    @Getter(AccessLevel.NONE)
+    private final GlusterFileSystem fileSystem;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    GlusterBulkStat(GlusterFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    /**
+     * The outcome for one path.
+     */
+    @Data
+    public static class Result {
+        private final Path path;
+        private final PosixFileAttributes attributes;
+        private final IOException exception;
+
+        /**
+         * The attributes, or the exception looking them up failed with.
+         */
+        public PosixFileAttributes get() throws IOException {
+            if (null != exception) {
+                throw exception;
+            }
+            return attributes;
+        }
+    }
+
+    /**
+     * Results in the order they complete. {@link #next} blocks until the next one arrives; {@link #close} stops the
+     * lookups that haven't started yet and wakes up a caller waiting in {@link #next}.
+     */
+    public static class Results implements Closeable {
+        private static final Result CLOSED = new Result(null, null, null);
+
+        private final ExecutorService executor;
+        private final BlockingQueue<Result> queue;
+        private int remaining;
+        private volatile boolean closed;
+
+        Results(ExecutorService executor, BlockingQueue<Result> queue, int remaining) {
+            this.executor = executor;
+            this.queue = queue;
+            this.remaining = remaining;
+        }
+
+        /**
+         * The next result to complete.
+         *
+         * @return null once every path has had its result, or once the results have been closed
+         */
+        public synchronized Result next() throws InterruptedIOException {
+            if (remaining <= 0 || closed) {
+                return null;
+            }
+            try {
+                Result result = queue.take();
+                if (CLOSED == result || closed) {
+                    return null;
+                }
+                remaining--;
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for bulk stat results");
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            executor.shutdownNow();
+            queue.add(CLOSED);
+        }
+    }
+
+    /**
+     * The attributes of every path, in the order given; a path given more than once has a single entry.
+     */
+    public Map<Path, Result> stat(Collection<? extends Path> paths, LinkOption... options) throws IOException {
+        Map<Path, Result> results = new LinkedHashMap<Path, Result>();
+        for (Path path : paths) {
+            results.put(path, null);
+        }
+        Results stream = results(paths, options);
+        try {
+            Result result;
+            while (null != (result = stream.next())) {
+                results.put(result.getPath(), result);
+            }
+        } finally {
+            stream.close();
+        }
+        return results;
+    }
+
+    /**
+     * Starts looking up every path and returns at once; the caller should close the results when done with them.
+     *
+     * @throws ProviderMismatchException if a path doesn't belong to this file system
+     */
+    public Results results(Collection<? extends Path> paths, LinkOption... options) {
+        final boolean followLinks = !Arrays.asList(options).contains(LinkOption.NOFOLLOW_LINKS);
+        List<List<Path>> batches = batches(paths);
+        final BlockingQueue<Result> queue = new LinkedBlockingQueue<Result>();
+        ExecutorService executor = executor(batches.size());
+        for (final List<Path> batch : batches) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Path path : batch) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return;
+                        }
+                        queue.add(stat(path, followLinks));
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        return new Results(executor, queue, paths.size());
+    }
+
+    /**
+     * Sets how many threads look paths up at once.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets how many paths of the same directory one thread looks up in a row.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The paths grouped by parent directory, in the order each directory first appears, and split into batches of at
+     * most {@link #batchSize}.
+     */
+    List<List<Path>> batches(Collection<? extends Path> paths) {
+        Map<Path, List<Path>> directories = new LinkedHashMap<Path, List<Path>>();
+        for (Path path : paths) {
+            if (!fileSystem.equals(path.getFileSystem())) {
+                throw new ProviderMismatchException();
+            }
+            Path parent = path.getParent();
+            List<Path> entries = directories.get(parent);
+            if (null == entries) {
+                entries = new ArrayList<Path>();
+                directories.put(parent, entries);
+            }
+            entries.add(path);
+        }
+        List<List<Path>> batches = new ArrayList<List<Path>>();
+        for (List<Path> entries : directories.values()) {
+            for (int i = 0; i < entries.size(); i += batchSize) {
+                batches.add(entries.subList(i, Math.min(i + batchSize, entries.size())));
+            }
+        }
+        return batches;
+    }
+
+    Result stat(Path path, boolean followLinks) {
+        try {
+            stat stat = ((GlusterFileSystemProvider) fileSystem.provider()).lookupStat(path, followLinks);
+            if (null == stat) {
+                return new Result(path, null, GlusterErrno.lastError(path.toString(), null));
+            }
+            return new Result(path, GlusterFileAttributes.fromStat(stat), null);
+        } catch (Throwable e) {
+            // every path must get a result, or Results.next() would wait for it forever
+            return new Result(path, null, new IOException(e));
+        }
+    }
+
+    ExecutorService executor(int tasks) {
+        return Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks)), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gluster-bulk-stat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Alignment handling for channels opened with {@link GlusterFileOption#direct()}.
+ * <p/>
+ * O_DIRECT needs the memory address, the file offset and the length of every read and write to be multiples of
+ * {@link #ALIGNMENT}. Reads that aren't are widened to the enclosing aligned range and bounced through a pooled
+ * buffer. Writes from an unaligned buffer are bounced too, and a write of a partial block that ends the file is padded
+ * with zeros and the file truncated back to its real size afterwards. Any other unaligned write would have to read and
+ * rewrite the blocks around it, so it is refused with an {@link IllegalArgumentException} instead.
+ */
+class GlusterDirectIO {
+    public static final int ALIGNMENT = GlusterBufferPool.ALIGNMENT;
+
+    private final GlusterFileChannel channel;
+
+    GlusterDirectIO(GlusterFileChannel channel) {
+        this.channel = channel;
+    }
+
+    static boolean aligned(long value) {
+        return 0 == value % ALIGNMENT;
+    }
+
+    static boolean aligned(ByteBuffer buffer) {
+        return buffer.isDirect() && aligned(GlusterFileChannel.bufferAddress(buffer));
+    }
+
+    /**
+     * Reads into the buffer from offset, advancing its position.
+     *
+     * @return the number of bytes read, 0 at end of file, negative when the read fails
+     */
+    long read(ByteBuffer byteBuffer, long offset) {
+        int length = byteBuffer.remaining();
+        if (aligned(offset) && aligned(length) && aligned(byteBuffer)) {
+            long read = channel.glfsRead(GlusterFileChannel.bufferAddress(byteBuffer), length, offset);
+            if (read > 0) {
+                byteBuffer.position(byteBuffer.position() + (int) read);
+            }
+            return read;
+        }
+
+        long start = offset - offset % ALIGNMENT;
+        int skip = (int) (offset - start);
+        int size = roundUp(skip + length);
+        GlusterBufferPool pool = GlusterBufferPool.getInstance();
+        ByteBuffer staging = pool.acquire(size);
+        try {
+            long read = channel.glfsRead(GlusterFileChannel.bufferAddress(staging), size, start);
+            if (read <= skip) {
+                return Math.min(read, 0);
+            }
+            int useful = (int) Math.min(read - skip, length);
+            staging.limit(skip + useful).position(skip);
+            byteBuffer.put(staging);
+            return useful;
+        } finally {
+            pool.release(staging);
+        }
+    }
+
+    /**
+     * Writes the buffer at offset, or at the end of the file for {@link GlusterFileChannel#CURRENT_POSITION} in
+     * append mode, advancing its position.
+     *
+     * @return the number of bytes written, negative when the write fails
+     */
+    int write(ByteBuffer byteBuffer, long offset) {
+        int length = byteBuffer.remaining();
+        boolean append = GlusterFileChannel.CURRENT_POSITION == offset;
+        if (append && !aligned(length)) {
+            throw new IllegalArgumentException("O_DIRECT appends must be a multiple of " + ALIGNMENT + " bytes: " + length);
+        }
+        if (!append && !aligned(offset)) {
+            throw new IllegalArgumentException("O_DIRECT writes must start at a multiple of " + ALIGNMENT + " bytes: " + offset);
+        }
+        if (aligned(length) && aligned(byteBuffer)) {
+            int written = channel.glfsWrite(GlusterFileChannel.bufferAddress(byteBuffer), length, offset);
+            if (written > 0) {
+                byteBuffer.position(byteBuffer.position() + written);
+            }
+            return written;
+        }
+
+        int size = roundUp(length);
+        if (size != length) {
+            stat stat = new stat();
+            if (0 != GLFS.glfs_fstat(channel.getFileptr(), stat)) {
+                return -1;
+            }
+            if (offset + length < stat.st_size) {
+                throw new IllegalArgumentException("O_DIRECT writes must be a multiple of " + ALIGNMENT
+                        + " bytes unless they end the file: " + length + " bytes at " + offset);
+            }
+        }
+        GlusterBufferPool pool = GlusterBufferPool.getInstance();
+        ByteBuffer staging = pool.acquire(size);
+        try {
+            staging.put(byteBuffer.duplicate());
+            while (staging.hasRemaining()) {
+                staging.put((byte) 0);
+            }
+            staging.flip();
+            int written = channel.glfsWrite(GlusterFileChannel.bufferAddress(staging), size, offset);
+            if (written < 0) {
+                return written;
+            }
+            if (size != length && written == size && 0 != GLFS.glfs_ftruncate(channel.getFileptr(), offset + length)) {
+                return -1;
+            }
+            written = Math.min(written, length);
+            byteBuffer.position(byteBuffer.position() + written);
+            return written;
+        } finally {
+            pool.release(staging);
+        }
+    }
+
+    static int roundUp(int length) {
+        return (int) ((length + (long) ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT);
+    }
+}
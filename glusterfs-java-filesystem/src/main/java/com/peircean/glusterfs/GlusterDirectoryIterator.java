@@ -5,6 +5,7 @@ import com.peircean.libgfapi_jni.internal.structs.dirent;
 import lombok.Data;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.util.Iterator;
@@ -42,19 +43,24 @@ class GlusterDirectoryIterator<T> implements Iterator<GlusterPath> {
     }
 
     void advance() {
-        String name;
-        do {
-            current = new dirent();
-            long nextPtr = dirent.malloc(dirent.SIZE_OF);
-            GLFS.glfs_readdir_r(stream.getDirHandle(), current, nextPtr);
+        GlusterBufferPool pool = GlusterBufferPool.getInstance();
+        ByteBuffer entry = pool.acquire(dirent.SIZE_OF);
+        try {
+            long nextPtr = GlusterFileChannel.bufferAddress(entry);
+            String name;
+            do {
+                current = new dirent();
+                GLFS.glfs_readdir_r(stream.getDirHandle(), current, nextPtr);
 
-            next = new dirent();
-            dirent.memmove(next, nextPtr, dirent.SIZE_OF);
-            dirent.free(nextPtr);
+                next = new dirent();
+                dirent.memmove(next, nextPtr, dirent.SIZE_OF);
 
-            name = current.getName();
-            nextPath = (GlusterPath) stream.getDir().resolve(name);
-        } while (name.equals(".") || name.equals(".."));
+                name = current.getName();
+                nextPath = (GlusterPath) stream.getDir().resolve(name);
+            } while (name.equals(".") || name.equals(".."));
+        } finally {
+            pool.release(entry);
+        }
     }
 
     @Override
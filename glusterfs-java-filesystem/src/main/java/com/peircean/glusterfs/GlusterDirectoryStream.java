@@ -40,7 +40,13 @@ public class GlusterDirectoryStream implements DirectoryStream<Path> {
     public void open(GlusterPath path) {
         dir = path;
         if (dirHandle == 0) {
-            dirHandle = GLFS.glfs_opendir(path.getFileSystem().getVolptr(), path.getString());
+            dirHandle = GlusterHandleCache.opendir(path);
+            if (0 == dirHandle) {
+                dirHandle = GLFS.glfs_opendir(path.getFileSystem().getVolptr(), path.getString());
+            } else if (dirHandle < 0) {
+                // the directory is missing, which glfs_opendir would have reported as a null handle
+                dirHandle = 0;
+            }
         } else {
             throw new IllegalStateException("Already open!");
         }
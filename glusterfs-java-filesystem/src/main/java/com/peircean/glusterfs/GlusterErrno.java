@@ -0,0 +1,89 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns the errno left behind by a failed gfapi call into the exception the JDK's own providers throw for it, so that
+ * operations can make the call straight away instead of checking for every failure beforehand.
+ */
+class GlusterErrno {
+    public static final int EPERM = 1;
+    public static final int ENOENT = 2;
+    public static final int EACCES = 13;
+    public static final int EEXIST = 17;
+    public static final int ENOTDIR = 20;
+    public static final int EISDIR = 21;
+    public static final int ERANGE = 34;
+    public static final int ENOTEMPTY = 39;
+    public static final int ENODATA = 61;
+    public static final int ESTALE = 116;
+
+    private static final Map<Integer, String> messages = new HashMap<>();
+
+    static {
+        messages.put(EPERM, "Operation not permitted");
+        messages.put(ENOENT, "No such file or directory");
+        messages.put(5, "Input/output error");
+        messages.put(9, "Bad file descriptor");
+        messages.put(11, "Resource temporarily unavailable");
+        messages.put(12, "Cannot allocate memory");
+        messages.put(EACCES, "Permission denied");
+        messages.put(16, "Device or resource busy");
+        messages.put(EEXIST, "File exists");
+        messages.put(18, "Invalid cross-device link");
+        messages.put(ENOTDIR, "Not a directory");
+        messages.put(EISDIR, "Is a directory");
+        messages.put(22, "Invalid argument");
+        messages.put(27, "File too large");
+        messages.put(28, "No space left on device");
+        messages.put(30, "Read-only file system");
+        messages.put(ERANGE, "Numerical result out of range");
+        messages.put(36, "File name too long");
+        messages.put(ENOTEMPTY, "Directory not empty");
+        messages.put(40, "Too many levels of symbolic links");
+        messages.put(ENODATA, "No data available");
+        messages.put(95, "Operation not supported");
+        messages.put(107, "Transport endpoint is not connected");
+        messages.put(ESTALE, "Stale file handle");
+        messages.put(122, "Disk quota exceeded");
+    }
+
+    /**
+     * The exception for the calling thread's errno, which must be read right after the call that failed.
+     */
+    static IOException lastError(String file, String other) {
+        return exception(UtilJNI.errno(), file, other);
+    }
+
+    static IOException exception(int errno, String file, String other) {
+        switch (errno) {
+            case ENOENT:
+                return new NoSuchFileException(file, other, null);
+            case EEXIST:
+                return new FileAlreadyExistsException(file, other, null);
+            case ENOTEMPTY:
+                return new DirectoryNotEmptyException(file);
+            case ENOTDIR:
+                return new NotDirectoryException(file);
+            case EPERM:
+            case EACCES:
+                return new AccessDeniedException(file, other, null);
+            default:
+                return new FileSystemException(file, other, message(errno));
+        }
+    }
+
+    /**
+     * A description of errno itself; UtilJNI.strerror() describes whatever the thread's errno is by now, which other
+     * calls since the failure may have changed.
+     */
+    static String message(int errno) {
+        String message = messages.get(errno);
+        return null == message ? "errno " + errno : message + " (errno " + errno + ")";
+    }
+}
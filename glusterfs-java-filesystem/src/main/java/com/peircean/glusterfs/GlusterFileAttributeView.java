@@ -0,0 +1,237 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import com.peircean.libgfapi_jni.internal.structs.timespec;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.*;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The basic and posix attribute view of a {@link GlusterPath}, returned by
+ * {@link GlusterFileSystemProvider#getFileAttributeView}.
+ * <p/>
+ * {@link #setAttributes} changes any mix of permissions, owner, group and times at once. When following links this is
+ * a single glfs_h_setattrs on the path's cached handle; otherwise, or when the path has no handle, it takes one
+ * glfs_chmod, glfs_chown and glfs_utimens for each kind of attribute being changed. Times are set to the nanosecond.
+ */
+@Getter(AccessLevel.PACKAGE)
+public class GlusterFileAttributeView implements PosixFileAttributeView {
+    public static final int SET_ATTR_MODE = 0x1;
+    public static final int SET_ATTR_UID = 0x2;
+    public static final int SET_ATTR_GID = 0x4;
+    public static final int SET_ATTR_ATIME = 0x10;
+    public static final int SET_ATTR_MTIME = 0x20;
+
+    /**
+     * tv_nsec that leaves a time as it is in utimensat.
+     */
+    static final long UTIME_OMIT = (1L << 30) - 2;
+
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFLNK = 0120000;
+
+    private final GlusterPath path;
+    private final boolean followLinks;
+    @Getter(AccessLevel.NONE)
+    private final String name;
+
+    GlusterFileAttributeView(GlusterPath path, boolean followLinks) {
+        this(path, followLinks, "posix");
+    }
+
+    GlusterFileAttributeView(GlusterPath path, boolean followLinks, String name) {
+        this.path = path;
+        this.followLinks = followLinks;
+        this.name = name;
+    }
+
+    /**
+     * The view asked for as viewClass, named after it: "basic", "owner" or "posix".
+     */
+    static GlusterFileAttributeView of(GlusterPath path, boolean followLinks, Class<?> viewClass) {
+        if (BasicFileAttributeView.class.equals(viewClass)) {
+            return new GlusterFileAttributeView(path, followLinks, "basic");
+        }
+        if (FileOwnerAttributeView.class.equals(viewClass)) {
+            return new GlusterFileAttributeView(path, followLinks, "owner");
+        }
+        return new GlusterFileAttributeView(path, followLinks);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public PosixFileAttributes readAttributes() throws IOException {
+        if (followLinks) {
+            return provider().readAttributes(path, PosixFileAttributes.class);
+        }
+        return provider().readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Sets the modification and access times; the creation time can't be set and is ignored.
+     */
+    @Override
+    public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
+        setAttributes(null, null, null, lastModifiedTime, lastAccessTime);
+    }
+
+    @Override
+    public void setPermissions(Set<PosixFilePermission> perms) throws IOException {
+        if (null == perms) {
+            throw new NullPointerException("Permissions can't be null");
+        }
+        setAttributes(perms, null, null, null, null);
+    }
+
+    @Override
+    public UserPrincipal getOwner() throws IOException {
+        return readAttributes().owner();
+    }
+
+    @Override
+    public void setOwner(UserPrincipal owner) throws IOException {
+        if (null == owner) {
+            throw new NullPointerException("Owner can't be null");
+        }
+        setAttributes(null, owner, null, null, null);
+    }
+
+    @Override
+    public void setGroup(GroupPrincipal group) throws IOException {
+        if (null == group) {
+            throw new NullPointerException("Group can't be null");
+        }
+        setAttributes(null, null, group, null, null);
+    }
+
+    /**
+     * Sets every attribute that isn't null in as few calls as possible. Owners and groups are named by their numeric
+     * id, as {@link GlusterFileAttributes#owner()} and {@link GlusterFileAttributes#group()} name them.
+     */
+    public void setAttributes(Set<PosixFilePermission> permissions, UserPrincipal owner, GroupPrincipal group,
+                              FileTime lastModifiedTime, FileTime lastAccessTime) throws IOException {
+        stat stat = new stat();
+        int valid = 0;
+        if (null != permissions) {
+            stat.st_mode = GlusterFileAttributes.parseAttrs(PosixFilePermissions.asFileAttribute(permissions));
+            valid |= SET_ATTR_MODE;
+        }
+        if (null != owner) {
+            stat.st_uid = id(owner);
+            valid |= SET_ATTR_UID;
+        }
+        if (null != group) {
+            stat.st_gid = id(group);
+            valid |= SET_ATTR_GID;
+        }
+        if (null != lastModifiedTime) {
+            long nanos = lastModifiedTime.to(TimeUnit.NANOSECONDS);
+            stat.mtime = seconds(nanos);
+            stat.mtime_nsec = nanos - TimeUnit.SECONDS.toNanos(stat.mtime);
+            valid |= SET_ATTR_MTIME;
+        }
+        if (null != lastAccessTime) {
+            long nanos = lastAccessTime.to(TimeUnit.NANOSECONDS);
+            stat.atime = seconds(nanos);
+            stat.atime_nsec = nanos - TimeUnit.SECONDS.toNanos(stat.atime);
+            valid |= SET_ATTR_ATIME;
+        }
+        if (0 == valid) {
+            return;
+        }
+        setattrs(stat, valid);
+    }
+
+    /**
+     * Sets the fields of stat picked by valid, the SET_ATTR_* flags, in as few calls as possible. Unlike
+     * {@link #setAttributes} this takes the whole mode, setuid, setgid and sticky bits included.
+     */
+    void setattrs(stat stat, int valid) throws IOException {
+        try {
+            if (!followLinks || !GlusterHandleCache.setattrs(path, stat, valid)) {
+                setattrsByPath(stat, valid);
+            }
+        } finally {
+            GlusterStatCache.invalidate(path);
+        }
+    }
+
+    void setattrsByPath(stat stat, int valid) throws IOException {
+        long volptr = ((GlusterFileSystem) path.getFileSystem()).getVolptr();
+        String pathString = path.getString();
+
+        if (0 != (valid & SET_ATTR_MODE)) {
+            if (!followLinks) {
+                guardNotSymbolicLink();
+            }
+            if (GLFS.glfs_chmod(volptr, pathString, stat.st_mode) < 0) {
+                throw GlusterErrno.lastError(pathString, null);
+            }
+        }
+
+        if (0 != (valid & (SET_ATTR_UID | SET_ATTR_GID))) {
+            int uid = 0 != (valid & SET_ATTR_UID) ? stat.st_uid : -1;
+            int gid = 0 != (valid & SET_ATTR_GID) ? stat.st_gid : -1;
+            int ret = followLinks ? GLFS.glfs_chown(volptr, pathString, uid, gid)
+                    : GLFS.glfs_lchown(volptr, pathString, uid, gid);
+            if (ret < 0) {
+                throw GlusterErrno.lastError(pathString, null);
+            }
+        }
+
+        if (0 != (valid & (SET_ATTR_ATIME | SET_ATTR_MTIME))) {
+            timespec[] times = {new timespec(), new timespec()};
+            times[0].tv_sec = stat.atime;
+            times[0].tv_nsec = 0 != (valid & SET_ATTR_ATIME) ? stat.atime_nsec : UTIME_OMIT;
+            times[1].tv_sec = stat.mtime;
+            times[1].tv_nsec = 0 != (valid & SET_ATTR_MTIME) ? stat.mtime_nsec : UTIME_OMIT;
+            int ret = followLinks ? GLFS.glfs_utimens(volptr, pathString, times)
+                    : GLFS.glfs_lutimens(volptr, pathString, times);
+            if (ret < 0) {
+                throw GlusterErrno.lastError(pathString, null);
+            }
+        }
+    }
+
+    private void guardNotSymbolicLink() throws IOException {
+        stat current = provider().lookupStat(path, false);
+        if (null == current) {
+            throw new NoSuchFileException(path.toString());
+        }
+        if (S_IFLNK == (current.st_mode & S_IFMT)) {
+            throw new FileSystemException(path.toString(), null, "Can't change the permissions of a symbolic link");
+        }
+    }
+
+    /**
+     * Whole seconds of a time in nanoseconds, rounded down so that the remaining nanoseconds are never negative.
+     */
+    static long seconds(long nanos) {
+        long seconds = nanos / TimeUnit.SECONDS.toNanos(1);
+        return nanos < 0 && 0 != nanos % TimeUnit.SECONDS.toNanos(1) ? seconds - 1 : seconds;
+    }
+
+    static int id(UserPrincipal principal) throws UserPrincipalNotFoundException {
+        try {
+            return Integer.parseInt(principal.getName());
+        } catch (NumberFormatException e) {
+            throw new UserPrincipalNotFoundException(principal.getName());
+        }
+    }
+
+    private GlusterFileSystemProvider provider() {
+        return (GlusterFileSystemProvider) path.getFileSystem().provider();
+    }
+}
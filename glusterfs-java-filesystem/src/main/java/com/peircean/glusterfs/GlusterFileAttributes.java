@@ -1,5 +1,6 @@
 package com.peircean.glusterfs;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import com.peircean.libgfapi_jni.internal.structs.stat;
 
@@ -8,8 +9,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The attributes of one stat. Times keep the nanoseconds the volume reports, so two changes within the same second
+ * can be told apart.
+ */
 @Data
+@AllArgsConstructor
 public class GlusterFileAttributes implements PosixFileAttributes {
     private static Map<Integer, PosixFilePermission> modeToPerms = new HashMap<Integer, PosixFilePermission>();
     private static Map<PosixFilePermission, Integer> permsToMode;
@@ -30,10 +37,22 @@ public class GlusterFileAttributes implements PosixFileAttributes {
 
     private final int mode, uid, gid;
     private final long size, atime, ctime, mtime, inode;
+    private final long atimeNsec, ctimeNsec, mtimeNsec;
+
+    /**
+     * Attributes with times in whole seconds.
+     */
+    public GlusterFileAttributes(int mode, int uid, int gid, long size, long atime, long ctime, long mtime, long inode) {
+        this(mode, uid, gid, size, atime, ctime, mtime, inode, 0, 0, 0);
+    }
 
     public static GlusterFileAttributes fromStat(stat stat) {
         return new GlusterFileAttributes(stat.st_mode, stat.st_uid, stat.st_gid, stat.st_size,
-                stat.atime, stat.ctime, stat.mtime, stat.st_ino);
+                stat.atime, stat.ctime, stat.mtime, stat.st_ino, stat.atime_nsec, stat.ctime_nsec, stat.mtime_nsec);
+    }
+
+    static FileTime fileTime(long seconds, long nanoseconds) {
+        return FileTime.from(TimeUnit.SECONDS.toNanos(seconds) + nanoseconds, TimeUnit.NANOSECONDS);
     }
 
     public static int parseAttrs(FileAttribute<?>... attrs) {
@@ -95,17 +114,27 @@ public class GlusterFileAttributes implements PosixFileAttributes {
 
     @Override
     public FileTime lastModifiedTime() {
-        return FileTime.fromMillis(mtime * 1000);
+        return fileTime(mtime, mtimeNsec);
     }
 
     @Override
     public FileTime lastAccessTime() {
-        return FileTime.fromMillis(atime * 1000);
+        return fileTime(atime, atimeNsec);
     }
 
+    /**
+     * Gluster keeps no birth time, so this is the status change time, as {@link #changeTime()}.
+     */
     @Override
     public FileTime creationTime() {
-        return FileTime.fromMillis(ctime * 1000);
+        return changeTime();
+    }
+
+    /**
+     * The last time the file's content or attributes changed.
+     */
+    public FileTime changeTime() {
+        return fileTime(ctime, ctimeNsec);
     }
 
     @Override
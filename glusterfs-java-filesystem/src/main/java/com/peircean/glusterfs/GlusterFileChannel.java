@@ -7,9 +7,11 @@ import com.peircean.libgfapi_jni.internal.structs.stat;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import sun.nio.ch.DirectBuffer;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.*;
 import java.nio.file.FileAlreadyExistsException;
@@ -19,6 +21,7 @@ import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="http://about.me/louiszuckerman">Louis Zuckerman</a>
@@ -49,13 +52,42 @@ public class GlusterFileChannel extends FileChannel {
 		perms.put(PosixFilePermission.OWNER_READ, 0400);
 	}
 
+	static final long CURRENT_POSITION = -1;
+	static final int IOV_MAX = 1024;
+	static final int IOVEC_SIZE = 16; // sizeof(struct iovec) on LP64
+	// GlusterOpenOption doesn't have it; this is the x86 and amd64 Linux value, see GlusterFileOption.direct()
+	static final int O_DIRECT = 040000;
+	static final int SEEK_SET = 0;
+	static final int SEEK_DATA = 3;
+	static final int SEEK_HOLE = 4;
+	/**
+	 * Transfers shorter than this are copied without looking for holes, which costs two glfs_lseeks up front.
+	 */
+	static final long MIN_SPARSE_TRANSFER = 1024 * 1024;
+
 	private GlusterFileSystem fileSystem;
 	private GlusterPath path;
 	private Set<? extends OpenOption> options = new HashSet<>();
 	private FileAttribute<?> attrs[] = null;
 	private long fileptr;
 	private long position;
+	/**
+	 * Set when reads or writes at {@link #position} were made positionally, leaving the file pointer behind; it is
+	 * moved with glfs_lseek only before the next call that uses it.
+	 */
+	private boolean offsetStale;
+	/**
+	 * Held by every call that moves or uses the file pointer, from putting it in place to the call itself.
+	 */
+	private final Object positionLock = new Object();
 	private boolean closed = false;
+	private GlusterReadAhead readAhead;
+	private GlusterWriteBehind writeBehind;
+	private GlusterDirectIO directIO;
+	private List<GlusterMappedRegion> mappings = new LinkedList<>();
+	private long statCache = GlusterFileOption.DEFAULT_STAT_CACHE;
+	private stat snapshot;
+	private long snapshotTime;
 
 	void init(GlusterFileSystem fileSystem, Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
 		this.fileSystem = fileSystem;
@@ -65,6 +97,26 @@ public class GlusterFileChannel extends FileChannel {
 		this.path = (GlusterPath) path;
 		this.options = options;
 
+		long preallocate = 0;
+		for (OpenOption o : options) {
+			if (!(o instanceof GlusterFileOption)) {
+				continue;
+			}
+			GlusterFileOption option = (GlusterFileOption) o;
+			if (GlusterFileOption.Type.READ_AHEAD == option.getType()) {
+				readAhead = new GlusterReadAhead(this, (int) option.getSize());
+			} else if (GlusterFileOption.Type.WRITE_BEHIND == option.getType()) {
+				writeBehind = new GlusterWriteBehind(this, (int) option.getSize(), option.getInterval(),
+						options.contains(StandardOpenOption.APPEND));
+			} else if (GlusterFileOption.Type.PREALLOCATE == option.getType()) {
+				preallocate = option.getSize();
+			} else if (GlusterFileOption.Type.STAT_CACHE == option.getType()) {
+				statCache = option.getInterval();
+			} else if (GlusterFileOption.Type.DIRECT == option.getType()) {
+				directIO = new GlusterDirectIO(this);
+			}
+		}
+
 		int flags = parseOptions(options);
 		int mode = GlusterFileAttributes.parseAttrs(attrs);
 
@@ -79,17 +131,36 @@ public class GlusterFileChannel extends FileChannel {
 		}
 
 		if (0 >= fileptr) {
-			fileptr = GLFS.glfs_open(fileSystem.getVolptr(), pathString, flags);
+			fileptr = GlusterHandleCache.open(path, flags);
+			if (0 == fileptr) {
+				fileptr = GLFS.glfs_open(fileSystem.getVolptr(), pathString, flags);
+			}
 		}
 
 		if (0 >= fileptr) {
 			throw new IOException("Unable to create or open file '" + pathString + "' on volume '" + fileSystem.toString() + "'");
 		}
+
+		if (preallocate > 0 && 0 != GLFS.glfs_fallocate(fileptr, 1, 0, preallocate)) {
+			String error = UtilJNI.strerror();
+			GLFS.glfs_close(fileptr);
+			throw new IOException("Unable to preallocate " + preallocate + " bytes for '" + pathString + "': " + error);
+		}
+
+		if (options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND)) {
+			GlusterStatCache.invalidate(path);
+		}
 	}
 
 	int parseOptions(Set<? extends OpenOption> options) {
 		int opt = 0;
 		for (OpenOption o : options) {
+			if (o instanceof GlusterFileOption) {
+				if (GlusterFileOption.Type.DIRECT == ((GlusterFileOption) o).getType()) {
+					opt |= O_DIRECT;
+				}
+				continue;
+			}
 			if (!optionMap.containsKey(o)) {
 				throw new UnsupportedOperationException("Option " + o + " is not supported at this time");
 			}
@@ -101,16 +172,183 @@ public class GlusterFileChannel extends FileChannel {
 	@Override
 	public int read(ByteBuffer byteBuffer) throws IOException {
 		guardClosed();
-		byte[] bytes = byteBuffer.array();
-		long read = GLFS.glfs_read(fileptr, bytes, bytes.length, 0);
+		flushWriteBehind();
+		int remaining = byteBuffer.remaining();
+		long read;
+		if (null != readAhead) {
+			read = readAhead.read(byteBuffer, position);
+			if (read > 0) {
+				offsetStale = true;
+			}
+		} else {
+			read = readBuffer(byteBuffer);
+		}
 		if (read < 0) {
 			throw new IOException(UtilJNI.strerror());
 		}
+		if (0 == read && remaining > 0) {
+			return -1;
+		}
 		position += read;
-		byteBuffer.position((int)read);
 		return (int) read;
 	}
 
+	/**
+	 * Reads into the remaining space of the buffer and advances its position by the number of bytes read.
+	 * Direct buffers are read into straight from their native address, anything else goes through a direct
+	 * buffer from the {@link GlusterBufferPool} rather than having JNI pin or copy the array.
+	 */
+	long readBuffer(ByteBuffer byteBuffer) {
+		return readBuffer(byteBuffer, CURRENT_POSITION);
+	}
+
+	/**
+	 * Like {@link #readBuffer(ByteBuffer)} but reads with glfs_pread at the given file offset, leaving the
+	 * file pointer alone, unless the offset is {@link #CURRENT_POSITION}.
+	 */
+	long readBuffer(ByteBuffer byteBuffer, long offset) {
+		if (null != directIO) {
+			return readDirect(byteBuffer, offset);
+		}
+		int remaining = byteBuffer.remaining();
+		if (byteBuffer.isDirect()) {
+			long read = glfsRead(bufferAddress(byteBuffer), remaining, offset);
+			if (read > 0) {
+				byteBuffer.position(byteBuffer.position() + (int) read);
+			}
+			return read;
+		}
+		// heap buffers are staged at most MAX_CLASS at a time, so a huge array doesn't cost as much direct memory
+		GlusterBufferPool pool = GlusterBufferPool.getInstance();
+		ByteBuffer staging = pool.acquire(Math.min(remaining, GlusterBufferPool.MAX_CLASS));
+		try {
+			long total = 0;
+			do {
+				int count = Math.min(byteBuffer.remaining(), staging.capacity());
+				staging.clear();
+				long read = glfsRead(bufferAddress(staging), count, CURRENT_POSITION == offset ? offset : offset + total);
+				if (read <= 0) {
+					return 0 == total ? read : total;
+				}
+				staging.limit((int) read);
+				byteBuffer.put(staging);
+				total += read;
+				if (read < count) {
+					break;
+				}
+			} while (byteBuffer.hasRemaining());
+			return total;
+		} finally {
+			pool.release(staging);
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer and advances its position by the number of bytes written.
+	 */
+	int writeBuffer(ByteBuffer byteBuffer) {
+		return writeBuffer(byteBuffer, CURRENT_POSITION);
+	}
+
+	/**
+	 * Like {@link #writeBuffer(ByteBuffer)} but writes with glfs_pwrite at the given file offset, leaving the
+	 * file pointer alone, unless the offset is {@link #CURRENT_POSITION}.
+	 */
+	int writeBuffer(ByteBuffer byteBuffer, long offset) {
+		if (null != directIO) {
+			return writeDirect(byteBuffer, offset);
+		}
+		int remaining = byteBuffer.remaining();
+		int written;
+		if (byteBuffer.isDirect()) {
+			written = glfsWrite(bufferAddress(byteBuffer), remaining, offset);
+		} else {
+			// staged at most MAX_CLASS at a time, like reads
+			GlusterBufferPool pool = GlusterBufferPool.getInstance();
+			ByteBuffer staging = pool.acquire(Math.min(remaining, GlusterBufferPool.MAX_CLASS));
+			try {
+				written = 0;
+				do {
+					ByteBuffer chunk = byteBuffer.duplicate();
+					chunk.position(chunk.position() + written);
+					chunk.limit(chunk.position() + Math.min(chunk.remaining(), staging.capacity()));
+					int count = chunk.remaining();
+					staging.clear();
+					staging.put(chunk);
+					staging.flip();
+					int ret = glfsWrite(bufferAddress(staging), count, CURRENT_POSITION == offset ? offset : offset + written);
+					if (ret <= 0) {
+						written = 0 == written ? ret : written;
+						break;
+					}
+					written += ret;
+					if (ret < count) {
+						break;
+					}
+				} while (written < remaining);
+			} finally {
+				pool.release(staging);
+			}
+		}
+		if (written > 0) {
+			byteBuffer.position(byteBuffer.position() + written);
+			written(offset, written);
+		}
+		return written;
+	}
+
+	/**
+	 * O_DIRECT reads are always positional, so that {@link GlusterDirectIO} can widen them to aligned offsets; reads
+	 * at the file pointer move it along afterwards.
+	 */
+	long readDirect(ByteBuffer byteBuffer, long offset) {
+		boolean current = CURRENT_POSITION == offset;
+		long read = directIO.read(byteBuffer, current ? position : offset);
+		if (current && read > 0) {
+			offsetStale = true;
+		}
+		return read;
+	}
+
+	int writeDirect(ByteBuffer byteBuffer, long offset) {
+		boolean current = CURRENT_POSITION == offset && !options.contains(StandardOpenOption.APPEND);
+		int written = directIO.write(byteBuffer, current ? position : offset);
+		if (written > 0) {
+			written(offset, written);
+			if (current) {
+				offsetStale = true;
+			}
+		}
+		return written;
+	}
+
+	long glfsRead(long address, int count, long offset) {
+		if (CURRENT_POSITION == offset) {
+			synchronized (positionLock) {
+				syncOffset();
+				return GLFS.glfs_read(fileptr, address, count, 0);
+			}
+		}
+		return GLFS.glfs_pread(fileptr, address, count, offset, 0);
+	}
+
+	int glfsWrite(long address, int count, long offset) {
+		if (CURRENT_POSITION == offset) {
+			synchronized (positionLock) {
+				syncOffset();
+				return GLFS.glfs_write(fileptr, address, count, 0);
+			}
+		}
+		return GLFS.glfs_pwrite(fileptr, address, count, offset, 0);
+	}
+
+	/**
+	 * Native address of the first remaining byte of a direct buffer.
+	 */
+	static long bufferAddress(ByteBuffer byteBuffer) {
+		return ((DirectBuffer) byteBuffer).address() + byteBuffer.position();
+	}
+
 	@Override
 	public long read(ByteBuffer[] byteBuffers, int offset, int length) throws IOException {
 		guardClosed();
@@ -124,6 +362,7 @@ public class GlusterFileChannel extends FileChannel {
 			throw new NonReadableChannelException();
 		}
 
+		flushWriteBehind();
 		long totalRead = 0L;
 		try {
 			totalRead = readHelper(byteBuffers, offset, length);
@@ -135,43 +374,232 @@ public class GlusterFileChannel extends FileChannel {
 		return totalRead;
 	}
 
+	/**
+	 * Scatters one glfs_readv across the buffers. Direct buffers are read into in place, heap buffers are
+	 * staged through pooled direct buffers so that the whole read is still a single native call.
+	 */
 	long readHelper(ByteBuffer[] byteBuffers, int offset, int length) throws IOException {
-		long totalRead = 0L;
-		boolean endOfStream = false;
-		for (int i = offset; i < length + offset && !endOfStream; i++) {
-			byte[] bytes = byteBuffers[i].array();
-			int remaining;
-			while ((remaining = byteBuffers[i].remaining()) > 0) {
-				long read = GLFS.glfs_read(fileptr, bytes, remaining, 0);
-				if (read < 0) {
-					throw new IOException(UtilJNI.strerror());
+		if (null != directIO) {
+			return readDirect(byteBuffers, offset, length);
+		}
+		int count = Math.min(length, IOV_MAX);
+		ByteBuffer[] targets = directTargets(byteBuffers, offset, count, false);
+		ByteBuffer iov = iovec(targets);
+		try {
+			long requested = 0L;
+			for (ByteBuffer target : targets) {
+				requested += target.remaining();
+			}
+
+			long read;
+			synchronized (positionLock) {
+				syncOffset();
+				read = GLFS.glfs_readv(fileptr, bufferAddress(iov), count, 0);
+			}
+			if (read < 0) {
+				throw new IOException(UtilJNI.strerror());
+			}
+			if (0 == read && requested > 0) {
+				return -1;
+			}
+
+			long left = read;
+			for (int i = 0; i < count && left > 0; i++) {
+				ByteBuffer buffer = byteBuffers[offset + i];
+				int filled = (int) Math.min(buffer.remaining(), left);
+				if (targets[i] == buffer) {
+					buffer.position(buffer.position() + filled);
+				} else {
+					targets[i].limit(filled);
+					buffer.put(targets[i]);
 				}
-				totalRead += read;
-				byteBuffers[i].position((int) read);
-				if (0 == read) {
-					endOfStream = true;
-					break;
+				left -= filled;
+			}
+			return read;
+		} finally {
+			releaseTargets(byteBuffers, offset, targets, iov);
+		}
+	}
+
+	/**
+	 * Gathers the buffers into one glfs_writev and advances their positions by what was written.
+	 */
+	long writeHelper(ByteBuffer[] byteBuffers, int offset, int length) throws IOException {
+		if (null != directIO) {
+			return writeDirect(byteBuffers, offset, length);
+		}
+		int count = Math.min(length, IOV_MAX);
+		ByteBuffer[] sources = directTargets(byteBuffers, offset, count, true);
+		ByteBuffer iov = iovec(sources);
+		long written;
+		try {
+			synchronized (positionLock) {
+				syncOffset();
+				written = GLFS.glfs_writev(fileptr, bufferAddress(iov), count, 0);
+			}
+		} finally {
+			releaseTargets(byteBuffers, offset, sources, iov);
+		}
+		if (written < 0) {
+			throw new IOException(UtilJNI.strerror());
+		}
+		written(CURRENT_POSITION, written);
+
+		long left = written;
+		for (int i = offset; i < offset + count && left > 0; i++) {
+			int drained = (int) Math.min(byteBuffers[i].remaining(), left);
+			byteBuffers[i].position(byteBuffers[i].position() + drained);
+			left -= drained;
+		}
+		return written;
+	}
+
+	/**
+	 * O_DIRECT scatter reads go through one pooled buffer, so alignment only has to be dealt with once.
+	 */
+	long readDirect(ByteBuffer[] byteBuffers, int offset, int length) throws IOException {
+		GlusterBufferPool pool = GlusterBufferPool.getInstance();
+		ByteBuffer staging = pool.acquire((int) Math.min(remaining(byteBuffers, offset, length), GlusterBufferPool.MAX_CLASS));
+		try {
+			long read = readDirect(staging, CURRENT_POSITION);
+			if (read < 0) {
+				throw new IOException(UtilJNI.strerror());
+			}
+			if (0 == read && staging.hasRemaining()) {
+				return -1;
+			}
+			staging.flip();
+			for (int i = offset; i < offset + length && staging.hasRemaining(); i++) {
+				ByteBuffer slice = staging.duplicate();
+				slice.limit(slice.position() + Math.min(byteBuffers[i].remaining(), slice.remaining()));
+				byteBuffers[i].put(slice);
+				staging.position(slice.position());
+			}
+			return read;
+		} finally {
+			pool.release(staging);
+		}
+	}
+
+	/**
+	 * O_DIRECT gather writes go through one pooled buffer, so alignment only has to be dealt with once.
+	 */
+	long writeDirect(ByteBuffer[] byteBuffers, int offset, int length) throws IOException {
+		GlusterBufferPool pool = GlusterBufferPool.getInstance();
+		ByteBuffer staging = pool.acquire((int) Math.min(remaining(byteBuffers, offset, length), GlusterBufferPool.MAX_CLASS));
+		try {
+			for (int i = offset; i < offset + length && staging.hasRemaining(); i++) {
+				ByteBuffer slice = byteBuffers[i].duplicate();
+				slice.limit(slice.position() + Math.min(slice.remaining(), staging.remaining()));
+				staging.put(slice);
+			}
+			staging.flip();
+			long written = writeDirect(staging, CURRENT_POSITION);
+			if (written < 0) {
+				throw new IOException(UtilJNI.strerror());
+			}
+			long left = written;
+			for (int i = offset; i < offset + length && left > 0; i++) {
+				int drained = (int) Math.min(byteBuffers[i].remaining(), left);
+				byteBuffers[i].position(byteBuffers[i].position() + drained);
+				left -= drained;
+			}
+			return written;
+		} finally {
+			pool.release(staging);
+		}
+	}
+
+	static long remaining(ByteBuffer[] byteBuffers, int offset, int length) {
+		long remaining = 0;
+		for (int i = offset; i < offset + length; i++) {
+			remaining += byteBuffers[i].remaining();
+		}
+		return remaining;
+	}
+
+	/**
+	 * Direct buffers are used as they are, anything else is replaced by a pooled direct buffer of the same
+	 * remaining size which holds a copy of the content when it is going to be written.
+	 */
+	ByteBuffer[] directTargets(ByteBuffer[] byteBuffers, int offset, int count, boolean copyContent) {
+		ByteBuffer[] targets = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			ByteBuffer buffer = byteBuffers[offset + i];
+			if (buffer.isDirect()) {
+				targets[i] = buffer;
+			} else {
+				targets[i] = GlusterBufferPool.getInstance().acquire(buffer.remaining());
+				if (copyContent) {
+					targets[i].put(buffer.duplicate());
+					targets[i].flip();
 				}
 			}
 		}
+		return targets;
+	}
 
-		if (endOfStream && totalRead == 0) {
-			return -1;
+	/**
+	 * Builds a native struct iovec array describing the remaining bytes of each buffer.
+	 */
+	static ByteBuffer iovec(ByteBuffer[] buffers) {
+		ByteBuffer iov = GlusterBufferPool.getInstance().acquire(buffers.length * IOVEC_SIZE).order(ByteOrder.nativeOrder());
+		for (ByteBuffer buffer : buffers) {
+			iov.putLong(bufferAddress(buffer));
+			iov.putLong(buffer.remaining());
 		}
+		iov.flip();
+		return iov;
+	}
 
-		return totalRead;
+	/**
+	 * Hands the iovec array and the staging buffers {@link #directTargets} took from the pool back to it.
+	 */
+	static void releaseTargets(ByteBuffer[] byteBuffers, int offset, ByteBuffer[] targets, ByteBuffer iov) {
+		GlusterBufferPool pool = GlusterBufferPool.getInstance();
+		pool.release(iov);
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] != byteBuffers[offset + i]) {
+				pool.release(targets[i]);
+			}
+		}
 	}
 
     @Override
     public int write(ByteBuffer byteBuffer) throws IOException {
         guardClosed();
-        byte[] buf = byteBuffer.array();
-        int written = GLFS.glfs_write(fileptr, buf, buf.length, 0);
+        discardReadAhead();
+        int written;
+        if (null != writeBehind) {
+            written = writeBehind(byteBuffer);
+        } else {
+            written = writeBuffer(byteBuffer);
+        }
         if (written < 0) {
             throw new IOException(UtilJNI.strerror());
         }
         position += written;
-        byteBuffer.position(written);
+        return written;
+    }
+
+    /**
+     * Hands the buffer to the write-behind buffer, writing whatever it doesn't take directly at the offset that
+     * follows.
+     */
+    int writeBehind(ByteBuffer byteBuffer) throws IOException {
+        boolean append = writeBehind.isAppend();
+        int written = writeBehind.write(byteBuffer, position);
+        if (byteBuffer.hasRemaining()) {
+            int direct = writeBuffer(byteBuffer, append ? CURRENT_POSITION : position + written);
+            if (direct < 0) {
+                throw new IOException(UtilJNI.strerror());
+            }
+            written += direct;
+        }
+        if (!append && written > 0) {
+            // buffered data goes out with glfs_pwrite, so the file pointer lags behind until it is next needed
+            offsetStale = true;
+        }
         return written;
     }
 
@@ -188,21 +616,25 @@ public class GlusterFileChannel extends FileChannel {
             throw new NonWritableChannelException();
         }
 
+        discardReadAhead();
+        flushWriteBehind();
         long totalWritten = 0L;
-
+        long total = 0L;
         for (int i = offset; i < length + offset; i++) {
-            int remaining = byteBuffers[i].remaining();
-            while (remaining > 0) {
-                byte[] bytes = byteBuffers[i].array();
-                int written = GLFS.glfs_write(fileptr, bytes, remaining, 0);
-                if (written < 0) {
-                    throw new IOException();
-                }
-                position += written;
-                byteBuffers[i].position(written);
-                totalWritten += written;
-                remaining = byteBuffers[i].remaining();
+            total += byteBuffers[i].remaining();
+        }
+
+        int first = offset;
+        while (totalWritten < total) {
+            while (!byteBuffers[first].hasRemaining()) {
+                first++;
+            }
+            long written = writeHelper(byteBuffers, first, length + offset - first);
+            if (0 == written) {
+                break;
             }
+            position += written;
+            totalWritten += written;
         }
         return totalWritten;
     }
@@ -219,52 +651,403 @@ public class GlusterFileChannel extends FileChannel {
 		if (offset < 0) {
 			throw new IllegalArgumentException("offset can't be negative");
 		}
-		int whence = 0; //SEEK_SET
-		int seek = GLFS.glfs_lseek(fileptr, offset, whence);
+		flushWriteBehind();
 		position = offset;
+		offsetStale = true;
 		return this;
 	}
 
+	/**
+	 * Moves the file pointer to {@link #position} when positional reads or writes, a change of position or a
+	 * SEEK_DATA/SEEK_HOLE probe have left it elsewhere. The caller holds the position lock.
+	 */
+	void syncOffset() {
+		if (offsetStale) {
+			GLFS.glfs_lseek(fileptr, position, SEEK_SET);
+			offsetStale = false;
+		}
+	}
+
+	void discardReadAhead() {
+		if (null != readAhead) {
+			readAhead.discard();
+		}
+	}
+
+	void flushWriteBehind() throws IOException {
+		if (null != writeBehind) {
+			writeBehind.flush();
+		}
+	}
+
 	void guardClosed() throws ClosedChannelException {
 		if (closed) {
 			throw new ClosedChannelException();
 		}
 	}
 
+	/**
+	 * The size from the channel's stat snapshot, see {@link #stat()}.
+	 */
 	@Override
 	public long size() throws IOException {
+		flushWriteBehind();
+		return stat().st_size;
+	}
+
+	/**
+	 * Drops the stat snapshot and fetches a new one, for callers that need to see changes made through other handles
+	 * to the file right away.
+	 */
+	public void refreshStat() throws IOException {
+		fstat();
+	}
+
+	/**
+	 * Calls glfs_fstat and keeps the result as the channel's snapshot.
+	 */
+	stat fstat() throws IOException {
 		stat stat = new stat();
 		int retval = GLFS.glfs_fstat(fileptr, stat);
 		if (0 != retval) {
 			throw new IOException("fstat failed");
 		}
-		return stat.st_size;
+		synchronized (this) {
+			snapshot = stat;
+			snapshotTime = System.nanoTime();
+		}
+		return stat;
+	}
+
+	/**
+	 * The stat snapshot, fetched again with glfs_fstat when it is older than {@link #statCache} milliseconds. Writes,
+	 * truncates and extensions through this channel keep the snapshot's size up to date; changes made through other
+	 * handles show up once it expires.
+	 */
+	stat stat() throws IOException {
+		synchronized (this) {
+			if (null != snapshot && System.nanoTime() - snapshotTime < TimeUnit.MILLISECONDS.toNanos(statCache)) {
+				return snapshot;
+			}
+		}
+		return fstat();
+	}
+
+	/**
+	 * Grows the snapshot's size to cover count bytes written at offset, which is {@link #CURRENT_POSITION} for writes
+	 * at the file pointer. Appends land wherever the end of the file is by then, so they just drop the snapshot.
+	 */
+	synchronized void written(long offset, long count) {
+		if (null == snapshot) {
+			return;
+		}
+		if (CURRENT_POSITION == offset && options.contains(StandardOpenOption.APPEND)) {
+			snapshot = null;
+			return;
+		}
+		long end = (CURRENT_POSITION == offset ? position : offset) + count;
+		if (end > snapshot.st_size) {
+			snapshot.st_size = end;
+		}
+	}
+
+	synchronized void resized(long size) {
+		if (null != snapshot) {
+			snapshot.st_size = size;
+		}
+	}
+
+	synchronized void invalidateStat() {
+		snapshot = null;
 	}
 
 	@Override
-	public FileChannel truncate(long l) throws IOException {
-		return null;  //To change body of implemented methods use File | Settings | File Templates.
+	public FileChannel truncate(long size) throws IOException {
+		guardClosed();
+		if (size < 0) {
+			throw new IllegalArgumentException("size can't be negative");
+		}
+		if (!options.contains(StandardOpenOption.WRITE)) {
+			throw new NonWritableChannelException();
+		}
+		// a stale snapshot must not decide whether to cut the file
+		flushWriteBehind();
+		if (size < fstat().st_size) {
+			setLength(size);
+		}
+		if (position > size) {
+			position(size);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the file's size with glfs_ftruncate. Unlike {@link #truncate} this also extends the file, leaving a hole
+	 * rather than writing zeros.
+	 */
+	public void setLength(long length) throws IOException {
+		guardRange(0, length);
+		int ret = GLFS.glfs_ftruncate(fileptr, length);
+		if (0 != ret) {
+			throw new IOException(UtilJNI.strerror());
+		}
+		resized(length);
+	}
+
+	/**
+	 * Extends the channel's file to size, as a hole where possible, if it is smaller.
+	 */
+	static void extend(FileChannel channel, long size) throws IOException {
+		if (channel instanceof GlusterFileChannel) {
+			GlusterFileChannel glusterChannel = (GlusterFileChannel) channel;
+			glusterChannel.flushWriteBehind();
+			if (glusterChannel.fstat().st_size < size) {
+				glusterChannel.setLength(size);
+			}
+		} else if (channel.size() < size) {
+			channel.write(ByteBuffer.allocate(1), size - 1);
+		}
+	}
+
+	/**
+	 * Finds the data in a range of the file with SEEK_DATA and SEEK_HOLE, skipping the holes. When the volume doesn't
+	 * support them the whole range is taken to be data.
+	 *
+	 * @return {start, length} pairs
+	 */
+	List<long[]> dataRanges(long position, long count) {
+		List<long[]> ranges = new ArrayList<>();
+		long end = position + count;
+		long offset = position;
+		while (offset < end) {
+			long data = seek(offset, SEEK_DATA);
+			if (data < 0) {
+				if (seek(offset, SEEK_HOLE) < 0) {
+					ranges.add(new long[]{offset, end - offset});
+				}
+				break;
+			}
+			if (data >= end) {
+				break;
+			}
+			data = Math.max(data, offset);
+			long hole = seek(data, SEEK_HOLE);
+			if (hole <= data || hole > end) {
+				hole = end;
+			}
+			ranges.add(new long[]{data, hole - data});
+			offset = hole;
+		}
+		return ranges;
+	}
+
+	/**
+	 * glfs_lseek with {@link #SEEK_DATA} or {@link #SEEK_HOLE}, which move the file pointer too. The position lock keeps
+	 * relative reads and writes on other threads off the pointer meanwhile, and the pointer is put back lazily, by the
+	 * next call that uses it.
+	 */
+	long seek(long offset, int whence) {
+		synchronized (positionLock) {
+			long result = GLFS.glfs_lseek(fileptr, offset, whence);
+			offsetStale = true;
+			return result;
+		}
 	}
 
 	@Override
 	public void force(boolean b) throws IOException {
 		guardClosed();
+		writeBackMappings();
+		flushWriteBehind();
 		int fsync = GLFS.glfs_fsync(fileptr);
 		if (0 != fsync) {
 			throw new IOException("Unable to fsync");
 		}
 	}
 
+	/**
+	 * Between two channels on the same volume the copy is done server side with glfs_copy_file_range, otherwise it is
+	 * pipelined through pooled direct buffers by {@link GlusterTransfer}.
+	 */
 	@Override
-	public long transferTo(long l, long l2, WritableByteChannel writableByteChannel) throws IOException {
-		return 0;  //To change body of implemented methods use File | Settings | File Templates.
+	public long transferTo(final long position, long count, final WritableByteChannel target) throws IOException {
+		guardClosed();
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (!options.contains(StandardOpenOption.READ)) {
+			throw new NonReadableChannelException();
+		}
+		if (!target.isOpen()) {
+			throw new ClosedChannelException();
+		}
+		flushWriteBehind();
+		stat stat = stat();
+		long size = stat.st_size;
+		if (position >= size) {
+			return 0;
+		}
+		count = Math.min(count, size - position);
+		if (sameVolume(target) && !((GlusterFileChannel) target).getOptions().contains(StandardOpenOption.WRITE)) {
+			throw new NonWritableChannelException();
+		}
+
+		if (count >= MIN_SPARSE_TRANSFER && target instanceof FileChannel && !(target instanceof GlusterFileChannel
+				&& ((GlusterFileChannel) target).getOptions().contains(StandardOpenOption.APPEND))) {
+			List<long[]> ranges = dataRanges(position, count);
+			if (ranges.size() != 1 || ranges.get(0)[0] != position || ranges.get(0)[1] != count) {
+				return transferSparse(ranges, position, count, (FileChannel) target, GlusterTransfer.chunkSize(stat.st_blksize));
+			}
+		}
+
+		if (sameVolume(target)) {
+			GlusterFileChannel channel = (GlusterFileChannel) target;
+			if (!channel.getOptions().contains(StandardOpenOption.APPEND)) {
+				channel.discardReadAhead();
+				channel.flushWriteBehind();
+				long copied = copyFileRange(this, position, channel, channel.getPosition(), count);
+				if (copied >= 0) {
+					channel.position(channel.getPosition() + copied);
+					return copied;
+				}
+			}
+		}
+
+		return GlusterTransfer.copy(new GlusterTransfer.Source() {
+			@Override
+			public int read(ByteBuffer buffer, long offset) throws IOException {
+				return GlusterFileChannel.this.read(buffer, position + offset);
+			}
+		}, new GlusterTransfer.Sink() {
+			@Override
+			public int write(ByteBuffer buffer, long offset) throws IOException {
+				return target.write(buffer);
+			}
+		}, count, GlusterTransfer.chunkSize(stat.st_blksize));
 	}
 
+	/**
+	 * Between two channels on the same volume the copy is done server side with glfs_copy_file_range, otherwise it is
+	 * pipelined through pooled direct buffers by {@link GlusterTransfer}.
+	 */
 	@Override
-	public long transferFrom(ReadableByteChannel readableByteChannel, long l, long l2) throws IOException {
-		return 0;  //To change body of implemented methods use File | Settings | File Templates.
+	public long transferFrom(final ReadableByteChannel src, final long position, long count) throws IOException {
+		guardClosed();
+		if (position < 0 || count < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (!options.contains(StandardOpenOption.WRITE)) {
+			throw new NonWritableChannelException();
+		}
+		if (!src.isOpen()) {
+			throw new ClosedChannelException();
+		}
+		flushWriteBehind();
+		stat stat = stat();
+		if (position > stat.st_size) {
+			return 0;
+		}
+
+		if (sameVolume(src)) {
+			GlusterFileChannel channel = (GlusterFileChannel) src;
+			if (!channel.getOptions().contains(StandardOpenOption.READ)) {
+				throw new NonReadableChannelException();
+			}
+			channel.flushWriteBehind();
+			discardReadAhead();
+			long copied = copyFileRange(channel, channel.getPosition(), this, position, count);
+			if (copied >= 0) {
+				channel.position(channel.getPosition() + copied);
+				return copied;
+			}
+		}
+
+		return GlusterTransfer.copy(new GlusterTransfer.Source() {
+			@Override
+			public int read(ByteBuffer buffer, long offset) throws IOException {
+				return src.read(buffer);
+			}
+		}, new GlusterTransfer.Sink() {
+			@Override
+			public int write(ByteBuffer buffer, long offset) throws IOException {
+				return GlusterFileChannel.this.write(buffer, position + offset);
+			}
+		}, count, GlusterTransfer.chunkSize(stat.st_blksize));
+	}
+
+	/**
+	 * Copies only the data ranges to the same offsets in the target, leaving holes in the target where the source
+	 * has them.
+	 */
+	long transferSparse(List<long[]> ranges, long position, long count, final FileChannel target, int chunkSize) throws IOException {
+		long targetStart = target.position();
+		for (long[] range : ranges) {
+			final long offset = range[0];
+			final long targetOffset = targetStart + offset - position;
+			long copied = -1;
+			if (sameVolume(target)) {
+				((GlusterFileChannel) target).discardReadAhead();
+				((GlusterFileChannel) target).flushWriteBehind();
+				copied = copyFileRange(this, offset, (GlusterFileChannel) target, targetOffset, range[1]);
+			}
+			if (copied < 0) {
+				copied = GlusterTransfer.copy(new GlusterTransfer.Source() {
+					@Override
+					public int read(ByteBuffer buffer, long o) throws IOException {
+						return GlusterFileChannel.this.read(buffer, offset + o);
+					}
+				}, new GlusterTransfer.Sink() {
+					@Override
+					public int write(ByteBuffer buffer, long o) throws IOException {
+						return target.write(buffer, targetOffset + o);
+					}
+				}, range[1], chunkSize);
+			}
+			if (copied < range[1]) {
+				target.position(targetOffset + copied);
+				return offset + copied - position;
+			}
+		}
+		extend(target, targetStart + count);
+		target.position(targetStart + count);
+		return count;
 	}
 
+	boolean sameVolume(Channel channel) {
+		return channel instanceof GlusterFileChannel && fileSystem.equals(((GlusterFileChannel) channel).getFileSystem());
+	}
+
+	/**
+	 * Copies count bytes server side, as far as the source has them.
+	 *
+	 * @return the number of bytes copied, or -1 when the first glfs_copy_file_range fails, e.g. on servers that don't
+	 * support it, so the caller can fall back to copying through the client
+	 */
+	static long copyFileRange(GlusterFileChannel source, long sourcePosition, GlusterFileChannel target, long targetPosition, long count) throws IOException {
+		long copied = 0;
+		while (copied < count) {
+			long[] in = {sourcePosition + copied};
+			long[] out = {targetPosition + copied};
+			long n = GLFS.glfs_copy_file_range(source.getFileptr(), in, target.getFileptr(), out, count - copied, 0);
+			if (n < 0) {
+				if (0 == copied) {
+					return -1;
+				}
+				throw new IOException(UtilJNI.strerror());
+			}
+			if (0 == n) {
+				break;
+			}
+			copied += n;
+		}
+		target.written(targetPosition, copied);
+		return copied;
+	}
+
+	/**
+	 * Positional reads are a single glfs_pread that never touches the file pointer, so any number of
+	 * threads may call this concurrently on one channel.
+	 */
 	@Override
 	public int read(ByteBuffer byteBuffer, long position) throws IOException {
 		guardClosed();
@@ -274,61 +1057,152 @@ public class GlusterFileChannel extends FileChannel {
 		if (!options.contains(StandardOpenOption.READ)) {
 			throw new NonReadableChannelException();
 		}
-		if (position >= size()) {
+		flushWriteBehind();
+		int remaining = byteBuffer.remaining();
+		long read = readBuffer(byteBuffer, position);
+		if (read < 0) {
+			throw new IOException(UtilJNI.strerror());
+		}
+		if (0 == read && remaining > 0) {
 			return -1;
 		}
-		int whence = 0; //SEEK_SET
-		int seek = GLFS.glfs_lseek(fileptr, position, whence);
-		if (seek < 0) {
-			throw new IOException();
+		return (int) read;
+	}
+
+	/**
+	 * Positional writes are a single glfs_pwrite that never touches the file pointer, so any number of
+	 * threads may call this concurrently on one channel.
+	 */
+	@Override
+	public int write(ByteBuffer byteBuffer, long position) throws IOException {
+		guardClosed();
+		if (position < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (!options.contains(StandardOpenOption.WRITE)) {
+			throw new NonWritableChannelException();
+		}
+		discardReadAhead();
+		flushWriteBehind();
+		int written = writeBuffer(byteBuffer, position);
+		if (written < 0) {
+			throw new IOException(UtilJNI.strerror());
+		}
+		return written;
+	}
+
+	/**
+	 * Maps are emulated with off-heap copies of the region, see {@link GlusterMappedRegion}. Changes to a READ_WRITE
+	 * mapping reach the file on {@link #force} or when this channel is closed. The buffer has no file behind it, so
+	 * its own {@link MappedByteBuffer#force}, {@link MappedByteBuffer#load} and {@link MappedByteBuffer#isLoaded}
+	 * throw UnsupportedOperationException on Java 8 and do nothing on later versions. A mapping whose buffer has
+	 * become unreachable is written back and forgotten by the next map or force.
+	 */
+	@Override
+	public MappedByteBuffer map(MapMode mapMode, long position, long size) throws IOException {
+		guardClosed();
+		if (position < 0 || size < 0 || size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException();
+		}
+		if (!options.contains(StandardOpenOption.READ)) {
+			throw new NonReadableChannelException();
+		}
+		if (MapMode.READ_WRITE == mapMode && !options.contains(StandardOpenOption.WRITE)) {
+			throw new NonWritableChannelException();
+		}
+		flushWriteBehind();
+
+		if (MapMode.READ_ONLY == mapMode) {
+			return GlusterMappedRegion.readOnly(this, position, (int) size);
+		}
+		if (MapMode.READ_WRITE == mapMode && size > 0 && position + size > fstat().st_size) {
+			// grow the file to cover the mapping, as a real mapping would
+			setLength(position + size);
+		}
+		MappedByteBuffer buffer = GlusterMappedRegion.load(this, position, (int) size);
+		if (MapMode.READ_WRITE == mapMode) {
+			GlusterMappedRegion region = new GlusterMappedRegion(this, position, buffer);
+			synchronized (mappings) {
+				writeBackMappings(false);
+				buffer = region.view();
+				mappings.add(region);
+			}
 		}
-		byte[] bytes = byteBuffer.array();
-		long read = GLFS.glfs_read(fileptr, bytes, bytes.length, 0);
+		return buffer;
+	}
 
-		if (0 > read) {
-			throw new IOException();
+	/**
+	 * Reserves space for the range with glfs_fallocate. With keepSize the file's size is left alone, so the space is
+	 * allocated ahead of writes that will extend the file.
+	 */
+	public void preallocate(long position, long length, boolean keepSize) throws IOException {
+		guardRange(position, length);
+		int ret = GLFS.glfs_fallocate(fileptr, keepSize ? 1 : 0, position, length);
+		if (0 != ret) {
+			throw new IOException(UtilJNI.strerror());
 		}
+		if (!keepSize) {
+			written(position, length);
+		}
+	}
 
-		seek = GLFS.glfs_lseek(fileptr, this.position, whence);
+	/**
+	 * Deallocates the range with glfs_discard, leaving a hole that reads back as zeros.
+	 */
+	public void punchHole(long position, long length) throws IOException {
+		guardRange(position, length);
+		int ret = GLFS.glfs_discard(fileptr, position, length);
+		if (0 != ret) {
+			throw new IOException(UtilJNI.strerror());
+		}
+	}
 
-		if (0 > seek) {
+	/**
+	 * Writes zeros over the range with glfs_zerofill, without sending the zeros over the wire.
+	 */
+	public void zeroFill(long position, long length) throws IOException {
+		guardRange(position, length);
+		int ret = GLFS.glfs_zerofill(fileptr, position, length);
+		if (0 != ret) {
 			throw new IOException(UtilJNI.strerror());
 		}
+		written(position, length);
+	}
 
-		return (int) read;
+	void guardRange(long position, long length) throws IOException {
+		guardClosed();
+		if (position < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (!options.contains(StandardOpenOption.WRITE)) {
+			throw new NonWritableChannelException();
+		}
+		discardReadAhead();
+		flushWriteBehind();
 	}
 
-    @Override
-    public int write(ByteBuffer byteBuffer, long position) throws IOException {
-        guardClosed();
-        if (position < 0) {
-            throw new IllegalArgumentException();
-        }
-        if (!options.contains(StandardOpenOption.WRITE)) {
-            throw new NonWritableChannelException();
-        }
-        if (position >= size()) {
-            byte[] bytes = byteBuffer.array();
-            byte[] temp = Arrays.copyOf(bytes, bytes.length + (int) (position - size()));
-            byteBuffer = ByteBuffer.wrap(temp);
-        }
-        int whence = 0; //SEEK_SET
-        int seek = GLFS.glfs_lseek(fileptr, position, whence);
-        if (seek < 0) {
-            throw new IOException();
-        }
-        byte[] bytes = byteBuffer.array();
-        long written = GLFS.glfs_write(fileptr, bytes, bytes.length, 0);
-        seek = GLFS.glfs_lseek(fileptr, this.position, whence);
-        if (seek < 0) {
-            throw new IOException();
-        }
-        return (int) written;
-    }
+	void writeBackMappings() throws IOException {
+		writeBackMappings(true);
+	}
 
-	@Override
-	public MappedByteBuffer map(MapMode mapMode, long l, long l2) throws IOException {
-		return null;  //To change body of implemented methods use File | Settings | File Templates.
+	/**
+	 * Writes back every mapping, or with all false only those whose buffer is no longer reachable. Those are dropped
+	 * once written, since nothing can change them any more.
+	 */
+	void writeBackMappings(boolean all) throws IOException {
+		synchronized (mappings) {
+			Iterator<GlusterMappedRegion> iterator = mappings.iterator();
+			while (iterator.hasNext()) {
+				GlusterMappedRegion mapping = iterator.next();
+				boolean unmapped = !mapping.isMapped();
+				if (all || unmapped) {
+					mapping.writeBack();
+				}
+				if (unmapped) {
+					iterator.remove();
+				}
+			}
+		}
 	}
 
 	@Override
@@ -344,11 +1218,24 @@ public class GlusterFileChannel extends FileChannel {
 	@Override
 	protected void implCloseChannel() throws IOException {
 		if (!closed) {
-			int close = GLFS.glfs_close(fileptr);
-			if (0 != close) {
-				throw new IOException("Close returned nonzero");
+			if (null != readAhead) {
+				readAhead.close();
+			}
+			try {
+				writeBackMappings();
+				if (null != writeBehind) {
+					writeBehind.close();
+				}
+			} finally {
+				int close = GLFS.glfs_close(fileptr);
+				if (options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND)) {
+					GlusterStatCache.invalidate(path);
+				}
+				if (0 != close) {
+					throw new IOException("Close returned nonzero");
+				}
+				closed = true;
 			}
-			closed = true;
 		}
 	}
 
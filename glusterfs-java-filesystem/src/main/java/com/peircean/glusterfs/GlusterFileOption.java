@@ -0,0 +1,128 @@
+package com.peircean.glusterfs;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.file.OpenOption;
+
+/**
+ * Gluster specific {@link OpenOption}s, given to {@link java.nio.file.Files#newByteChannel} and friends alongside the
+ * {@link java.nio.file.StandardOpenOption}s.
+ */
+@Data
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class GlusterFileOption implements OpenOption {
+    public static final int DEFAULT_READ_AHEAD = 4 * 1024 * 1024;
+    public static final int DEFAULT_WRITE_BEHIND = 1024 * 1024;
+    public static final long DEFAULT_WRITE_BEHIND_INTERVAL = 1000L;
+    public static final long DEFAULT_STAT_CACHE = 0L;
+    public static final int DEFAULT_STREAM_BUFFER = 8192;
+
+    public enum Type {
+        READ_AHEAD, WRITE_BEHIND, PREALLOCATE, STAT_CACHE, DIRECT, STREAM_BUFFER
+    }
+
+    private final Type type;
+    private final long size;
+    private final long interval;
+
+    /**
+     * Prefetch ahead of sequential reads, growing the prefetch window up to {@link #DEFAULT_READ_AHEAD} bytes.
+     */
+    public static GlusterFileOption readAhead() {
+        return readAhead(DEFAULT_READ_AHEAD);
+    }
+
+    /**
+     * Prefetch ahead of sequential reads, growing the prefetch window up to maxWindow bytes.
+     */
+    public static GlusterFileOption readAhead(int maxWindow) {
+        if (maxWindow <= 0) {
+            throw new IllegalArgumentException("Read-ahead window must be positive: " + maxWindow);
+        }
+        return new GlusterFileOption(Type.READ_AHEAD, maxWindow, 0);
+    }
+
+    /**
+     * Coalesce small contiguous writes in a {@link #DEFAULT_WRITE_BEHIND} byte buffer, no byte of which waits more than
+     * about {@link #DEFAULT_WRITE_BEHIND_INTERVAL} milliseconds to be written out.
+     */
+    public static GlusterFileOption writeBehind() {
+        return writeBehind(DEFAULT_WRITE_BEHIND, DEFAULT_WRITE_BEHIND_INTERVAL);
+    }
+
+    /**
+     * Coalesce small contiguous writes in a buffer of bufferSize bytes, which is written out when it fills up, when
+     * the position is changed, on force and on close, and once the first byte written to it since the last flush has
+     * waited flushInterval milliseconds, even while writes keep coming. A flushInterval of 0 disables the timed flush.
+     */
+    public static GlusterFileOption writeBehind(int bufferSize, long flushInterval) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Write-behind buffer size must be positive: " + bufferSize);
+        }
+        if (flushInterval < 0) {
+            throw new IllegalArgumentException("Write-behind flush interval can't be negative: " + flushInterval);
+        }
+        return new GlusterFileOption(Type.WRITE_BEHIND, bufferSize, flushInterval);
+    }
+
+    /**
+     * Reserve bytes of space for the file with glfs_fallocate when it is opened, without changing its size, so that
+     * large sequential writes don't grow it a block at a time.
+     */
+    public static GlusterFileOption preallocate(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Preallocation must be positive: " + bytes);
+        }
+        return new GlusterFileOption(Type.PREALLOCATE, bytes, 0);
+    }
+
+    /**
+     * Open the file with O_DIRECT, bypassing the client side caches, for data that is streamed once. Reads and writes
+     * work best from buffers of {@link GlusterBufferPool#allocateAligned} at offsets and lengths that are multiples of
+     * {@link GlusterBufferPool#ALIGNMENT}; unaligned reads and writes of the end of the file are bounced through
+     * aligned buffers, other unaligned writes throw {@link IllegalArgumentException}.
+     * <p/>
+     * Only available on x86 and amd64: the O_DIRECT flag has a different value on other architectures.
+     *
+     * @throws UnsupportedOperationException on any other architecture
+     */
+    public static GlusterFileOption direct() {
+        String arch = System.getProperty("os.arch");
+        if (!supportsDirect(arch)) {
+            throw new UnsupportedOperationException("O_DIRECT is only supported on x86 and amd64, not " + arch);
+        }
+        return new GlusterFileOption(Type.DIRECT, 0, 0);
+    }
+
+    /**
+     * Whether O_DIRECT is {@link GlusterFileChannel#O_DIRECT} on the architecture, as it is on x86 and amd64.
+     */
+    static boolean supportsDirect(String arch) {
+        return null != arch && arch.matches("x86|i[3-6]86|amd64|x86_64");
+    }
+
+    /**
+     * Let the channel answer size() and friends from a stat snapshot up to maxAge milliseconds old, instead of calling
+     * glfs_fstat every time as it does by default. The channel's own writes keep the snapshot current, so this only
+     * bounds how long changes made through other handles go unnoticed. A maxAge of 0 keeps the default.
+     */
+    public static GlusterFileOption statCache(long maxAge) {
+        if (maxAge < 0) {
+            throw new IllegalArgumentException("Stat cache age can't be negative: " + maxAge);
+        }
+        return new GlusterFileOption(Type.STAT_CACHE, 0, maxAge);
+    }
+
+    /**
+     * Give a stream from {@link GlusterFileSystemProvider#newInputStream} a buffer of bufferSize bytes instead of the
+     * default {@link #DEFAULT_STREAM_BUFFER}, so that small reads don't each go to the channel.
+     */
+    public static GlusterFileOption streamBuffer(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Stream buffer size must be positive: " + bufferSize);
+        }
+        return new GlusterFileOption(Type.STREAM_BUFFER, bufferSize, 0);
+    }
+}
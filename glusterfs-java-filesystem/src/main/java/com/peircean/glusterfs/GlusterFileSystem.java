@@ -9,6 +9,7 @@ import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -18,7 +19,7 @@ import java.util.regex.Pattern;
  */
 @Getter(AccessLevel.PACKAGE)
 @Setter(AccessLevel.PACKAGE)
-@EqualsAndHashCode(exclude = {"provider", "volptr"}, callSuper = false)
+@EqualsAndHashCode(exclude = {"provider", "volptr", "handleCache", "statCache", "bulkStat"}, callSuper = false)
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 public class GlusterFileSystem extends FileSystem {
     private static final String SEPARATOR = "/";
@@ -30,6 +31,30 @@ public class GlusterFileSystem extends FileSystem {
     private final String volname;
     @NonNull
     private long volptr;
+    private final GlusterHandleCache handleCache = new GlusterHandleCache(this);
+    private final GlusterStatCache statCache = new GlusterStatCache();
+    private final GlusterBulkStat bulkStat = new GlusterBulkStat(this);
+
+    /**
+     * The object handles kept for this volume's paths.
+     */
+    public GlusterHandleCache getHandleCache() {
+        return handleCache;
+    }
+
+    /**
+     * The stat results kept for this volume's paths, off until given a TTL.
+     */
+    public GlusterStatCache getStatCache() {
+        return statCache;
+    }
+
+    /**
+     * Fetches the attributes of many paths of this volume at once.
+     */
+    public GlusterBulkStat getBulkStat() {
+        return bulkStat;
+    }
 
     @Override
     public FileSystemProvider provider() {
@@ -39,6 +64,8 @@ public class GlusterFileSystem extends FileSystem {
     @Override
     public void close() throws IOException {
         if (isOpen()) {
+            handleCache.clear();
+            statCache.clear();
             int fini = provider.close(volptr);
             if (0 != fini) {
                 throw new IOException("Unable to close filesystem: " + volname);
@@ -80,7 +107,9 @@ public class GlusterFileSystem extends FileSystem {
 
     @Override
     public Set<String> supportedFileAttributeViews() {
-        throw new UnsupportedOperationException();
+        Set<String> views = new LinkedHashSet<String>(GlusterAttributeMap.VIEWS.keySet());
+        views.add("user");
+        return Collections.unmodifiableSet(views);
     }
 
     @Override
@@ -1,20 +1,26 @@
 package com.peircean.glusterfs;
 
 import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
 import com.peircean.libgfapi_jni.internal.structs.stat;
 import com.peircean.libgfapi_jni.internal.structs.statvfs;
 import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import static com.peircean.libgfapi_jni.internal.GLFS.*;
 
@@ -28,6 +34,12 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
     public static final String TCP = "tcp";
     @Getter(AccessLevel.PACKAGE)
     private static Map<String, GlusterFileSystem> cache = new HashMap<String, GlusterFileSystem>();
+    @Getter
+    @Setter
+    private GlusterParallelCopy parallelCopy = new GlusterParallelCopy();
+    @Getter
+    @Setter
+    private GlusterWholeFile wholeFile = new GlusterWholeFile();
 
     @Override
     public String getScheme() {
@@ -124,9 +136,83 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
         return newFileChannelHelper(path, options, attrs);
     }
 
+    /**
+     * Opens the file for reading when neither READ nor WRITE is given, like {@link AsynchronousFileChannel#open} does
+     * for the default provider.
+     */
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(Path path, Set<? extends OpenOption> options, ExecutorService executor, FileAttribute<?>... attrs) throws IOException {
+        Set<OpenOption> channelOptions = new HashSet<OpenOption>(options);
+        if (!channelOptions.contains(StandardOpenOption.WRITE)) {
+            channelOptions.add(StandardOpenOption.READ);
+        }
+        GlusterFileChannel channel = (GlusterFileChannel) newFileChannelHelper(path, channelOptions, attrs);
+        return new GlusterAsynchronousFileChannel(channel, executor);
+    }
+
+    /**
+     * Streams through a buffer of {@link GlusterFileOption#streamBuffer} bytes from a channel with
+     * {@link GlusterFileOption#readAhead()}, unless the options already ask for a different read-ahead window.
+     */
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> channelOptions = new HashSet<OpenOption>();
+        int bufferSize = GlusterFileOption.DEFAULT_STREAM_BUFFER;
+        for (OpenOption option : options) {
+            if (StandardOpenOption.APPEND == option || StandardOpenOption.WRITE == option) {
+                throw new UnsupportedOperationException("'" + option + "' not allowed");
+            }
+            if (option instanceof GlusterFileOption
+                    && GlusterFileOption.Type.STREAM_BUFFER == ((GlusterFileOption) option).getType()) {
+                bufferSize = (int) ((GlusterFileOption) option).getSize();
+                continue;
+            }
+            channelOptions.add(option);
+        }
+        channelOptions.add(StandardOpenOption.READ);
+        if (!hasGlusterOption(channelOptions, GlusterFileOption.Type.READ_AHEAD)) {
+            channelOptions.add(GlusterFileOption.readAhead());
+        }
+        return new GlusterInputStream((GlusterFileChannel) newFileChannelHelper(path, channelOptions,
+                new FileAttribute<?>[0]), bufferSize);
+    }
+
+    /**
+     * Streams straight into a channel with {@link GlusterFileOption#writeBehind()}, unless the options already ask for
+     * a different write-behind buffer. Without options the file is created or truncated, as for the default provider.
+     */
+    @Override
+    public OutputStream newOutputStream(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> channelOptions = new HashSet<OpenOption>();
+        for (OpenOption option : options) {
+            if (StandardOpenOption.READ == option) {
+                throw new IllegalArgumentException("READ not allowed");
+            }
+            channelOptions.add(option);
+        }
+        if (0 == options.length) {
+            channelOptions.add(StandardOpenOption.CREATE);
+            channelOptions.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        channelOptions.add(StandardOpenOption.WRITE);
+        if (!hasGlusterOption(channelOptions, GlusterFileOption.Type.WRITE_BEHIND)) {
+            channelOptions.add(GlusterFileOption.writeBehind());
+        }
+        return new GlusterOutputStream((GlusterFileChannel) newFileChannelHelper(path, channelOptions, new FileAttribute<?>[0]));
+    }
+
+    static boolean hasGlusterOption(Set<OpenOption> options, GlusterFileOption.Type type) {
+        for (OpenOption option : options) {
+            if (option instanceof GlusterFileOption && type == ((GlusterFileOption) option).getType()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     FileChannel newFileChannelHelper(Path path, Set<? extends OpenOption> options, FileAttribute<?>[] attrs) throws IOException {
         GlusterFileChannel channel = new GlusterFileChannel();
-        channel.init((GlusterFileSystem) getFileSystem(path.toUri()), path, options, attrs);
+        channel.init((GlusterFileSystem) path.getFileSystem(), path, options, attrs);
         return channel;
     }
 
@@ -144,50 +230,49 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
         return stream;
     }
 
+    /**
+     * A single mkdir; a path that exists already or a parent that doesn't comes back as the errno of that call.
+     */
     @Override
     public void createDirectory(Path path, FileAttribute<?>... fileAttributes) throws IOException {
-        if (Files.exists(path)) {
-            throw new FileAlreadyExistsException(path.toString());
-        }
-        if (!Files.exists(path.getParent())) {
-            throw new IOException();
-        }
-
         int mode = 0775;
 
         if (fileAttributes.length > 0) {
             mode = GlusterFileAttributes.parseAttrs(fileAttributes);
         }
 
-        int ret = GLFS.glfs_mkdir(((GlusterFileSystem) path.getFileSystem()).getVolptr(), path.toString(), mode);
+        if (!GlusterHandleCache.mkdir(path, mode)) {
+            int ret = GLFS.glfs_mkdir(((GlusterFileSystem) path.getFileSystem()).getVolptr(), path.toString(), mode);
 
-        if (ret < 0) {
-            throw new IOException(path.toString());
+            if (ret < 0) {
+                throw GlusterErrno.lastError(path.toString(), null);
+            }
         }
+        GlusterStatCache.invalidate(path);
     }
 
+    /**
+     * Unlinks the path, and only when unlink reports a directory tries rmdir instead, so that deleting a file is a
+     * single call and a missing path or a non-empty directory comes back as the errno of the call.
+     */
     @Override
     public void delete(Path path) throws IOException {
-        if (!Files.exists(path)) {
-            throw new NoSuchFileException(path.toString());
-        }
-        if (Files.isDirectory(path)) {
-            if(!directoryIsEmpty(path)) {
-                throw new DirectoryNotEmptyException(path.toString());
-            }
-
-            int ret = GLFS.glfs_rmdir(((GlusterFileSystem)path.getFileSystem()).getVolptr(), path.toString());
-
-            if (ret < 0) {
-                throw new IOException(path.toString());
-            }
-        } else {
-            int ret = GLFS.glfs_unlink(((GlusterFileSystem) path.getFileSystem()).getVolptr(), path.toString());
-
-            if (ret < 0) {
-                throw new IOException(path.toString());
+        if (!GlusterHandleCache.unlink(path)) {
+            long volptr = ((GlusterFileSystem) path.getFileSystem()).getVolptr();
+            String pathString = path.toString();
+            if (GLFS.glfs_unlink(volptr, pathString) < 0) {
+                int errno = UtilJNI.errno();
+                if (GlusterErrno.EISDIR != errno && GlusterErrno.EPERM != errno) {
+                    throw GlusterErrno.exception(errno, pathString, null);
+                }
+                if (GLFS.glfs_rmdir(volptr, pathString) < 0) {
+                    int rmdirErrno = UtilJNI.errno();
+                    // not a directory after all, so the unlink error stands
+                    throw GlusterErrno.exception(GlusterErrno.ENOTDIR == rmdirErrno ? errno : rmdirErrno, pathString, null);
+                }
             }
         }
+        GlusterStatCache.invalidate(path);
     }
 
     @Override
@@ -224,50 +309,70 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
         if (Files.isDirectory(path)) {
             Files.createDirectory(path2);
         } else {
-            Files.createFile(path2, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-rw-r--")));
-            copyFileContent(path, path2);
+            copyFileContent(path, path2, copyAttributes);
+        }
+    }
+
+    /**
+     * Gives the target the whole mode of the source, setuid, setgid and sticky bits included, which creating it can't
+     * since the umask filters the creation mode, and its access and modification times, all in a single setattrs.
+     */
+    void copyFileAttributes(stat stat, Path path2) throws IOException {
+        stat attributes = new stat();
+        attributes.st_mode = stat.st_mode & 07777;
+        attributes.atime = stat.atime;
+        attributes.atime_nsec = stat.atime_nsec;
+        attributes.mtime = stat.mtime;
+        attributes.mtime_nsec = stat.mtime_nsec;
+        new GlusterFileAttributeView((GlusterPath) path2, true).setattrs(attributes, GlusterFileAttributeView.SET_ATTR_MODE
+                | GlusterFileAttributeView.SET_ATTR_ATIME | GlusterFileAttributeView.SET_ATTR_MTIME);
+    }
+
+    /**
+     * Copies the file through one channel on each side, both kept open for the whole copy, with
+     * {@link GlusterFileChannel#transferTo}. The source is fstat'ed once for its size, mode and times. When attributes
+     * are copied the target is created with the source's permissions, and once the content is in place
+     * {@link #copyFileAttributes} sets its mode and times. Files of at least the {@link GlusterParallelCopy} threshold
+     * are copied in parallel ranges.
+     */
+    void copyFileContent(Path path, Path path2, boolean copyAttributes) throws IOException {
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.READ);
+        FileChannel channel = newFileChannel(path, options);
+        try {
+            stat stat = ((GlusterFileChannel) channel).fstat();
+            Set<PosixFilePermission> permissions = copyAttributes
+                    ? GlusterFileAttributes.fromStat(stat).permissions()
+                    : PosixFilePermissions.fromString("rw-rw-r--");
+            copyContent(channel, path, path2, stat.st_size, PosixFilePermissions.asFileAttribute(permissions));
             if (copyAttributes) {
-                copyFileAttributes(path, path2);
+                copyFileAttributes(stat, path2);
             }
+        } finally {
+            channel.close();
         }
     }
 
-    void copyFileAttributes(Path path, Path path2) throws IOException {
-        stat stat = new stat();
-        long volptr = ((GlusterFileSystem) path.getFileSystem()).getVolptr();
-        int retStat = glfs_stat(volptr, path.toString(), stat);
-        int retChmod = 0;
-        if (0664 != stat.st_mode) {
-            retChmod = GLFS.glfs_chmod(volptr, path2.toString(), stat.st_mode);
-        }
-        if (retStat < 0 || retChmod < 0) {
-            throw new IOException("Could not copy file attributes.");
+    void copyContent(FileChannel channel, Path path, Path path2, long size, FileAttribute<?> permissions) throws IOException {
+        if (parallelCopy.accepts(size)) {
+            parallelCopy.copyRanges(path, path2, size, permissions);
+        } else {
+            transferContent(channel, size, path2, permissions);
         }
     }
 
-    void copyFileContent(Path path, Path path2) throws IOException {
-        Set<StandardOpenOption> options = new HashSet<>();
-        options.add(StandardOpenOption.READ);
-
-        //TODO: investigate 8kB byte array limitation
-        byte[] readBytes = new byte[8192];
-        FileChannel channel = newFileChannel(path, options);
-        ByteBuffer readBuffer = ByteBuffer.wrap(readBytes);
-
-        boolean writtenTo = false;
-        int read = channel.read(readBuffer);
-
-        while (read > 0) {
-            byte[] writeBytes = Arrays.copyOf(readBytes, read);
-            if (!writtenTo) {
-                Files.write(path2, writeBytes, StandardOpenOption.TRUNCATE_EXISTING);
-                writtenTo = true;
-            } else {
-                Files.write(path2, writeBytes, StandardOpenOption.APPEND);
+    void transferContent(FileChannel channel, long size, Path path2, FileAttribute<?> permissions) throws IOException {
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try (FileChannel target = newFileChannel(path2, options, permissions)) {
+            long copied = 0;
+            while (copied < size) {
+                long transferred = channel.transferTo(copied, size - copied, target);
+                if (0 == transferred) {
+                    break;
+                }
+                copied += transferred;
             }
-            read = channel.read(readBuffer);
         }
-        channel.close();
     }
 
     boolean directoryIsEmpty(Path path) throws IOException {
@@ -279,14 +384,14 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
         }
     }
 
+    /**
+     * A single rename. Only without REPLACE_EXISTING is the target looked up first, bypassing the stat cache, since
+     * rename would replace it.
+     */
     @Override
     public void move(Path path, Path path2, CopyOption... copyOptions) throws IOException {
         guardAbsolutePath(path);
         guardAbsolutePath(path2);
-        guardFileExists(path);
-        if (Files.exists(path2) && isSameFile(path, path2)) {
-            return;
-        }
 
         boolean overwrite = false;
         for (CopyOption co : copyOptions) {
@@ -299,17 +404,37 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
         }
 
         FileSystem fileSystem = path.getFileSystem();
-
-        if (!overwrite && Files.exists(path2)) {
-            throw new FileAlreadyExistsException("Target " + path2 + " exists and REPLACE_EXISTING not specified");
-        }
-        if (Files.isDirectory(path2) && !directoryIsEmpty(path2)) {
-            throw new DirectoryNotEmptyException("Target not empty: " + path2);
-        }
         if (!fileSystem.equals(path2.getFileSystem())) {
             throw new UnsupportedOperationException("Can not move file to a different file system");
         }
-        GLFS.glfs_rename(((GlusterFileSystem) fileSystem).getVolptr(), ((GlusterPath) path).getString(), ((GlusterPath) path2).getString());
+        if (path.equals(path2)) {
+            return;
+        }
+        if (!overwrite) {
+            // a cached "not found" could let the rename replace a target created since
+            stat target = freshStat(path2, false);
+            if (null != target) {
+                stat source = freshStat(path, false);
+                if (null != source && source.st_ino == target.st_ino) {
+                    return;
+                }
+                throw new FileAlreadyExistsException("Target " + path2 + " exists and REPLACE_EXISTING not specified");
+            }
+        }
+
+        String source = ((GlusterPath) path).getString();
+        String target = ((GlusterPath) path2).getString();
+        if (GLFS.glfs_rename(((GlusterFileSystem) fileSystem).getVolptr(), source, target) < 0) {
+            int errno = UtilJNI.errno();
+            if (GlusterErrno.ENOTEMPTY == errno || GlusterErrno.EEXIST == errno) {
+                throw new DirectoryNotEmptyException("Target not empty: " + path2);
+            }
+            throw GlusterErrno.exception(errno, source, target);
+        }
+        GlusterHandleCache.invalidate(path);
+        GlusterHandleCache.invalidate(path2);
+        GlusterStatCache.invalidate(path);
+        GlusterStatCache.invalidate(path2);
     }
 
     void guardFileExists(Path path) throws NoSuchFileException {
@@ -342,12 +467,51 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
     }
 
     stat statPath(Path path) throws IOException {
-        stat stat = new stat();
+        stat stat = lookupStat(path, true);
+        if (null == stat) {
+            throw new IOException("Stat failed for " + ((GlusterPath) path).getString());
+        }
+        return stat;
+    }
+
+    /**
+     * glfs_stat or glfs_lstat, answered from the file system's {@link GlusterStatCache} when it has a fresh result.
+     *
+     * @return null when the path can't be stat'ed
+     */
+    stat lookupStat(Path path, boolean followLinks) {
+        return lookupStat(path, followLinks, true);
+    }
+
+    /**
+     * glfs_stat or glfs_lstat past the {@link GlusterStatCache}, for checks that a stale answer would make wrong; the
+     * result still refreshes the cache.
+     *
+     * @return null when the path can't be stat'ed
+     */
+    stat freshStat(Path path, boolean followLinks) {
+        return lookupStat(path, followLinks, false);
+    }
+
+    private stat lookupStat(Path path, boolean followLinks, boolean useCache) {
         String pathString = ((GlusterPath) path).getString();
-        int ret = GLFS.glfs_stat(((GlusterFileSystem) path.getFileSystem()).getVolptr(),
-                pathString, stat);
-        if (ret != 0) {
-            throw new IOException("Stat failed for " + pathString);
+        GlusterStatCache cache = GlusterStatCache.of(path);
+        stat stat = null == cache || !useCache ? null : cache.get(pathString, followLinks);
+        if (null != stat) {
+            return stat;
+        }
+        stat = new stat();
+        // a path missing under a live parent handle is answered there, without a second round trip by path
+        int ret = followLinks ? GlusterHandleCache.stat(path, stat) : GlusterHandleCache.NO_HANDLE;
+        if (GlusterHandleCache.NO_HANDLE == ret) {
+            long volptr = ((GlusterFileSystem) path.getFileSystem()).getVolptr();
+            ret = followLinks ? GLFS.glfs_stat(volptr, pathString, stat) : GLFS.glfs_lstat(volptr, pathString, stat);
+        }
+        if (0 != ret) {
+            return null;
+        }
+        if (null != cache) {
+            cache.put(pathString, followLinks, stat);
         }
         return stat;
     }
@@ -368,16 +532,12 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
 
     @Override
     public void checkAccess(Path path, AccessMode... accessModes) throws IOException {
-        long volptr = ((GlusterFileSystem) path.getFileSystem()).getVolptr();
-        String pathString = ((GlusterPath) path).getString();
-
-        stat stat = new stat();
-        int ret = GLFS.glfs_lstat(volptr, pathString, stat);
-
-        if (-1 == ret) {
+        if (null == lookupStat(path, false)) {
             throw new NoSuchFileException("");
         }
 
+        long volptr = ((GlusterFileSystem) path.getFileSystem()).getVolptr();
+        String pathString = ((GlusterPath) path).getString();
         for (AccessMode m : accessModes) {
             int access = GLFS.glfs_access(volptr, pathString, modeInt(m));
             if (-1 == access) {
@@ -401,6 +561,13 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
 
     @Override
     public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> vClass, LinkOption... linkOptions) {
+        boolean followSymlinks = !Arrays.asList(linkOptions).contains(LinkOption.NOFOLLOW_LINKS);
+        if (vClass.isAssignableFrom(GlusterFileAttributeView.class)) {
+            return vClass.cast(GlusterFileAttributeView.of((GlusterPath) path, followSymlinks, vClass));
+        }
+        if (vClass.isAssignableFrom(GlusterUserDefinedFileAttributeView.class)) {
+            return vClass.cast(new GlusterUserDefinedFileAttributeView((GlusterPath) path, followSymlinks));
+        }
         return null;
     }
 
@@ -410,8 +577,6 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
         if (type.equals(DosFileAttributes.class)) {
             throw new UnsupportedOperationException(type + " attribute type is not supported, only PosixFileAttributes & its superinterfaces");
         }
-        stat stat = new stat();
-
         boolean followSymlinks = true;
         for (LinkOption lo : linkOptions) {
             if (lo.equals(LinkOption.NOFOLLOW_LINKS)) {
@@ -419,29 +584,92 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
                 break;
             }
         }
-        int ret;
-        String pathString = ((GlusterPath) path).getString();
-        if (followSymlinks) {
-            ret = GLFS.glfs_stat(((GlusterFileSystem) path.getFileSystem()).getVolptr(), pathString, stat);
-        } else {
-            ret = GLFS.glfs_lstat(((GlusterFileSystem) path.getFileSystem()).getVolptr(), pathString, stat);
-        }
+        stat stat = lookupStat(path, followSymlinks);
 
-        if (-1 == ret) {
+        if (null == stat) {
             throw new NoSuchFileException("");
         }
 
         return (A) GlusterFileAttributes.fromStat(stat);
     }
 
+    /**
+     * Serves any selection of basic, posix and unix attributes from a single stat, decoding each one only when read.
+     * User attributes are read as byte arrays, all of them with one listing for "user:*".
+     */
     @Override
     public Map<String, Object> readAttributes(Path path, String s, LinkOption... linkOptions) throws IOException {
-        return null;
+        if (s.startsWith("user:")) {
+            GlusterUserDefinedFileAttributeView view = getFileAttributeView(path,
+                    GlusterUserDefinedFileAttributeView.class, linkOptions);
+            List<String> names = Arrays.asList(s.substring("user:".length()).split(","));
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            if (names.contains("*")) {
+                values.putAll(view.readAll());
+            } else {
+                for (String name : names) {
+                    values.put(name, view.get(name));
+                }
+            }
+            return values;
+        }
+        List<String> names = GlusterAttributeMap.parse(s);
+        boolean followSymlinks = !Arrays.asList(linkOptions).contains(LinkOption.NOFOLLOW_LINKS);
+        stat stat = lookupStat(path, followSymlinks);
+        if (null == stat) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return new GlusterAttributeMap(stat, names);
     }
 
+    /**
+     * Sets one basic or posix attribute through a {@link GlusterFileAttributeView}, or one user attribute from a byte
+     * array or buffer.
+     */
     @Override
     public void setAttribute(Path path, String s, Object o, LinkOption... linkOptions) throws IOException {
+        String view = "basic";
+        String name = s;
+        int colon = s.indexOf(':');
+        if (colon >= 0) {
+            view = s.substring(0, colon);
+            name = s.substring(colon + 1);
+        }
+        if ("user".equals(view)) {
+            ByteBuffer value = o instanceof byte[] ? ByteBuffer.wrap((byte[]) o) : ((ByteBuffer) o).duplicate();
+            getFileAttributeView(path, GlusterUserDefinedFileAttributeView.class, linkOptions).write(name, value);
+            return;
+        }
+        if (!"basic".equals(view) && !"posix".equals(view)) {
+            throw new UnsupportedOperationException("View '" + view + "' not available");
+        }
+
+        if (!GlusterAttributeMap.VIEWS.get(view).contains(name)) {
+            throw new IllegalArgumentException("'" + s + "' not recognized");
+        }
 
+        GlusterFileAttributeView attributeView = getFileAttributeView(path, GlusterFileAttributeView.class, linkOptions);
+        switch (name) {
+            case "lastModifiedTime":
+                attributeView.setAttributes(null, null, null, (FileTime) o, null);
+                break;
+            case "lastAccessTime":
+                attributeView.setAttributes(null, null, null, null, (FileTime) o);
+                break;
+            case "creationTime":
+                break;
+            case "permissions":
+                attributeView.setPermissions((Set<PosixFilePermission>) o);
+                break;
+            case "owner":
+                attributeView.setOwner((UserPrincipal) o);
+                break;
+            case "group":
+                attributeView.setGroup((GroupPrincipal) o);
+                break;
+            default:
+                throw new IllegalArgumentException("'" + s + "' can't be set");
+        }
     }
 
     @Override
@@ -481,6 +709,7 @@ public class GlusterFileSystemProvider extends FileSystemProvider {
         GlusterFileSystem fileSystem = (GlusterFileSystem) link.getFileSystem();
         long volptr = fileSystem.getVolptr();
         int ret = GLFS.glfs_symlink(volptr, target.toString(), linkPath);
+        GlusterStatCache.invalidate(link);
         if (0 != ret) {
             throw new IOException("Unknown error creating symlink: " + linkPath);
         }
@@ -0,0 +1,481 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolved gfapi object handles (glfs_h_*) for the directories of one {@link GlusterFileSystem}, so that operations on
+ * the entries of recently used directories don't resolve the whole path again.
+ * <p/>
+ * A directory is resolved by looking its name up relative to its parent's handle, resolving and caching the parent
+ * first, so paths under a common prefix share the handles of the directories above them. Only directories are cached:
+ * a file is looked up by name relative to its parent's handle on every use, so that a rename or unlink of it by another
+ * client is seen at once. At most {@link #getMaxHandles()} handles are kept, the least recently used being closed once
+ * nothing is using them; 0 turns the cache off. Only when a path has no usable parent handle, or the parent turns out
+ * to be stale, does the caller fall back to the path based call. A lookup of a missing or inaccessible entry under a
+ * live parent is a final answer, with the errno of the lookup, so that a path that doesn't exist costs one round trip;
+ * mkdir, unlink and setattrs likewise report any failure other than a stale parent as its errno.
+ * <p/>
+ * Deletes and moves through this file system drop the paths they affect. A rename or delete of a directory made by
+ * another client isn't noticed until its handle goes stale; call {@link #invalidate} or {@link #clear} when other
+ * clients restructure the tree.
+ */
+@Getter
+public class GlusterHandleCache {
+    public static final int DEFAULT_MAX_HANDLES = 1024;
+    /**
+     * What {@link #stat} returns when the path has no usable parent handle.
+     */
+    static final int NO_HANDLE = 1;
+    private static final String ROOT = "/";
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFDIR = 0040000;
+
+    @Getter(AccessLevel.NONE)
+    private final GlusterFileSystem fileSystem;
+    private int maxHandles = DEFAULT_MAX_HANDLES;
+    @Getter(AccessLevel.NONE)
+    private final LinkedHashMap<String, Handle> handles = new LinkedHashMap<String, Handle>(16, 0.75f, true);
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong hits = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong misses = new AtomicLong();
+
+    GlusterHandleCache(GlusterFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    /**
+     * A resolved object and the number of callers using it.
+     */
+    static class Handle {
+        final String path;
+        final long object;
+        int references;
+        boolean evicted;
+
+        Handle(String path, long object) {
+            this.path = path;
+            this.object = object;
+        }
+    }
+
+    /**
+     * The cache of an open gluster file system, null for any other path.
+     */
+    static GlusterHandleCache of(Path path) {
+        FileSystem fileSystem = path.getFileSystem();
+        if (!(fileSystem instanceof GlusterFileSystem) || !fileSystem.isOpen()) {
+            return null;
+        }
+        return ((GlusterFileSystem) fileSystem).getHandleCache();
+    }
+
+    /**
+     * Looks the path up relative to its parent's handle, which fills in stat; the leaf is resolved afresh each time.
+     *
+     * @return 0 when found, -1 with errno set when the path doesn't exist or can't be reached, or {@link #NO_HANDLE}
+     * when the path has no usable parent handle, in which case the caller should use glfs_stat
+     */
+    static int stat(Path path, stat stat) {
+        GlusterHandleCache cache = of(path);
+        if (null == cache) {
+            return NO_HANDLE;
+        }
+        long object = cache.lookup(path, stat);
+        if (0 == object) {
+            return NO_HANDLE;
+        }
+        if (object < 0) {
+            return -1;
+        }
+        GLFS.glfs_h_close(object);
+        return 0;
+    }
+
+    /**
+     * glfs_h_setattrs on the path's object, setting the fields of stat picked by valid in a single call.
+     *
+     * @return false when the path has no usable parent handle, or its object turned out to be stale, in which case the
+     * caller should use the path based calls
+     * @throws IOException for any other failure, mapped from its errno
+     */
+    static boolean setattrs(Path path, stat stat, int valid) throws IOException {
+        GlusterHandleCache cache = of(path);
+        if (null == cache) {
+            return false;
+        }
+        String pathString = ((GlusterPath) path).getString();
+        long object = cache.lookup(path, new stat());
+        if (0 == object) {
+            return false;
+        }
+        if (object < 0) {
+            throw GlusterErrno.exception((int) -object, pathString, null);
+        }
+        try {
+            if (0 == GLFS.glfs_h_setattrs(cache.fileSystem.getVolptr(), object, stat, valid)) {
+                return true;
+            }
+            int errno = UtilJNI.errno();
+            if (GlusterErrno.ESTALE == errno) {
+                return false;
+            }
+            throw GlusterErrno.exception(errno, pathString, null);
+        } finally {
+            GLFS.glfs_h_close(object);
+        }
+    }
+
+    /**
+     * glfs_h_open on the path's object.
+     *
+     * @return the file descriptor, -1 with errno set when the path doesn't exist, can't be reached or can't be opened,
+     * or 0 when the path has no usable parent handle or its object turned out to be stale, in which case the caller
+     * should use glfs_open
+     */
+    static long open(Path path, int flags) {
+        GlusterHandleCache cache = of(path);
+        if (null == cache) {
+            return 0;
+        }
+        long object = cache.lookup(path, new stat());
+        if (object <= 0) {
+            return Math.max(-1, object);
+        }
+        try {
+            long fd = GLFS.glfs_h_open(cache.fileSystem.getVolptr(), object, flags);
+            if (fd > 0) {
+                return fd;
+            }
+            return GlusterErrno.ESTALE == UtilJNI.errno() ? 0 : -1;
+        } finally {
+            GLFS.glfs_h_close(object);
+        }
+    }
+
+    /**
+     * glfs_h_opendir on the directory's handle, caching the handle when the directory wasn't cached yet.
+     *
+     * @return the directory descriptor, -1 with errno set when the directory doesn't exist or can't be reached, or 0
+     * when the path has no usable handle or the call failed, in which case the caller should use glfs_opendir
+     */
+    static long opendir(Path path) {
+        GlusterHandleCache cache = of(path);
+        if (null == cache || cache.maxHandles <= 0 || !path.isAbsolute()) {
+            return 0;
+        }
+        String pathString = ((GlusterPath) path).getString();
+        Handle handle = cache.cached(pathString);
+        if (null == handle) {
+            stat stat = new stat();
+            long object = cache.lookup(pathString, stat);
+            if (object <= 0) {
+                return Math.max(-1, object);
+            }
+            handle = cache.add(pathString, object, stat);
+            if (null == handle) {
+                // not a directory, which glfs_opendir will report
+                return 0;
+            }
+        }
+        try {
+            long fd = GLFS.glfs_h_opendir(cache.fileSystem.getVolptr(), handle.object);
+            if (fd <= 0) {
+                cache.invalidate(handle.path);
+                return 0;
+            }
+            return fd;
+        } finally {
+            cache.release(handle);
+        }
+    }
+
+    /**
+     * glfs_h_mkdir relative to the parent's handle, caching the new directory's handle.
+     *
+     * @return false when the parent has no handle, or turned out to be stale and was dropped, in which case the caller
+     * should use glfs_mkdir
+     * @throws IOException for any other failure, mapped from its errno
+     */
+    static boolean mkdir(Path path, int mode) throws IOException {
+        GlusterHandleCache cache = of(path);
+        if (null == cache || null == path.getParent()) {
+            return false;
+        }
+        String pathString = ((GlusterPath) path).getString();
+        Handle parent = cache.acquire(path.getParent());
+        if (null == parent) {
+            return false;
+        }
+        try {
+            long object = GLFS.glfs_h_mkdir(cache.fileSystem.getVolptr(), parent.object, name(pathString), mode, new stat());
+            if (object <= 0) {
+                // mkdir only fails with ENOENT when the parent itself is gone
+                return !cache.staleParent(parent, UtilJNI.errno(), GlusterErrno.ENOENT, pathString);
+            }
+            cache.release(cache.add(pathString, object));
+            return true;
+        } finally {
+            cache.release(parent);
+        }
+    }
+
+    /**
+     * glfs_h_unlink relative to the parent's handle, for files and empty directories alike.
+     *
+     * @return false when the parent has no handle, or turned out to be stale and was dropped, in which case the caller
+     * should use glfs_unlink
+     * @throws IOException for any other failure, mapped from its errno
+     */
+    static boolean unlink(Path path) throws IOException {
+        GlusterHandleCache cache = of(path);
+        if (null == cache || null == path.getParent()) {
+            return false;
+        }
+        String pathString = ((GlusterPath) path).getString();
+        cache.invalidate(pathString);
+        Handle parent = cache.acquire(path.getParent());
+        if (null == parent) {
+            return false;
+        }
+        try {
+            if (0 == GLFS.glfs_h_unlink(cache.fileSystem.getVolptr(), parent.object, name(pathString))) {
+                return true;
+            }
+            return !cache.staleParent(parent, UtilJNI.errno(), GlusterErrno.ESTALE, pathString);
+        } finally {
+            cache.release(parent);
+        }
+    }
+
+    /**
+     * Drops the parent when errno says its handle no longer refers to a live directory, so that the caller can retry by
+     * path; any other errno is about the entry itself and is thrown.
+     *
+     * @param parentGone an errno besides ESTALE that can only mean the parent is gone
+     * @return true when the parent was dropped
+     */
+    boolean staleParent(Handle parent, int errno, int parentGone, String path) throws IOException {
+        if (GlusterErrno.ESTALE == errno || parentGone == errno) {
+            invalidate(parent.path);
+            return true;
+        }
+        throw GlusterErrno.exception(errno, path, null);
+    }
+
+    /**
+     * The object of an absolute path, looked up by its name relative to the parent's cached handle, or from the root,
+     * and not cached itself. The caller must glfs_h_close it.
+     *
+     * @return minus the errno when a live parent says the entry doesn't exist or can't be reached, or 0 when there is
+     * no usable parent handle, dropping the parent when its handle turned out to be stale
+     */
+    long lookup(Path path, stat stat) {
+        if (maxHandles <= 0 || !path.isAbsolute()) {
+            return 0;
+        }
+        return lookup(((GlusterPath) path).getString(), stat);
+    }
+
+    long lookup(String path, stat stat) {
+        long volptr = fileSystem.getVolptr();
+        int slash = path.lastIndexOf('/');
+        if (ROOT.equals(path) || slash < 0) {
+            return Math.max(0, GLFS.glfs_h_lookupat(volptr, 0, path, stat, 1));
+        }
+        Handle parent = acquire(0 == slash ? ROOT : path.substring(0, slash));
+        if (null == parent) {
+            return 0;
+        }
+        try {
+            long object = GLFS.glfs_h_lookupat(volptr, parent.object, path.substring(slash + 1), stat, 1);
+            if (object > 0) {
+                return object;
+            }
+            int errno = UtilJNI.errno();
+            if (GlusterErrno.ENOENT == errno || GlusterErrno.ENOTDIR == errno || GlusterErrno.EACCES == errno) {
+                return -errno;
+            }
+            if (GlusterErrno.ESTALE == errno) {
+                invalidate(parent.path);
+            }
+            return 0;
+        } finally {
+            release(parent);
+        }
+    }
+
+    /**
+     * Drops the path, and everything under it, from the cache of its file system.
+     */
+    static void invalidate(Path path) {
+        GlusterHandleCache cache = of(path);
+        if (null != cache && path.isAbsolute()) {
+            cache.invalidate(((GlusterPath) path).getString());
+        }
+    }
+
+    Handle acquire(Path path) {
+        if (maxHandles <= 0 || !path.isAbsolute()) {
+            return null;
+        }
+        return acquire(((GlusterPath) path).getString());
+    }
+
+    /**
+     * The handle for an absolute directory path, resolved relative to its parent's handle when it isn't cached. The
+     * caller must {@link #release} it.
+     *
+     * @return null when the path can't be resolved or isn't a directory
+     */
+    Handle acquire(String path) {
+        Handle handle = cached(path);
+        if (null != handle) {
+            return handle;
+        }
+        stat stat = new stat();
+        long object = lookup(path, stat);
+        if (object <= 0) {
+            return null;
+        }
+        return add(path, object, stat);
+    }
+
+    /**
+     * The cached handle of the path, which the caller must {@link #release}, or null when it isn't cached.
+     */
+    synchronized Handle cached(String path) {
+        Handle handle = handles.get(path);
+        if (null == handle) {
+            misses.incrementAndGet();
+            return null;
+        }
+        handle.references++;
+        hits.incrementAndGet();
+        return handle;
+    }
+
+    /**
+     * Caches a freshly looked up object when stat says it is a directory, otherwise closes it.
+     *
+     * @return the acquired handle, null when it isn't a directory
+     */
+    Handle add(String path, long object, stat stat) {
+        if (S_IFDIR != (stat.st_mode & S_IFMT)) {
+            // only directories are cached; files are looked up again on every use
+            GLFS.glfs_h_close(object);
+            return null;
+        }
+        return add(path, object);
+    }
+
+    synchronized Handle add(String path, long object) {
+        Handle handle = handles.get(path);
+        if (null != handle) {
+            // another thread resolved it first
+            GLFS.glfs_h_close(object);
+        } else {
+            handle = new Handle(path, object);
+            handles.put(path, handle);
+        }
+        handle.references++;
+        trim();
+        return handle;
+    }
+
+    synchronized void release(Handle handle) {
+        handle.references--;
+        if (handle.evicted && 0 == handle.references) {
+            GLFS.glfs_h_close(handle.object);
+        }
+    }
+
+    /**
+     * Drops the path and everything under it.
+     */
+    public synchronized void invalidate(String path) {
+        String prefix = path.endsWith(ROOT) ? path : path + ROOT;
+        Iterator<Map.Entry<String, Handle>> iterator = handles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Handle> entry = iterator.next();
+            if (entry.getKey().equals(path) || entry.getKey().startsWith(prefix)) {
+                iterator.remove();
+                evict(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Drops every handle, e.g. before the file system is closed.
+     */
+    public synchronized void clear() {
+        for (Handle handle : handles.values()) {
+            evict(handle);
+        }
+        handles.clear();
+    }
+
+    /**
+     * Sets how many handles may be kept, closing the least recently used until they fit.
+     */
+    public synchronized void setMaxHandles(int maxHandles) {
+        if (maxHandles < 0) {
+            throw new IllegalArgumentException("Handle count can't be negative: " + maxHandles);
+        }
+        this.maxHandles = maxHandles;
+        trim();
+    }
+
+    /**
+     * The number of cached handles.
+     */
+    public synchronized int size() {
+        return handles.size();
+    }
+
+    /**
+     * Lookups answered by a cached handle.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Lookups that had to resolve the path.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void trim() {
+        Iterator<Handle> iterator = handles.values().iterator();
+        while (handles.size() > maxHandles && iterator.hasNext()) {
+            Handle handle = iterator.next();
+            iterator.remove();
+            evict(handle);
+        }
+    }
+
+    private void evict(Handle handle) {
+        handle.evicted = true;
+        if (0 == handle.references) {
+            GLFS.glfs_h_close(handle.object);
+        }
+    }
+
+    static String name(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
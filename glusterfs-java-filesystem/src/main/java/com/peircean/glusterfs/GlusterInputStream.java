@@ -0,0 +1,138 @@
+package com.peircean.glusterfs;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@link InputStream} returned by {@link GlusterFileSystemProvider#newInputStream}.
+ * <p/>
+ * Small reads are served from a buffer of the stream's own, refilled with one read of a {@link GlusterFileChannel}
+ * opened with read-ahead, so sequential reads come from windows prefetched in the background and only a buffer's worth
+ * at a time crosses into the channel. Reads at least as large as the buffer go to the channel directly once the buffer
+ * is drained. The channel's file pointer is only moved when a call needs it, so neither refills nor {@link #skip}
+ * cost a glfs_lseek. {@link #available} comes from the buffer and the channel's stat snapshot and
+ * {@link #transferTo} hands the rest of the file to {@link GlusterFileChannel#transferTo}.
+ */
+@Getter(AccessLevel.PACKAGE)
+class GlusterInputStream extends InputStream {
+    private final GlusterFileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] single = new byte[1];
+
+    GlusterInputStream(GlusterFileChannel channel) {
+        this(channel, GlusterFileOption.DEFAULT_STREAM_BUFFER);
+    }
+
+    GlusterInputStream(GlusterFileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = read(single, 0, 1);
+        return 1 == read ? single[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (0 == length) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            if (length >= buffer.capacity()) {
+                return channel.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+            if (fill() < 0) {
+                return -1;
+            }
+        }
+        int read = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    /**
+     * Refills the drained buffer with one channel read.
+     *
+     * @return the number of bytes read, -1 at end of file
+     */
+    int fill() throws IOException {
+        buffer.clear();
+        try {
+            return channel.read(buffer);
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Moves the position forward without reading, up to the end of the file; skipping within the buffer doesn't touch
+     * the channel.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        int buffered = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + buffered);
+        if (buffered == n) {
+            return buffered;
+        }
+        long position = channel.position();
+        long skipped = Math.max(0, Math.min(n - buffered, channel.size() - position));
+        if (skipped > 0) {
+            channel.position(position + skipped);
+        }
+        return buffered + skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        long available = buffer.remaining() + Math.max(0, channel.size() - channel.position());
+        return (int) Math.min(Integer.MAX_VALUE, available);
+    }
+
+    /**
+     * Copies the rest of the file to out, server side when out is a stream on the same volume.
+     *
+     * @return the number of bytes copied
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        long buffered = buffer.remaining();
+        if (buffered > 0) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        }
+        WritableByteChannel target = out instanceof GlusterOutputStream
+                ? ((GlusterOutputStream) out).getChannel() : Channels.newChannel(out);
+        long position = channel.position();
+        long transferred = 0;
+        while (true) {
+            long n = channel.transferTo(position + transferred, Long.MAX_VALUE, target);
+            if (n <= 0) {
+                break;
+            }
+            transferred += n;
+        }
+        channel.position(position + transferred);
+        return buffered + transferred;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
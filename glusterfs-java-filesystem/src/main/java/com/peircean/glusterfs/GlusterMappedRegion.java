@@ -0,0 +1,178 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Emulated memory mapping for {@link GlusterFileChannel#map}.
+ * <p/>
+ * There is no way to map a gluster file into the address space, so a region is loaded into off-heap memory when it is
+ * mapped and the buffer handed out is a plain direct buffer. Changes to a read/write mapping are found by comparing
+ * each page with a copy taken when it was last loaded or written, and only the dirty pages are written back, on
+ * {@link GlusterFileChannel#force} and when the channel is closed.
+ * <p/>
+ * With no file behind it, the buffer doesn't support {@link MappedByteBuffer#force}, {@link MappedByteBuffer#load}
+ * or {@link MappedByteBuffer#isLoaded}: Java 8 throws UnsupportedOperationException from them, later versions do
+ * nothing. Use {@link GlusterFileChannel#force} instead.
+ * <p/>
+ * The caller is handed a {@link #view} of the region, held only weakly, so that once it is unreachable the channel
+ * can write the region back a last time and let it go. Read-only mappings of the same region are shared between
+ * channels for as long as any of them is reachable and the file hasn't changed.
+ */
+@Getter(AccessLevel.PACKAGE)
+class GlusterMappedRegion {
+    public static final int PAGE_SIZE = 4096;
+
+    private static final Map<String, SharedRegion> shared = new HashMap<>();
+
+    private final GlusterFileChannel channel;
+    private final long position;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer shadow;
+    @Getter(AccessLevel.NONE)
+    private WeakReference<MappedByteBuffer> view = new WeakReference<>(null);
+
+    GlusterMappedRegion(GlusterFileChannel channel, long position, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.position = position;
+        this.buffer = buffer;
+        this.shadow = ByteBuffer.allocateDirect(buffer.capacity());
+        shadow.put(buffer.duplicate());
+    }
+
+    /**
+     * A buffer over the region's memory for the caller of map; the region keeps its own buffer, so the view becoming
+     * unreachable doesn't lose changes made through it.
+     */
+    synchronized MappedByteBuffer view() {
+        MappedByteBuffer view = (MappedByteBuffer) buffer.duplicate();
+        this.view = new WeakReference<>(view);
+        return view;
+    }
+
+    /**
+     * Whether the view handed out is still reachable, and so could still be changed.
+     */
+    synchronized boolean isMapped() {
+        return null != view.get();
+    }
+
+    /**
+     * Writes the pages that changed since they were loaded or last written back, one glfs_pwrite per run of dirty
+     * pages.
+     *
+     * @return the number of pages written
+     */
+    synchronized int writeBack() throws IOException {
+        int written = 0;
+        int capacity = buffer.capacity();
+        int runStart = -1;
+        for (long offset = 0; offset < capacity + (long) PAGE_SIZE; offset += PAGE_SIZE) {
+            int page = (int) Math.min(offset, capacity);
+            boolean dirty = page < capacity && !slice(buffer, page).equals(slice(shadow, page));
+            if (dirty && runStart < 0) {
+                runStart = page;
+            } else if (!dirty && runStart >= 0) {
+                written += write(runStart, page);
+                runStart = -1;
+            }
+        }
+        return written;
+    }
+
+    int write(int start, int end) throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        source.limit(end).position(start);
+        ByteBuffer update = source.duplicate();
+        while (source.hasRemaining()) {
+            if (channel.write(source, position + source.position()) <= 0) {
+                throw new IOException("Unable to write mapped region at " + (position + source.position()));
+            }
+        }
+        ByteBuffer target = shadow.duplicate();
+        target.position(start);
+        target.put(update);
+        return (end - start + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
+    static ByteBuffer slice(ByteBuffer buffer, int page) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(Math.min(page + PAGE_SIZE, buffer.capacity())).position(page);
+        return slice;
+    }
+
+    /**
+     * Reads size bytes of the file from position into a new direct buffer, leaving whatever is past the end of the
+     * file zeroed.
+     */
+    static MappedByteBuffer load(GlusterFileChannel channel, long position, int size) throws IOException {
+        MappedByteBuffer buffer = (MappedByteBuffer) ByteBuffer.allocateDirect(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                break;
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * A read-only view of the region, loaded once and shared with every other read-only mapping of the same region
+     * of the same, unchanged, file.
+     */
+    static MappedByteBuffer readOnly(GlusterFileChannel channel, long position, int size) throws IOException {
+        stat stat = channel.fstat();
+        String key = channel.getPath().toUri() + "#" + position + "+" + size;
+        synchronized (shared) {
+            SharedRegion region = shared.get(key);
+            ByteBuffer buffer = null == region ? null : region.buffer.get();
+            if (null == buffer || !region.matches(stat)) {
+                Iterator<SharedRegion> iterator = shared.values().iterator();
+                while (iterator.hasNext()) {
+                    if (null == iterator.next().buffer.get()) {
+                        iterator.remove();
+                    }
+                }
+                buffer = load(channel, position, size);
+                shared.put(key, new SharedRegion(stat, buffer));
+            }
+            return (MappedByteBuffer) buffer.asReadOnlyBuffer();
+        }
+    }
+
+    static int sharedRegions() {
+        synchronized (shared) {
+            return shared.size();
+        }
+    }
+
+    private static class SharedRegion {
+        private final long inode;
+        private final long size;
+        private final long mtime;
+        private final long mtimeNsec;
+        private final WeakReference<ByteBuffer> buffer;
+
+        SharedRegion(stat stat, ByteBuffer buffer) {
+            this.inode = stat.st_ino;
+            this.size = stat.st_size;
+            this.mtime = stat.mtime;
+            this.mtimeNsec = stat.mtime_nsec;
+            this.buffer = new WeakReference<>(buffer);
+        }
+
+        boolean matches(stat stat) {
+            return inode == stat.st_ino && size == stat.st_size && mtime == stat.mtime
+                    && mtimeNsec == stat.mtime_nsec;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.peircean.glusterfs;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link OutputStream} returned by {@link GlusterFileSystemProvider#newOutputStream}.
+ * <p/>
+ * Writes go to a {@link GlusterFileChannel} opened with write-behind, so small writes, down to single bytes, are
+ * collected in the channel's buffer and go out as large writes. {@link #flush} writes out whatever is buffered.
+ */
+@Getter(AccessLevel.PACKAGE)
+class GlusterOutputStream extends OutputStream {
+    private final GlusterFileChannel channel;
+    private final byte[] single = new byte[1];
+
+    GlusterOutputStream(GlusterFileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) <= 0) {
+                throw new IOException("Unable to write to " + channel.getPath());
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        channel.guardClosed();
+        channel.flushWriteBehind();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,195 @@
+package com.peircean.glusterfs;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Copies large files as several ranges at once, each range on its own pair of file handles with positional reads and
+ * writes, so that the copy is spread over the bricks of a distributed volume instead of being limited to one stream.
+ * <p/>
+ * {@link GlusterFileSystemProvider#copy} uses the provider's instance for files of at least {@link #threshold} bytes.
+ * Client side memory is bounded by {@link #memoryBudget}, which is shared between the {@link #parallelism} workers;
+ * ranges on the same volume are copied server side with glfs_copy_file_range when the servers support it.
+ */
+@Data
+public class GlusterParallelCopy {
+    public static final long DEFAULT_THRESHOLD = 256L * 1024 * 1024;
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    public static final long MIN_RANGE = 64L * 1024 * 1024;
+    public static final int MIN_BUFFER = 64 * 1024;
+
+    private long threshold = DEFAULT_THRESHOLD;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    /**
+     * Copies the content of source to target, creating target with the permissions of source or truncating it.
+     *
+     * @return the number of bytes copied
+     * @throws UnsupportedOperationException if the file system of source has no posix attributes
+     */
+    public long copy(Path source, Path target) throws IOException {
+        PosixFileAttributes attributes = Files.readAttributes(source, PosixFileAttributes.class);
+        return copyRanges(source, target, attributes.size(),
+                PosixFilePermissions.asFileAttribute(attributes.permissions()));
+    }
+
+    boolean accepts(long size) {
+        return parallelism > 1 && size >= threshold;
+    }
+
+    long copyRanges(Path source, Path target, long size, FileAttribute<?> permissions) throws IOException {
+        open(target, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING), permissions).close();
+
+        List<long[]> ranges = split(size);
+        if (ranges.isEmpty()) {
+            return 0;
+        }
+        int workers = ranges.size();
+        int bufferSize = bufferSize(workers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gluster-parallel-copy");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (long[] range : ranges) {
+                futures.add(executor.submit(rangeTask(source, target, range[0], range[1], bufferSize)));
+            }
+            long copied = 0;
+            for (Future<Long> future : futures) {
+                copied += await(future);
+            }
+            if (copied != size) {
+                throw new IOException("Copied only " + copied + " of " + size + " bytes from " + source
+                        + ", which got shorter during the copy");
+            }
+            try (FileChannel out = open(target, EnumSet.of(StandardOpenOption.WRITE))) {
+                GlusterFileChannel.extend(out, size);
+            }
+            return copied;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits size bytes into at most {@link #parallelism} ranges of at least {@link #MIN_RANGE} bytes.
+     *
+     * @return {start, length} pairs
+     */
+    List<long[]> split(long size) {
+        List<long[]> ranges = new ArrayList<>();
+        int count = Math.max(1, parallelism);
+        long rangeSize = Math.max(MIN_RANGE, (size + count - 1) / count);
+        for (long start = 0; start < size; start += rangeSize) {
+            ranges.add(new long[]{start, Math.min(rangeSize, size - start)});
+        }
+        return ranges;
+    }
+
+    int bufferSize(int workers) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_BUFFER, memoryBudget / workers));
+    }
+
+    Callable<Long> rangeTask(final Path source, final Path target, final long start, final long length, final int bufferSize) {
+        return new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+                try (FileChannel in = open(source, EnumSet.of(StandardOpenOption.READ));
+                     FileChannel out = open(target, EnumSet.of(StandardOpenOption.WRITE))) {
+                    return copyRange(in, out, start, length, bufferSize);
+                }
+            }
+        };
+    }
+
+    /**
+     * Copies the range, skipping holes in a gluster source so they stay holes in the target.
+     */
+    static long copyRange(FileChannel in, FileChannel out, long start, long length, int bufferSize) throws IOException {
+        GlusterBufferPool pool = GlusterBufferPool.getInstance();
+        ByteBuffer pooled = pool.acquire((int) Math.min(bufferSize, length));
+        // the pool rounds up to a size class; stick to the worker's share of the memory budget
+        ByteBuffer buffer = pooled.slice();
+        try {
+            if (!(in instanceof GlusterFileChannel)) {
+                return copyData(in, out, start, length, buffer);
+            }
+            for (long[] range : ((GlusterFileChannel) in).dataRanges(start, length)) {
+                long copied = copyData(in, out, range[0], range[1], buffer);
+                if (copied < range[1]) {
+                    return range[0] + copied - start;
+                }
+            }
+            return length;
+        } finally {
+            pool.release(pooled);
+        }
+    }
+
+    static long copyData(FileChannel in, FileChannel out, long start, long length, ByteBuffer buffer) throws IOException {
+        if (in instanceof GlusterFileChannel && ((GlusterFileChannel) in).sameVolume(out)) {
+            long copied = GlusterFileChannel.copyFileRange((GlusterFileChannel) in, start, (GlusterFileChannel) out, start, length);
+            if (copied >= 0) {
+                return copied;
+            }
+        }
+
+        long copied = 0;
+        while (copied < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - copied));
+            int read = in.read(buffer, start + copied);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (out.write(buffer, start + copied + buffer.position()) <= 0) {
+                    throw new IOException("Unable to write at " + (start + copied + buffer.position()));
+                }
+            }
+            copied += read;
+        }
+        return copied;
+    }
+
+    FileChannel open(Path path, EnumSet<StandardOpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        return path.getFileSystem().provider().newFileChannel(path, options, attrs);
+    }
+
+    static long await(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for parallel copy");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
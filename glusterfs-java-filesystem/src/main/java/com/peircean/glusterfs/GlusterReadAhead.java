@@ -0,0 +1,263 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Client side read-ahead for a {@link GlusterFileChannel}.
+ * <p/>
+ * Once a few reads in a row have been sequential, reads are served from a window fetched with glfs_pread and the
+ * following window is requested in the background while the caller consumes the current one. The window doubles
+ * every time it is used up, up to the configured maximum. A read anywhere other than where the last one ended drops
+ * the prefetched data and goes back to plain reads. Windows come from the {@link GlusterBufferPool} and go back to it
+ * once they are used up or dropped.
+ * <p/>
+ * The state is guarded by the read-ahead's own monitor, since a positional write on another thread discards the
+ * prefetched data while a read may be using it.
+ */
+@Getter(AccessLevel.PACKAGE)
+@Setter(AccessLevel.PACKAGE)
+class GlusterReadAhead {
+    public static final int MIN_WINDOW = 64 * 1024;
+    public static final int SEQUENTIAL_READS = 2;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gluster-read-ahead");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final GlusterFileChannel channel;
+    private final int maxWindow;
+    private int window;
+    private long expected = -1;
+    private int sequentialReads;
+    private ByteBuffer current;
+    private long currentStart;
+    private Future<ByteBuffer> pending;
+    private long pendingStart;
+    private int pendingSize;
+    private List<Future<ByteBuffer>> abandoned = new LinkedList<>();
+
+    GlusterReadAhead(GlusterFileChannel channel, int maxWindow) {
+        this.channel = channel;
+        this.maxWindow = maxWindow;
+        this.window = Math.min(MIN_WINDOW, maxWindow);
+    }
+
+    /**
+     * Reads into the buffer from the given file offset, from the prefetched windows when the access is sequential.
+     *
+     * @return the number of bytes read, 0 at end of file
+     */
+    synchronized long read(ByteBuffer byteBuffer, long position) throws IOException {
+        if (position != expected && !skipTo(position)) {
+            discard();
+            sequentialReads = 0;
+            window = Math.min(MIN_WINDOW, maxWindow);
+        }
+
+        long read;
+        if (sequentialReads < SEQUENTIAL_READS) {
+            read = channel.readBuffer(byteBuffer, position);
+            if (read < 0) {
+                throw new IOException(UtilJNI.strerror());
+            }
+            sequentialReads++;
+        } else {
+            read = fill(byteBuffer, position);
+        }
+        expected = position + read;
+        return read;
+    }
+
+    /**
+     * Moves forward within the current window, so that skipping over data that has already been fetched doesn't
+     * count as a random access.
+     *
+     * @return false when position isn't ahead of the last read within the current window
+     */
+    synchronized boolean skipTo(long position) {
+        if (null == current || position < expected || position > currentStart + current.limit()) {
+            return false;
+        }
+        current.position((int) (position - currentStart));
+        expected = position;
+        return true;
+    }
+
+    long fill(ByteBuffer byteBuffer, long position) throws IOException {
+        if (null != current && currentStart + current.position() != position) {
+            discard();
+        }
+        long copied = 0;
+        while (byteBuffer.hasRemaining()) {
+            if ((null == current || !current.hasRemaining()) && !nextWindow(position + copied)) {
+                break;
+            }
+            int length = Math.min(byteBuffer.remaining(), current.remaining());
+            ByteBuffer slice = current.duplicate();
+            slice.limit(slice.position() + length);
+            byteBuffer.put(slice);
+            current.position(current.position() + length);
+            copied += length;
+        }
+        return copied;
+    }
+
+    /**
+     * Makes the window starting at offset current, waiting for it if it is being prefetched, and starts prefetching
+     * the one after it.
+     *
+     * @return false at end of file
+     */
+    boolean nextWindow(long offset) throws IOException {
+        ByteBuffer next;
+        int size;
+        if (null != pending && pendingStart == offset) {
+            Future<ByteBuffer> future = pending;
+            pending = null;
+            next = await(future);
+            size = pendingSize;
+        } else {
+            discard();
+            size = window;
+            next = fetch(offset, size);
+        }
+        GlusterBufferPool.getInstance().release(current);
+        current = null;
+        if (0 == next.limit()) {
+            GlusterBufferPool.getInstance().release(next);
+            return false;
+        }
+        current = next;
+        currentStart = offset;
+
+        boolean full = next.limit() == size;
+        window = Math.min(window * 2, maxWindow);
+        if (full) {
+            pendingStart = offset + next.limit();
+            pendingSize = window;
+            pending = executor.submit(fetchTask(pendingStart, pendingSize));
+        }
+        return true;
+    }
+
+    ByteBuffer fetch(long offset, int size) throws IOException {
+        try {
+            return fetchTask(offset, size).call();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    Callable<ByteBuffer> fetchTask(final long offset, final int size) {
+        return new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+                ByteBuffer buffer = GlusterBufferPool.getInstance().acquire(size);
+                boolean fetched = false;
+                try {
+                    while (buffer.hasRemaining()) {
+                        long read = channel.readBuffer(buffer, offset + buffer.position());
+                        if (read < 0) {
+                            throw new IOException(UtilJNI.strerror());
+                        }
+                        if (0 == read) {
+                            break;
+                        }
+                    }
+                    buffer.flip();
+                    fetched = true;
+                    return buffer;
+                } finally {
+                    if (!fetched) {
+                        GlusterBufferPool.getInstance().release(buffer);
+                    }
+                }
+            }
+        };
+    }
+
+    ByteBuffer await(Future<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for read-ahead");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Drops prefetched data, e.g. after a write to the channel or a non-sequential read.
+     */
+    synchronized void discard() {
+        GlusterBufferPool.getInstance().release(current);
+        current = null;
+        if (null != pending) {
+            abandoned.add(pending);
+            pending = null;
+        }
+        Iterator<Future<ByteBuffer>> iterator = abandoned.iterator();
+        while (iterator.hasNext()) {
+            Future<ByteBuffer> future = iterator.next();
+            if (future.isDone()) {
+                iterator.remove();
+                release(future);
+            }
+        }
+        expected = -1;
+    }
+
+    /**
+     * Waits for any prefetch still reading from the file, so the file can be closed safely.
+     */
+    synchronized void close() {
+        discard();
+        Iterator<Future<ByteBuffer>> iterator = abandoned.iterator();
+        while (iterator.hasNext()) {
+            Future<ByteBuffer> future = iterator.next();
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+            }
+            iterator.remove();
+            release(future);
+        }
+    }
+
+    /**
+     * Hands the window of a finished prefetch back to the pool; a failed prefetch has already released its own.
+     */
+    private static void release(Future<ByteBuffer> future) {
+        try {
+            GlusterBufferPool.getInstance().release(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+        }
+    }
+}
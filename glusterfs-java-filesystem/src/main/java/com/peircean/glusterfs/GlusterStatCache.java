@@ -0,0 +1,187 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recent glfs_stat and glfs_lstat results for the paths of one {@link GlusterFileSystem}, so that the existence and type
+ * checks that {@link java.nio.file.Files} makes before most operations don't each go to the volume.
+ * <p/>
+ * The cache is off until {@link #setTtl} is given a positive number of milliseconds. Results are then reused for up to
+ * that long, and at most {@link #getMaxEntries()} paths are kept, the least recently used being dropped first. Only
+ * successful lookups are cached. Changes made through this file system drop the paths they affect, together with their
+ * parent directory; changes made by other clients show up once the entries expire.
+ */
+@Getter
+public class GlusterStatCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private long ttl;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    @Getter(AccessLevel.NONE)
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong hits = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The stat and lstat results of one path with the time they were fetched.
+     */
+    static class Entry {
+        stat stat;
+        long statTime;
+        stat lstat;
+        long lstatTime;
+    }
+
+    /**
+     * The cache of an open gluster file system, null for any other path.
+     */
+    static GlusterStatCache of(Path path) {
+        FileSystem fileSystem = path.getFileSystem();
+        if (!(fileSystem instanceof GlusterFileSystem) || !fileSystem.isOpen()) {
+            return null;
+        }
+        return ((GlusterFileSystem) fileSystem).getStatCache();
+    }
+
+    /**
+     * Drops the path, everything under it and its parent from the cache of its file system.
+     */
+    static void invalidate(Path path) {
+        GlusterStatCache cache = of(path);
+        if (null != cache && path.isAbsolute()) {
+            cache.invalidate(((GlusterPath) path).getString());
+        }
+    }
+
+    /**
+     * The cached result for path, which the caller must not modify.
+     *
+     * @return null when the cache is off or has no fresh result
+     */
+    public synchronized stat get(String path, boolean followLinks) {
+        if (ttl <= 0) {
+            return null;
+        }
+        Entry entry = entries.get(path);
+        long now = System.nanoTime();
+        long maxAge = TimeUnit.MILLISECONDS.toNanos(ttl);
+        if (null != entry) {
+            if (followLinks && null != entry.stat && now - entry.statTime < maxAge) {
+                hits.incrementAndGet();
+                return entry.stat;
+            }
+            if (!followLinks && null != entry.lstat && now - entry.lstatTime < maxAge) {
+                hits.incrementAndGet();
+                return entry.lstat;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void put(String path, boolean followLinks, stat stat) {
+        if (ttl <= 0) {
+            return;
+        }
+        Entry entry = entries.get(path);
+        if (null == entry) {
+            entry = new Entry();
+            entries.put(path, entry);
+        }
+        if (followLinks) {
+            entry.stat = stat;
+            entry.statTime = System.nanoTime();
+        } else {
+            entry.lstat = stat;
+            entry.lstatTime = System.nanoTime();
+        }
+        trim();
+    }
+
+    /**
+     * Drops the path, everything under it and its parent directory, whose times and link count change along with it.
+     */
+    public synchronized void invalidate(String path) {
+        int slash = path.lastIndexOf('/');
+        if (slash >= 0) {
+            entries.remove(0 == slash ? "/" : path.substring(0, slash));
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            if (key.equals(path) || key.startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Sets how many milliseconds results are reused for; 0 turns the cache off and empties it.
+     */
+    public synchronized void setTtl(long ttl) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("TTL can't be negative: " + ttl);
+        }
+        this.ttl = ttl;
+        if (0 == ttl) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Sets how many paths may be kept, dropping the least recently used until they fit.
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Entry count can't be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        trim();
+    }
+
+    /**
+     * The number of cached paths.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Lookups that went to the volume while the cache was on.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void trim() {
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.peircean.glusterfs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+
+/**
+ * Pipelined copy used by {@link GlusterFileChannel#transferTo} and {@link GlusterFileChannel#transferFrom}.
+ * <p/>
+ * The data moves through two large direct buffers: while one chunk is being written to the sink the next one is read
+ * from the source on a background thread. Buffers come from the {@link GlusterBufferPool} so that bulk copies don't
+ * keep allocating native memory.
+ */
+class GlusterTransfer {
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gluster-transfer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    interface Source {
+        /**
+         * @param offset bytes already read in this transfer
+         * @return bytes read, 0 or -1 when there is nothing more to read
+         */
+        int read(ByteBuffer buffer, long offset) throws IOException;
+    }
+
+    interface Sink {
+        /**
+         * @param offset bytes already written in this transfer
+         * @return bytes written, 0 when the sink can't take any more
+         */
+        int write(ByteBuffer buffer, long offset) throws IOException;
+    }
+
+    private GlusterTransfer() {
+    }
+
+    /**
+     * The largest multiple of the file system's block size that fits in a transfer buffer, so that chunks never
+     * straddle a block.
+     */
+    static int chunkSize(long blockSize) {
+        if (blockSize <= 0 || blockSize >= BUFFER_SIZE) {
+            return BUFFER_SIZE;
+        }
+        return (int) (BUFFER_SIZE - BUFFER_SIZE % blockSize);
+    }
+
+    static long copy(Source source, Sink sink, long count) throws IOException {
+        return copy(source, sink, count, BUFFER_SIZE);
+    }
+
+    /**
+     * Copies up to count bytes from the source to the sink, chunkSize bytes at a time.
+     *
+     * @return the number of bytes written to the sink
+     */
+    static long copy(Source source, Sink sink, long count, int chunkSize) throws IOException {
+        if (count <= 0) {
+            return 0;
+        }
+        ByteBuffer[] buffers = {acquire(), acquire()};
+        Future<ByteBuffer> reading = null;
+        long read = 0;
+        long written = 0;
+        try {
+            int requested = (int) Math.min(count, chunkSize);
+            reading = executor.submit(readTask(source, buffers[0], 0, requested));
+            int next = 1;
+            while (null != reading) {
+                ByteBuffer chunk = await(reading);
+                reading = null;
+                read += chunk.remaining();
+                if (chunk.remaining() == requested && read < count) {
+                    requested = (int) Math.min(count - read, chunkSize);
+                    reading = executor.submit(readTask(source, buffers[next], read, requested));
+                    next ^= 1;
+                }
+                while (chunk.hasRemaining()) {
+                    int n = sink.write(chunk, written);
+                    if (n <= 0) {
+                        return written;
+                    }
+                    written += n;
+                }
+            }
+            return written;
+        } finally {
+            if (null != reading) {
+                drain(reading);
+            }
+            release(buffers[0]);
+            release(buffers[1]);
+        }
+    }
+
+    static Callable<ByteBuffer> readTask(final Source source, final ByteBuffer buffer, final long offset, final int size) {
+        return new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+                buffer.clear();
+                buffer.limit(size);
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer, offset + buffer.position()) <= 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                return buffer;
+            }
+        };
+    }
+
+    static ByteBuffer await(Future<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for transfer read");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Waits for a read nobody wants any more, so its buffer can go back to the pool.
+     */
+    static void drain(Future<ByteBuffer> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                future.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ByteBuffer acquire() {
+        return GlusterBufferPool.getInstance().acquire(BUFFER_SIZE);
+    }
+
+    static void release(ByteBuffer buffer) {
+        GlusterBufferPool.getInstance().release(buffer);
+    }
+}
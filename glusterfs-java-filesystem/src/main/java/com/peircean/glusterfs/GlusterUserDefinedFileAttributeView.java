@@ -0,0 +1,240 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * User defined attributes of a {@link GlusterPath}, kept as gluster extended attributes in the user. namespace.
+ * <p/>
+ * Direct buffers are read into and written from in place. Anything else, and the name lists and values this view
+ * fetches for itself, goes through a buffer from the {@link GlusterBufferPool} that is first tried at
+ * {@link #INITIAL_SIZE}, so that small attributes take a single call instead of one for the size and one for the
+ * value. {@link #readAll} lists the attributes once and reads each of them that way.
+ */
+@Getter(AccessLevel.PACKAGE)
+public class GlusterUserDefinedFileAttributeView implements UserDefinedFileAttributeView {
+    public static final String PREFIX = "user.";
+    public static final int INITIAL_SIZE = GlusterBufferPool.MIN_CLASS;
+
+    private final GlusterPath path;
+    private final boolean followLinks;
+
+    GlusterUserDefinedFileAttributeView(GlusterPath path, boolean followLinks) {
+        this.path = path;
+        this.followLinks = followLinks;
+    }
+
+    @Override
+    public String name() {
+        return "user";
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        GlusterBufferPool pool = GlusterBufferPool.getInstance();
+        ByteBuffer buffer = fetch(null, false);
+        try {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            List<String> names = new ArrayList<String>();
+            int start = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (0 == bytes[i]) {
+                    String name = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+                    if (name.startsWith(PREFIX)) {
+                        names.add(name.substring(PREFIX.length()));
+                    }
+                    start = i + 1;
+                }
+            }
+            return names;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    @Override
+    public int size(String name) throws IOException {
+        long size = getxattr(name, 0, 0);
+        if (size < 0) {
+            throw GlusterErrno.lastError(path.toString(), null);
+        }
+        return (int) size;
+    }
+
+    @Override
+    public int read(String name, ByteBuffer dst) throws IOException {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("Read-only buffer");
+        }
+        int read;
+        if (dst.isDirect()) {
+            long size = getxattr(name, GlusterFileChannel.bufferAddress(dst), dst.remaining());
+            if (size < 0) {
+                int errno = UtilJNI.errno();
+                if (GlusterErrno.ERANGE == errno) {
+                    throw insufficientSpace(name);
+                }
+                throw GlusterErrno.exception(errno, path.toString(), null);
+            }
+            read = (int) size;
+            dst.position(dst.position() + read);
+        } else {
+            GlusterBufferPool pool = GlusterBufferPool.getInstance();
+            ByteBuffer value = fetch(name, false);
+            try {
+                read = value.remaining();
+                if (read > dst.remaining()) {
+                    throw insufficientSpace(name);
+                }
+                dst.put(value);
+            } finally {
+                pool.release(value);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int write(String name, ByteBuffer src) throws IOException {
+        int size = src.remaining();
+        int ret;
+        if (src.isDirect()) {
+            ret = setxattr(name, GlusterFileChannel.bufferAddress(src), size);
+        } else {
+            GlusterBufferPool pool = GlusterBufferPool.getInstance();
+            ByteBuffer staging = pool.acquire(size);
+            try {
+                staging.put(src.duplicate());
+                staging.flip();
+                ret = setxattr(name, GlusterFileChannel.bufferAddress(staging), size);
+            } finally {
+                pool.release(staging);
+            }
+        }
+        if (ret < 0) {
+            throw GlusterErrno.lastError(path.toString(), null);
+        }
+        src.position(src.position() + size);
+        GlusterStatCache.invalidate(path);
+        return size;
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        String pathString = path.getString();
+        long volptr = volptr();
+        int ret = followLinks ? GLFS.glfs_removexattr(volptr, pathString, PREFIX + name)
+                : GLFS.glfs_lremovexattr(volptr, pathString, PREFIX + name);
+        if (ret < 0) {
+            throw GlusterErrno.lastError(path.toString(), null);
+        }
+        GlusterStatCache.invalidate(path);
+    }
+
+    /**
+     * The value of one attribute.
+     */
+    public byte[] get(String name) throws IOException {
+        return bytes(fetch(name, false));
+    }
+
+    /**
+     * Every user attribute of the file, in the order the volume lists them. An attribute removed between listing and
+     * reading is left out.
+     */
+    public Map<String, byte[]> readAll() throws IOException {
+        Map<String, byte[]> values = new LinkedHashMap<String, byte[]>();
+        for (String name : list()) {
+            ByteBuffer value = fetch(name, true);
+            if (null != value) {
+                values.put(name, bytes(value));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The value of an attribute, or the list of attribute names when name is null, in a pooled buffer the caller must
+     * release. A value that outgrows the buffer is sized and fetched again.
+     *
+     * @param skipMissing return null rather than throw when the attribute doesn't exist
+     */
+    ByteBuffer fetch(String name, boolean skipMissing) throws IOException {
+        GlusterBufferPool pool = GlusterBufferPool.getInstance();
+        int capacity = INITIAL_SIZE;
+        while (true) {
+            ByteBuffer buffer = pool.acquire(capacity);
+            long size = null == name ? listxattr(GlusterFileChannel.bufferAddress(buffer), capacity)
+                    : getxattr(name, GlusterFileChannel.bufferAddress(buffer), capacity);
+            if (size >= 0) {
+                buffer.limit((int) size);
+                return buffer;
+            }
+            int errno = UtilJNI.errno();
+            pool.release(buffer);
+            if (skipMissing && GlusterErrno.ENODATA == errno) {
+                return null;
+            }
+            if (GlusterErrno.ERANGE != errno) {
+                throw GlusterErrno.exception(errno, path.toString(), null);
+            }
+            size = null == name ? listxattr(0, 0) : getxattr(name, 0, 0);
+            if (size < 0) {
+                throw GlusterErrno.lastError(path.toString(), null);
+            }
+            capacity = (int) Math.max(size, 2L * capacity);
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer value) {
+        try {
+            byte[] bytes = new byte[value.remaining()];
+            value.get(bytes);
+            return bytes;
+        } finally {
+            GlusterBufferPool.getInstance().release(value);
+        }
+    }
+
+    private long getxattr(String name, long address, long size) {
+        if (followLinks) {
+            return GLFS.glfs_getxattr(volptr(), path.getString(), PREFIX + name, address, size);
+        }
+        return GLFS.glfs_lgetxattr(volptr(), path.getString(), PREFIX + name, address, size);
+    }
+
+    private int setxattr(String name, long address, long size) {
+        if (followLinks) {
+            return GLFS.glfs_setxattr(volptr(), path.getString(), PREFIX + name, address, size, 0);
+        }
+        return GLFS.glfs_lsetxattr(volptr(), path.getString(), PREFIX + name, address, size, 0);
+    }
+
+    private long listxattr(long address, long size) {
+        if (followLinks) {
+            return GLFS.glfs_listxattr(volptr(), path.getString(), address, size);
+        }
+        return GLFS.glfs_llistxattr(volptr(), path.getString(), address, size);
+    }
+
+    private long volptr() {
+        return ((GlusterFileSystem) path.getFileSystem()).getVolptr();
+    }
+
+    private FileSystemException insufficientSpace(String name) {
+        return new FileSystemException(path.toString(), null, "Insufficient space in buffer for attribute " + name);
+    }
+}
@@ -0,0 +1,202 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads and writes whole files with as few calls to the volume as possible, for services that handle many small
+ * files.
+ * <p/>
+ * {@link #readAllBytes(Path)} sizes the array from one glfs_fstat and fills it with one glfs_pread, where
+ * {@link Files#readAllBytes} reads through a stream into a growing buffer. {@link #write(Path, byte[], boolean,
+ * OpenOption...)} is one glfs_pwrite, followed by glfs_fsync when asked to, where {@link Files#write} goes through a
+ * stream in 8KB pieces. Short reads and writes carry on through the channel. The batch variants handle many files on up
+ * to {@link #parallelism} threads. Paths of other providers are handed to {@link Files}.
+ */
+@Data
+public class GlusterWholeFile {
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    /**
+     * The content of the file. A file that grows while it is read is returned at the size glfs_fstat reported.
+     */
+    public byte[] readAllBytes(Path path) throws IOException {
+        if (!(path instanceof GlusterPath)) {
+            return Files.readAllBytes(path);
+        }
+        GlusterFileChannel channel = open(path, EnumSet.of(StandardOpenOption.READ));
+        try {
+            return readFully(channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes bytes to the file, creating or truncating it when no options are given, and waits for them to reach the
+     * bricks when sync is set.
+     */
+    public void write(Path path, byte[] bytes, boolean sync, OpenOption... options) throws IOException {
+        Set<OpenOption> openOptions = new HashSet<OpenOption>(Arrays.asList(options));
+        if (openOptions.isEmpty()) {
+            openOptions.add(StandardOpenOption.CREATE);
+            openOptions.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        openOptions.add(StandardOpenOption.WRITE);
+        if (!(path instanceof GlusterPath)) {
+            Files.write(path, bytes, openOptions.toArray(new OpenOption[openOptions.size()]));
+            return;
+        }
+        GlusterFileChannel channel = open(path, openOptions);
+        try {
+            writeFully(channel, bytes);
+            if (sync) {
+                channel.force(true);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads every file, in the order given.
+     *
+     * @throws IOException the first failure, after which the remaining files are abandoned
+     */
+    public Map<Path, byte[]> readAllBytes(Collection<? extends Path> paths) throws IOException {
+        Map<Path, Future<byte[]>> futures = new LinkedHashMap<Path, Future<byte[]>>();
+        ExecutorService executor = executor(paths.size());
+        try {
+            for (final Path path : paths) {
+                futures.put(path, executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return readAllBytes(path);
+                    }
+                }));
+            }
+            Map<Path, byte[]> contents = new LinkedHashMap<Path, byte[]>();
+            for (Map.Entry<Path, Future<byte[]>> entry : futures.entrySet()) {
+                contents.put(entry.getKey(), await(entry.getValue()));
+            }
+            return contents;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes every file, creating or truncating it.
+     *
+     * @throws IOException the first failure, after which the remaining files are abandoned
+     */
+    public void write(Map<? extends Path, byte[]> contents, final boolean sync) throws IOException {
+        List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+        ExecutorService executor = executor(contents.size());
+        try {
+            for (final Map.Entry<? extends Path, byte[]> entry : contents.entrySet()) {
+                futures.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        write(entry.getKey(), entry.getValue(), sync);
+                        return entry.getValue();
+                    }
+                }));
+            }
+            for (Future<byte[]> future : futures) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static byte[] readFully(GlusterFileChannel channel) throws IOException {
+        long size = channel.fstat().st_size;
+        if (size > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("Required array size too large");
+        }
+        byte[] bytes = new byte[(int) size];
+        int read = 0;
+        if (bytes.length > 0 && null == channel.getDirectIO()) {
+            long n = GLFS.glfs_pread(channel.getFileptr(), bytes, bytes.length, 0, 0);
+            if (n < 0) {
+                throw new IOException(UtilJNI.strerror());
+            }
+            read = (int) n;
+        }
+        if (read < bytes.length) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, read, bytes.length - read);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) <= 0) {
+                    break;
+                }
+            }
+            read = buffer.position();
+        }
+        return read == bytes.length ? bytes : Arrays.copyOf(bytes, read);
+    }
+
+    static void writeFully(GlusterFileChannel channel, byte[] bytes) throws IOException {
+        boolean append = channel.getOptions().contains(StandardOpenOption.APPEND);
+        int written = 0;
+        if (bytes.length > 0 && !append && null == channel.getDirectIO()) {
+            written = GLFS.glfs_pwrite(channel.getFileptr(), bytes, bytes.length, 0, 0);
+            if (written < 0) {
+                throw new IOException(UtilJNI.strerror());
+            }
+            channel.written(0, written);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, written, bytes.length - written);
+        while (buffer.hasRemaining()) {
+            int n = append ? channel.write(buffer) : channel.write(buffer, buffer.position());
+            if (n <= 0) {
+                throw new IOException("Unable to write to " + channel.getPath());
+            }
+        }
+    }
+
+    GlusterFileChannel open(Path path, Set<? extends OpenOption> options) throws IOException {
+        return (GlusterFileChannel) path.getFileSystem().provider().newFileChannel(path, options, new FileAttribute<?>[0]);
+    }
+
+    ExecutorService executor(int tasks) {
+        return Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks)), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gluster-whole-file");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for whole file batch");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+
+/**
+ * Write-behind buffer for a {@link GlusterFileChannel}.
+ * <p/>
+ * Contiguous writes are collected in a direct buffer and written out with one glfs_pwrite. The first run after a
+ * flush is cut short at the next multiple of the buffer size, so that the following flushes are aligned. Writes
+ * at least as large as the buffer are not worth buffering and are left to the channel. The buffer is also flushed
+ * once its oldest byte has waited the flush interval, however often it is written to, and a failure while flushing
+ * in the background is reported by the next call.
+ */
+@Getter(AccessLevel.PACKAGE)
+@Setter(AccessLevel.PACKAGE)
+class GlusterWriteBehind {
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gluster-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final GlusterFileChannel channel;
+    private final ByteBuffer buffer;
+    private final long interval;
+    private final boolean append;
+    private long start;
+    private int limit;
+    private long firstWrite;
+    private IOException failure;
+    private ScheduledFuture<?> flusher;
+    private boolean closed = false;
+
+    GlusterWriteBehind(GlusterFileChannel channel, int size, long interval, boolean append) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(size);
+        this.interval = interval;
+        this.append = append;
+        if (interval > 0) {
+            flusher = timer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushIfDue();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Takes as much of the buffer as belongs in the write-behind buffer, flushing whenever it fills up.
+     *
+     * @return the number of bytes taken, anything left in the buffer should be written directly
+     */
+    synchronized int write(ByteBuffer byteBuffer, long position) throws IOException {
+        guardFailure();
+        if (buffer.position() > 0 && !append && position != start + buffer.position()) {
+            flushBuffer();
+        }
+        int taken = 0;
+        while (byteBuffer.hasRemaining()) {
+            if (0 == buffer.position()) {
+                if (byteBuffer.remaining() >= buffer.capacity()) {
+                    break;
+                }
+                start = position + taken;
+                firstWrite = System.currentTimeMillis();
+                limit = append ? buffer.capacity() : buffer.capacity() - (int) (start % buffer.capacity());
+            }
+            int length = Math.min(byteBuffer.remaining(), limit - buffer.position());
+            ByteBuffer slice = byteBuffer.duplicate();
+            slice.limit(slice.position() + length);
+            buffer.put(slice);
+            byteBuffer.position(byteBuffer.position() + length);
+            taken += length;
+            if (buffer.position() == limit) {
+                flushBuffer();
+            }
+        }
+        return taken;
+    }
+
+    synchronized void flush() throws IOException {
+        guardFailure();
+        flushBuffer();
+    }
+
+    /**
+     * Flushes the buffer once the first byte written to it since the last flush is at least the interval old.
+     */
+    synchronized void flushIfDue() {
+        if (!closed && buffer.position() > 0 && System.currentTimeMillis() - firstWrite >= interval) {
+            try {
+                flushBuffer();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    void flushBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                long offset = append ? GlusterFileChannel.CURRENT_POSITION : start + buffer.position();
+                int written = channel.writeBuffer(buffer, offset);
+                if (written < 0) {
+                    throw new IOException(UtilJNI.strerror());
+                }
+                if (0 == written) {
+                    // a write that makes no progress would otherwise be retried forever
+                    throw new IOException("Write-behind flush wrote nothing at offset " + offset);
+                }
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    void guardFailure() throws IOException {
+        if (null != failure) {
+            IOException e = failure;
+            failure = null;
+            throw new IOException("Write-behind flush failed", e);
+        }
+    }
+
+    /**
+     * Stops the timed flush and writes out whatever is still buffered.
+     */
+    synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (null != flusher) {
+                flusher.cancel(false);
+            }
+            flushBuffer();
+            guardFailure();
+        }
+    }
+}
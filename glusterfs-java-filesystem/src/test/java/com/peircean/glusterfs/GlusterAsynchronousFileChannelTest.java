@@ -0,0 +1,178 @@
+package com.peircean.glusterfs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GlusterAsynchronousFileChannel.class})
+public class GlusterAsynchronousFileChannelTest {
+
+    @Mock
+    private GlusterFileChannel mockChannel;
+
+    private ExecutorService executor;
+    private GlusterAsynchronousFileChannel channel;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        channel = new GlusterAsynchronousFileChannel(mockChannel, executor);
+        doReturn(EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE)).when(mockChannel).getOptions();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDefaultExecutor_isBounded() {
+        ExecutorService defaultExecutor = new GlusterAsynchronousFileChannel(mockChannel, null).getExecutor();
+
+        assertEquals(GlusterAsynchronousFileChannel.DEFAULT_THREADS,
+                ((ThreadPoolExecutor) defaultExecutor).getMaximumPoolSize());
+    }
+
+    @Test
+    public void testRead_future() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        doReturn(10).when(mockChannel).read(buffer, 100);
+
+        Future<Integer> read = channel.read(buffer, 100);
+
+        assertEquals(10, (int) read.get());
+        verify(mockChannel).read(buffer, 100);
+    }
+
+    @Test
+    public void testWrite_handler() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        doReturn(10).when(mockChannel).write(buffer, 100);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<>();
+
+        channel.write(buffer, 100, "attachment", new CompletionHandler<Integer, String>() {
+            @Override
+            public void completed(Integer written, String attachment) {
+                result.set(written + attachment);
+                latch.countDown();
+            }
+
+            @Override
+            public void failed(Throwable exc, String attachment) {
+                result.set(exc);
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("10attachment", result.get());
+    }
+
+    @Test
+    public void testRead_handlerFailed() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        final IOException failure = new IOException();
+        doThrow(failure).when(mockChannel).read(buffer, 0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> result = new AtomicReference<>();
+
+        channel.read(buffer, 0, null, new CompletionHandler<Integer, Object>() {
+            @Override
+            public void completed(Integer read, Object attachment) {
+                latch.countDown();
+            }
+
+            @Override
+            public void failed(Throwable exc, Object attachment) {
+                result.set(exc);
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertSame(failure, result.get());
+    }
+
+    @Test(expected = NonReadableChannelException.class)
+    public void testRead_whenNotReadable() {
+        doReturn(EnumSet.of(StandardOpenOption.WRITE)).when(mockChannel).getOptions();
+
+        channel.read(ByteBuffer.allocate(10), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrite_whenNegativePosition() {
+        channel.write(ByteBuffer.allocate(10), -1);
+    }
+
+    @Test
+    public void testRead_afterClose() throws Exception {
+        doNothing().when(mockChannel).close();
+        channel.close();
+
+        Future<Integer> read = channel.read(ByteBuffer.allocate(10), 0);
+
+        try {
+            read.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AsynchronousCloseException);
+        }
+        assertFalse(channel.isOpen());
+        verify(mockChannel).close();
+    }
+
+    @Test
+    public void testClose_waitsForRunningOperations() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await();
+                return 10;
+            }
+        }).when(mockChannel).read(buffer, 0);
+        doNothing().when(mockChannel).close();
+
+        Future<Integer> read = channel.read(buffer, 0);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<?> closing = Executors.newSingleThreadExecutor().submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                channel.close();
+                return null;
+            }
+        });
+        Thread.sleep(100);
+        verify(mockChannel, never()).close();
+
+        release.countDown();
+        closing.get(5, TimeUnit.SECONDS);
+        assertEquals(10, (int) read.get());
+        verify(mockChannel).close();
+    }
+}
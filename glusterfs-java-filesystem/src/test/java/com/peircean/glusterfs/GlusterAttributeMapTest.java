@@ -0,0 +1,109 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+
+public class GlusterAttributeMapTest {
+    private stat stat;
+
+    @Before
+    public void setUp() {
+        stat = new stat();
+        stat.st_mode = 0100640;
+        stat.st_size = 4096;
+        stat.st_ino = 42;
+        stat.st_nlink = 2;
+        stat.st_uid = 1000;
+        stat.st_gid = 100;
+        stat.mtime = 1400000000;
+        stat.ctime = 1300000000;
+    }
+
+    @Test
+    public void testParse_defaultsToBasic() {
+        assertEquals(Arrays.asList("size"), GlusterAttributeMap.parse("size"));
+        assertEquals(GlusterAttributeMap.BASIC, GlusterAttributeMap.parse("*"));
+    }
+
+    @Test
+    public void testParse_keepsViewOrder() {
+        assertEquals(Arrays.asList("size", "permissions", "uid"), GlusterAttributeMap.parse("unix:uid,permissions,size"));
+    }
+
+    @Test
+    public void testParse_whenWildcard() {
+        assertEquals(GlusterAttributeMap.POSIX, GlusterAttributeMap.parse("posix:*"));
+        assertEquals(GlusterAttributeMap.UNIX, GlusterAttributeMap.parse("unix:size,*"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testParse_whenUnknownView() {
+        GlusterAttributeMap.parse("dos:*");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_whenUnknownName() {
+        GlusterAttributeMap.parse("basic:permissions");
+    }
+
+    @Test
+    public void testGet() {
+        Map<String, Object> map = new GlusterAttributeMap(stat, GlusterAttributeMap.UNIX);
+
+        assertEquals(4096L, map.get("size"));
+        assertEquals(0100640, map.get("mode"));
+        assertEquals(42L, map.get("ino"));
+        assertEquals(2, map.get("nlink"));
+        assertEquals(1000, map.get("uid"));
+        assertEquals(true, map.get("isRegularFile"));
+        assertEquals(false, map.get("isDirectory"));
+        assertEquals(42L, map.get("fileKey"));
+        assertEquals(FileTime.fromMillis(1400000000000L), map.get("lastModifiedTime"));
+        assertEquals(FileTime.fromMillis(1300000000000L), map.get("ctime"));
+        assertEquals("1000", ((UserPrincipal) map.get("owner")).getName());
+        Set<PosixFilePermission> permissions = (Set<PosixFilePermission>) map.get("permissions");
+        assertEquals(3, permissions.size());
+        assertTrue(permissions.contains(PosixFilePermission.GROUP_READ));
+    }
+
+    @Test
+    public void testGet_whenNotRequested() {
+        Map<String, Object> map = new GlusterAttributeMap(stat, Arrays.asList("size"));
+
+        assertNull(map.get("mode"));
+        assertFalse(map.containsKey("mode"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testGet_decodesFromStatWhenRead() {
+        Map<String, Object> map = new GlusterAttributeMap(stat, Arrays.asList("size"));
+        stat.st_size = 8192;
+
+        assertEquals(8192L, map.get("size"));
+    }
+
+    @Test
+    public void testEntrySet() {
+        Map<String, Object> map = new GlusterAttributeMap(stat, Arrays.asList("size", "isDirectory"));
+
+        assertEquals("{size=4096, isDirectory=false}", map.toString());
+        assertEquals(map, new HashMap<String, Object>(map));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPut() {
+        new GlusterAttributeMap(stat, GlusterAttributeMap.BASIC).put("size", 1L);
+    }
+}
@@ -0,0 +1,119 @@
+package com.peircean.glusterfs;
+
+import org.junit.Test;
+import sun.nio.ch.DirectBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.Assert.*;
+
+public class GlusterBufferPoolTest {
+    private GlusterBufferPool pool = new GlusterBufferPool(GlusterBufferPool.DEFAULT_MAX_POOLED);
+
+    @Test
+    public void testSizeClass() {
+        assertEquals(0, GlusterBufferPool.sizeClass(0));
+        assertEquals(0, GlusterBufferPool.sizeClass(4096));
+        assertEquals(1, GlusterBufferPool.sizeClass(4097));
+        assertEquals(1, GlusterBufferPool.sizeClass(8192));
+        assertEquals(10, GlusterBufferPool.sizeClass(GlusterBufferPool.MAX_CLASS));
+    }
+
+    @Test
+    public void testAcquire() {
+        ByteBuffer buffer = pool.acquire(5000);
+
+        assertTrue(buffer.isDirect());
+        assertEquals(8192, buffer.capacity());
+        assertEquals(0, buffer.position());
+        assertEquals(5000, buffer.limit());
+        assertEquals(0, ((DirectBuffer) buffer).address() % GlusterBufferPool.ALIGNMENT);
+        assertEquals(8192, pool.getInUseBytes());
+        assertEquals(1, pool.getMisses());
+    }
+
+    @Test
+    public void testRelease_threadCached() {
+        ByteBuffer buffer = pool.acquire(100);
+        buffer.position(50);
+
+        pool.release(buffer);
+        ByteBuffer again = pool.acquire(200);
+
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(200, again.limit());
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testRelease_sharedBetweenThreads() throws Exception {
+        final ByteBuffer buffer = pool.acquire(GlusterBufferPool.MAX_CLASS);
+        pool.release(buffer);
+        assertEquals(GlusterBufferPool.MAX_CLASS, pool.getPooledBytes());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ByteBuffer other = executor.submit(new Callable<ByteBuffer>() {
+                @Override
+                public ByteBuffer call() {
+                    return pool.acquire(GlusterBufferPool.MAX_CLASS);
+                }
+            }).get();
+            assertSame(buffer, other);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testRelease_whenOverCap() {
+        pool.setMaxPooled(GlusterBufferPool.MAX_CLASS);
+        ByteBuffer first = pool.acquire(GlusterBufferPool.MAX_CLASS);
+        ByteBuffer second = pool.acquire(GlusterBufferPool.MAX_CLASS);
+
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(GlusterBufferPool.MAX_CLASS, pool.getPooledBytes());
+        assertEquals(0, pool.getInUseBytes());
+    }
+
+    @Test
+    public void testSetMaxPooled_trims() {
+        pool.release(pool.acquire(GlusterBufferPool.MAX_CLASS));
+
+        pool.setMaxPooled(0);
+
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testAcquire_whenLargerThanClasses() {
+        int size = GlusterBufferPool.MAX_CLASS + 1;
+        ByteBuffer buffer = pool.acquire(size);
+
+        assertEquals(size, buffer.capacity());
+        pool.release(buffer);
+
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(0, pool.getInUseBytes());
+    }
+
+    @Test
+    public void testRelease_whenForeign() {
+        pool.release(ByteBuffer.allocate(GlusterBufferPool.MIN_CLASS));
+
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAcquire_whenNegative() {
+        pool.acquire(-1);
+    }
+}
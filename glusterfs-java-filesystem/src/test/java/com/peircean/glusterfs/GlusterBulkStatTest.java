@@ -0,0 +1,195 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GLFS.class, UtilJNI.class, GlusterBulkStat.class})
+public class GlusterBulkStatTest {
+    private long volptr = 123l;
+    private GlusterFileSystem fileSystem;
+    private GlusterBulkStat bulkStat;
+
+    @Before
+    public void setUp() {
+        fileSystem = new GlusterFileSystem(new GlusterFileSystemProvider(), "host", "vol", volptr);
+        fileSystem.getHandleCache().setMaxHandles(0);
+        bulkStat = fileSystem.getBulkStat();
+        mockStatic(GLFS.class);
+        mockStatic(UtilJNI.class);
+        when(GLFS.glfs_stat(eq(volptr), anyString(), any(stat.class))).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                String path = (String) invocation.getArguments()[1];
+                if (path.endsWith("missing")) {
+                    return -1;
+                }
+                ((stat) invocation.getArguments()[2]).st_size = path.length();
+                return 0;
+            }
+        });
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+    }
+
+    private GlusterPath path(String path) {
+        return new GlusterPath(fileSystem, path);
+    }
+
+    @Test
+    public void testStat() throws IOException {
+        List<Path> paths = new ArrayList<Path>();
+        for (int i = 0; i < 100; i++) {
+            paths.add(path("/d" + (i % 3) + "/file" + i));
+        }
+        paths.add(path("/d0/missing"));
+        bulkStat.setParallelism(4);
+        bulkStat.setBatchSize(5);
+
+        Map<Path, GlusterBulkStat.Result> results = bulkStat.stat(paths);
+
+        assertEquals(paths, new ArrayList<Path>(results.keySet()));
+        assertEquals(paths.get(42).toString().length(), results.get(paths.get(42)).get().size());
+        assertTrue(results.get(path("/d0/missing")).getException() instanceof NoSuchFileException);
+        assertNull(results.get(path("/d0/missing")).getAttributes());
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testResultGet_whenFailed() throws IOException {
+        bulkStat.stat(Arrays.asList(path("/missing"))).get(path("/missing")).get();
+    }
+
+    @Test
+    public void testStat_dontFollowLinks() throws IOException {
+        when(GLFS.glfs_lstat(eq(volptr), eq("/a"), any(stat.class))).thenReturn(0);
+
+        bulkStat.stat(Arrays.asList(path("/a")), LinkOption.NOFOLLOW_LINKS);
+
+        verifyStatic();
+        GLFS.glfs_lstat(eq(volptr), eq("/a"), any(stat.class));
+        verifyStatic(never());
+        GLFS.glfs_stat(anyLong(), anyString(), any(stat.class));
+    }
+
+    @Test
+    public void testResults() throws IOException {
+        GlusterBulkStat.Results results = bulkStat.results(Arrays.asList(path("/a"), path("/b"), path("/a")));
+        Set<String> seen = new HashSet<String>();
+        int count = 0;
+        GlusterBulkStat.Result result;
+        while (null != (result = results.next())) {
+            seen.add(result.getPath().toString());
+            count++;
+        }
+        results.close();
+
+        assertEquals(3, count);
+        assertEquals(new HashSet<String>(Arrays.asList("/a", "/b")), seen);
+    }
+
+    @Test(timeout = 10000)
+    public void testResults_closeWhileWaiting() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        when(GLFS.glfs_stat(eq(volptr), eq("/slow/b"), any(stat.class))).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws InterruptedException {
+                release.await();
+                return 0;
+            }
+        });
+        bulkStat.setParallelism(1);
+        bulkStat.setBatchSize(1);
+        final GlusterBulkStat.Results results = bulkStat.results(Arrays.asList(path("/a"), path("/slow/b"),
+                path("/slow/c")));
+        assertEquals(path("/a"), results.next().getPath());
+
+        Thread closer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                results.close();
+            }
+        };
+        closer.start();
+
+        assertNull(results.next());
+        assertNull(results.next());
+        closer.join();
+        release.countDown();
+    }
+
+    @Test(timeout = 10000)
+    public void testResults_whenLookupThrowsError() throws IOException {
+        when(GLFS.glfs_stat(eq(volptr), eq("/broken"), any(stat.class))).thenThrow(new AssertionError("broken"));
+        GlusterBulkStat.Results results = bulkStat.results(Arrays.asList(path("/broken")));
+
+        GlusterBulkStat.Result result = results.next();
+        results.close();
+
+        assertEquals(path("/broken"), result.getPath());
+        assertTrue(result.getException().getCause() instanceof AssertionError);
+    }
+
+    @Test
+    public void testResults_whenEmpty() throws IOException {
+        assertNull(bulkStat.results(Collections.<Path>emptyList()).next());
+    }
+
+    @Test
+    public void testBatches_groupByParent() {
+        bulkStat.setBatchSize(2);
+
+        List<List<Path>> batches = bulkStat.batches(Arrays.asList(path("/x/1"), path("/y/1"), path("/x/2"),
+                path("/x/3")));
+
+        assertEquals(3, batches.size());
+        assertEquals(Arrays.asList(path("/x/1"), path("/x/2")), batches.get(0));
+        assertEquals(Arrays.asList(path("/x/3")), batches.get(1));
+        assertEquals(Arrays.asList(path("/y/1")), batches.get(2));
+    }
+
+    @Test(expected = ProviderMismatchException.class)
+    public void testBatches_whenOtherFileSystem() {
+        GlusterFileSystem other = new GlusterFileSystem(new GlusterFileSystemProvider(), "host", "other", 456l);
+        bulkStat.batches(Arrays.asList(new GlusterPath(other, "/a")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetParallelism_whenNotPositive() {
+        bulkStat.setParallelism(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetBatchSize_whenNotPositive() {
+        bulkStat.setBatchSize(0);
+    }
+}
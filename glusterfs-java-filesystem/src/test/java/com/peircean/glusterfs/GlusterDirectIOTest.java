@@ -0,0 +1,144 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.nio.ByteBuffer;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GLFS.class, GlusterDirectIO.class})
+public class GlusterDirectIOTest {
+    private static final int BLOCK = GlusterDirectIO.ALIGNMENT;
+
+    @Mock
+    private GlusterFileChannel mockChannel;
+
+    private GlusterDirectIO directIO;
+    private long fileptr = 1234l;
+
+    @Before
+    public void setUp() {
+        directIO = new GlusterDirectIO(mockChannel);
+        doReturn(fileptr).when(mockChannel).getFileptr();
+    }
+
+    @Test
+    public void testRead_whenAligned() {
+        ByteBuffer buffer = GlusterBufferPool.allocateAligned(BLOCK);
+        long address = GlusterFileChannel.bufferAddress(buffer);
+        doReturn((long) BLOCK).when(mockChannel).glfsRead(address, BLOCK, 2 * BLOCK);
+
+        long read = directIO.read(buffer, 2 * BLOCK);
+
+        assertEquals(BLOCK, read);
+        assertEquals(BLOCK, buffer.position());
+    }
+
+    @Test
+    public void testRead_whenUnaligned() {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        doReturn((long) BLOCK).when(mockChannel).glfsRead(anyLong(), eq(BLOCK), eq(0L));
+
+        long read = directIO.read(buffer, 100);
+
+        assertEquals(10, read);
+        assertEquals(10, buffer.position());
+        verify(mockChannel).glfsRead(anyLong(), eq(BLOCK), eq(0L));
+    }
+
+    @Test
+    public void testRead_whenUnalignedPastEnd() {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        doReturn(50L).when(mockChannel).glfsRead(anyLong(), eq(BLOCK), eq(0L));
+
+        long read = directIO.read(buffer, 100);
+
+        assertEquals(0, read);
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testWrite_whenAligned() {
+        ByteBuffer buffer = GlusterBufferPool.allocateAligned(2 * BLOCK);
+        long address = GlusterFileChannel.bufferAddress(buffer);
+        doReturn(2 * BLOCK).when(mockChannel).glfsWrite(address, 2 * BLOCK, BLOCK);
+
+        int written = directIO.write(buffer, BLOCK);
+
+        assertEquals(2 * BLOCK, written);
+        assertEquals(2 * BLOCK, buffer.position());
+    }
+
+    @Test
+    public void testWrite_whenUnalignedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK);
+        doReturn(BLOCK).when(mockChannel).glfsWrite(anyLong(), eq(BLOCK), eq(0L));
+
+        int written = directIO.write(buffer, 0);
+
+        assertEquals(BLOCK, written);
+        assertEquals(BLOCK, buffer.position());
+    }
+
+    @Test
+    public void testWrite_whenEndingTheFile() throws Exception {
+        stat stat = new stat();
+        stat.st_size = BLOCK;
+        PowerMockito.whenNew(stat.class).withNoArguments().thenReturn(stat);
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_fstat(fileptr, stat)).thenReturn(0);
+        when(GLFS.glfs_ftruncate(fileptr, BLOCK + 10)).thenReturn(0);
+        doReturn(BLOCK).when(mockChannel).glfsWrite(anyLong(), eq(BLOCK), eq((long) BLOCK));
+
+        int written = directIO.write(ByteBuffer.allocate(10), BLOCK);
+
+        assertEquals(10, written);
+        verifyStatic();
+        GLFS.glfs_ftruncate(fileptr, BLOCK + 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrite_whenPartialBlockInsideFile() throws Exception {
+        stat stat = new stat();
+        stat.st_size = 4 * BLOCK;
+        PowerMockito.whenNew(stat.class).withNoArguments().thenReturn(stat);
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_fstat(fileptr, stat)).thenReturn(0);
+
+        directIO.write(ByteBuffer.allocate(10), BLOCK);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrite_whenOffsetUnaligned() {
+        directIO.write(GlusterBufferPool.allocateAligned(BLOCK), 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrite_whenAppendUnaligned() {
+        directIO.write(ByteBuffer.allocate(10), GlusterFileChannel.CURRENT_POSITION);
+    }
+
+    @Test
+    public void testRoundUp() {
+        assertEquals(0, GlusterDirectIO.roundUp(0));
+        assertEquals(BLOCK, GlusterDirectIO.roundUp(1));
+        assertEquals(BLOCK, GlusterDirectIO.roundUp(BLOCK));
+        assertEquals(2 * BLOCK, GlusterDirectIO.roundUp(BLOCK + 1));
+    }
+}
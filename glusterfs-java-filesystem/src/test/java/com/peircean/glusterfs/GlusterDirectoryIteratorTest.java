@@ -126,17 +126,12 @@ public class GlusterDirectoryIteratorTest {
                 PowerMockito.whenNew(dirent.class).withNoArguments().thenReturn(mockCurrentDirent, mockNextDirent);
                 break;
         }
-        long nextPtr = 4444l;
         PowerMockito.mockStatic(dirent.class);
-        Mockito.when(dirent.malloc(dirent.SIZE_OF)).thenReturn(nextPtr);
-
-        PowerMockito.doNothing().when(dirent.class);
-        dirent.memmove(mockNextDirent, nextPtr, dirent.SIZE_OF);
         PowerMockito.doNothing().when(dirent.class);
-        dirent.free(nextPtr);
+        dirent.memmove(eq(mockNextDirent), anyLong(), eq((long) dirent.SIZE_OF));
 
         PowerMockito.mockStatic(GLFS.class);
-        PowerMockito.when(GLFS.glfs_readdir_r(dirHandle, mockCurrentDirent, nextPtr)).thenReturn(0);
+        PowerMockito.when(GLFS.glfs_readdir_r(eq(dirHandle), eq(mockCurrentDirent), anyLong())).thenReturn(0);
 
         Mockito.doReturn(mockPath).when(mockStream).getDir();
         String stringPath = "foo";
@@ -175,9 +170,9 @@ public class GlusterDirectoryIteratorTest {
 
                 PowerMockito.verifyNew(dirent.class, times(4)).withNoArguments();
                 PowerMockito.verifyStatic(times(2));
-                dirent.memmove(mockNextDirent, nextPtr, dirent.SIZE_OF);
-                PowerMockito.verifyStatic(times(2));
-                dirent.free(nextPtr);
+                dirent.memmove(eq(mockNextDirent), anyLong(), eq((long) dirent.SIZE_OF));
+                PowerMockito.verifyStatic(never());
+                dirent.malloc(anyLong());
                 break;
             case 2:
                 verify(mockCurrentDirent, times(3)).getName();
@@ -188,9 +183,9 @@ public class GlusterDirectoryIteratorTest {
 
                 PowerMockito.verifyNew(dirent.class, times(6)).withNoArguments();
                 PowerMockito.verifyStatic(times(3));
-                dirent.memmove(mockNextDirent, nextPtr, dirent.SIZE_OF);
-                PowerMockito.verifyStatic(times(3));
-                dirent.free(nextPtr);
+                dirent.memmove(eq(mockNextDirent), anyLong(), eq((long) dirent.SIZE_OF));
+                PowerMockito.verifyStatic(never());
+                dirent.malloc(anyLong());
                 break;
             default:
                 verify(mockCurrentDirent).getName();
@@ -199,9 +194,9 @@ public class GlusterDirectoryIteratorTest {
 
                 PowerMockito.verifyNew(dirent.class, times(2)).withNoArguments();
                 PowerMockito.verifyStatic();
-                dirent.memmove(mockNextDirent, nextPtr, dirent.SIZE_OF);
-                PowerMockito.verifyStatic();
-                dirent.free(nextPtr);
+                dirent.memmove(eq(mockNextDirent), anyLong(), eq((long) dirent.SIZE_OF));
+                PowerMockito.verifyStatic(never());
+                dirent.malloc(anyLong());
                 break;
         }
     }
@@ -16,6 +16,7 @@ import java.util.Iterator;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.*;
 
@@ -62,7 +63,7 @@ public class GlusterDirectoryStreamTest {
         assertEquals(dirHandle, stream.getDirHandle());
         assertEquals(false, stream.isClosed());
         assertEquals(mockPath, stream.getDir());
-        verify(mockPath).getFileSystem();
+        verify(mockPath, times(2)).getFileSystem();
         verify(mockFileSystem).getVolptr();
         verify(mockPath).getString();
         verifyStatic();
@@ -0,0 +1,36 @@
+package com.peircean.glusterfs;
+
+import org.junit.Test;
+
+import java.nio.file.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class GlusterErrnoTest {
+
+    @Test
+    public void testException() {
+        assertTrue(GlusterErrno.exception(GlusterErrno.ENOENT, "/a", null) instanceof NoSuchFileException);
+        assertTrue(GlusterErrno.exception(GlusterErrno.EEXIST, "/a", null) instanceof FileAlreadyExistsException);
+        assertTrue(GlusterErrno.exception(GlusterErrno.ENOTEMPTY, "/a", null) instanceof DirectoryNotEmptyException);
+        assertTrue(GlusterErrno.exception(GlusterErrno.ENOTDIR, "/a", null) instanceof NotDirectoryException);
+        assertTrue(GlusterErrno.exception(GlusterErrno.EACCES, "/a", null) instanceof AccessDeniedException);
+        assertTrue(GlusterErrno.exception(GlusterErrno.EPERM, "/a", null) instanceof AccessDeniedException);
+    }
+
+    @Test
+    public void testException_whenOther() {
+        FileSystemException exception = (FileSystemException) GlusterErrno.exception(5, "/a", "/b");
+
+        assertEquals(FileSystemException.class, exception.getClass());
+        assertEquals("/a", exception.getFile());
+        assertEquals("/b", exception.getOtherFile());
+        assertEquals("Input/output error (errno 5)", exception.getReason());
+    }
+
+    @Test
+    public void testMessage_whenUnknown() {
+        assertEquals("errno 1000", GlusterErrno.message(1000));
+    }
+}
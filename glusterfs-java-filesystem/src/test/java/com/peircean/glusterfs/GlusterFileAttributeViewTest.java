@@ -0,0 +1,210 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import com.peircean.libgfapi_jni.internal.structs.timespec;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalNotFoundException;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GLFS.class, UtilJNI.class, GlusterFileAttributeView.class, GlusterHandleCache.class})
+public class GlusterFileAttributeViewTest {
+    private long volptr = 123l;
+    private GlusterFileSystem fileSystem;
+    private GlusterPath path;
+
+    @Before
+    public void setUp() {
+        fileSystem = new GlusterFileSystem(new GlusterFileSystemProvider(), "host", "vol", volptr);
+        path = new GlusterPath(fileSystem, "/a");
+        mockStatic(GLFS.class);
+        mockStatic(UtilJNI.class);
+        when(GLFS.glfs_h_lookupat(eq(volptr), eq(0L), eq("/"), any(stat.class), eq(1))).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable {
+                ((stat) invocation.getArguments()[3]).st_mode = 0040755;
+                return 1L;
+            }
+        });
+        when(GLFS.glfs_h_lookupat(eq(volptr), eq(1L), eq("a"), any(stat.class), eq(1))).thenReturn(2L);
+    }
+
+    private UserPrincipal user(final String name) {
+        return new UserPrincipal() {
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    private GroupPrincipal group(final String name) {
+        return new GroupPrincipal() {
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    public void testSetAttributes_singleCallOnHandle() throws IOException {
+        when(GLFS.glfs_h_setattrs(eq(volptr), eq(2L), any(stat.class), anyInt())).thenReturn(0);
+        GlusterFileAttributeView view = new GlusterFileAttributeView(path, true);
+
+        view.setAttributes(PosixFilePermissions.fromString("rwxr-x---"), user("1000"), group("100"),
+                FileTime.from(1400000000, TimeUnit.SECONDS), null);
+
+        ArgumentCaptor<stat> captor = ArgumentCaptor.forClass(stat.class);
+        verifyStatic();
+        GLFS.glfs_h_setattrs(eq(volptr), eq(2L), captor.capture(), eq(GlusterFileAttributeView.SET_ATTR_MODE
+                | GlusterFileAttributeView.SET_ATTR_UID | GlusterFileAttributeView.SET_ATTR_GID
+                | GlusterFileAttributeView.SET_ATTR_MTIME));
+        assertEquals(0750, captor.getValue().st_mode);
+        assertEquals(1000, captor.getValue().st_uid);
+        assertEquals(100, captor.getValue().st_gid);
+        assertEquals(1400000000, captor.getValue().mtime);
+        verifyStatic(never());
+        GLFS.glfs_chmod(anyLong(), anyString(), anyInt());
+        verifyStatic(never());
+        GLFS.glfs_chown(anyLong(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testSetAttributes_whenNothingToSet() throws IOException {
+        new GlusterFileAttributeView(path, true).setAttributes(null, null, null, null, null);
+
+        verifyStatic(never());
+        GLFS.glfs_h_setattrs(anyLong(), anyLong(), any(stat.class), anyInt());
+    }
+
+    @Test
+    public void testSetAttributes_byPathWithoutHandle() throws IOException {
+        fileSystem.getHandleCache().setMaxHandles(0);
+        when(GLFS.glfs_chmod(volptr, "/a", 0644)).thenReturn(0);
+        when(GLFS.glfs_chown(volptr, "/a", -1, 100)).thenReturn(0);
+        when(GLFS.glfs_utimens(eq(volptr), eq("/a"), any(timespec[].class))).thenReturn(0);
+        GlusterFileAttributeView view = new GlusterFileAttributeView(path, true);
+
+        view.setAttributes(PosixFilePermissions.fromString("rw-r--r--"), null, group("100"),
+                FileTime.from(20000000007L, TimeUnit.NANOSECONDS), FileTime.from(10, TimeUnit.SECONDS));
+
+        verifyStatic();
+        GLFS.glfs_chmod(volptr, "/a", 0644);
+        verifyStatic();
+        GLFS.glfs_chown(volptr, "/a", -1, 100);
+        ArgumentCaptor<timespec[]> captor = ArgumentCaptor.forClass(timespec[].class);
+        verifyStatic();
+        GLFS.glfs_utimens(eq(volptr), eq("/a"), captor.capture());
+        assertEquals(10, captor.getValue()[0].tv_sec);
+        assertEquals(0, captor.getValue()[0].tv_nsec);
+        assertEquals(20, captor.getValue()[1].tv_sec);
+        assertEquals(7, captor.getValue()[1].tv_nsec);
+    }
+
+    @Test
+    public void testSetTimes_keepsAccessTime() throws IOException {
+        fileSystem.getHandleCache().setMaxHandles(0);
+        when(GLFS.glfs_utimens(eq(volptr), eq("/a"), any(timespec[].class))).thenReturn(0);
+
+        new GlusterFileAttributeView(path, true).setTimes(FileTime.from(20, TimeUnit.SECONDS), null, null);
+
+        ArgumentCaptor<timespec[]> captor = ArgumentCaptor.forClass(timespec[].class);
+        verifyStatic();
+        GLFS.glfs_utimens(eq(volptr), eq("/a"), captor.capture());
+        assertEquals(GlusterFileAttributeView.UTIME_OMIT, captor.getValue()[0].tv_nsec);
+        assertEquals(20, captor.getValue()[1].tv_sec);
+        assertEquals(0, captor.getValue()[1].tv_nsec);
+        verifyStatic(never());
+        GLFS.glfs_stat(anyLong(), anyString(), any(stat.class));
+    }
+
+    @Test
+    public void testSetOwner_dontFollowLinks() throws IOException {
+        when(GLFS.glfs_lchown(volptr, "/a", 1000, -1)).thenReturn(0);
+
+        new GlusterFileAttributeView(path, false).setOwner(user("1000"));
+
+        verifyStatic();
+        GLFS.glfs_lchown(volptr, "/a", 1000, -1);
+        verifyStatic(never());
+        GLFS.glfs_h_setattrs(anyLong(), anyLong(), any(stat.class), anyInt());
+    }
+
+    @Test(expected = FileSystemException.class)
+    public void testSetPermissions_dontFollowLinks_whenSymbolicLink() throws IOException {
+        when(GLFS.glfs_lstat(eq(volptr), eq("/a"), any(stat.class))).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                ((stat) invocation.getArguments()[2]).st_mode = 0120777;
+                return 0;
+            }
+        });
+
+        new GlusterFileAttributeView(path, false).setPermissions(PosixFilePermissions.fromString("rwx------"));
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    public void testSetOwner_whenNotPermitted() throws IOException {
+        fileSystem.getHandleCache().setMaxHandles(0);
+        when(GLFS.glfs_chown(volptr, "/a", 0, -1)).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.EPERM);
+
+        new GlusterFileAttributeView(path, true).setOwner(user("0"));
+    }
+
+    @Test(expected = UserPrincipalNotFoundException.class)
+    public void testSetOwner_whenNotNumeric() throws IOException {
+        new GlusterFileAttributeView(path, true).setOwner(user("root"));
+    }
+
+    @Test
+    public void testSeconds() {
+        assertEquals(1, GlusterFileAttributeView.seconds(1999999999));
+        assertEquals(-1, GlusterFileAttributeView.seconds(-1));
+        assertEquals(-1, GlusterFileAttributeView.seconds(-1000000000));
+    }
+
+    @Test
+    public void testName() {
+        assertEquals("posix", new GlusterFileAttributeView(path, true).name());
+    }
+
+    @Test
+    public void testName_ofRequestedView() {
+        assertEquals("basic", GlusterFileAttributeView.of(path, true, BasicFileAttributeView.class).name());
+        assertEquals("owner", GlusterFileAttributeView.of(path, true, FileOwnerAttributeView.class).name());
+        assertEquals("posix", GlusterFileAttributeView.of(path, true, PosixFileAttributeView.class).name());
+    }
+}
@@ -9,6 +9,7 @@ import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class GlusterFileAttributesTest extends TestCase {
 
@@ -47,6 +48,30 @@ public class GlusterFileAttributesTest extends TestCase {
         assertEquals(FileTime.fromMillis(ATIME * 1000), attrib.lastAccessTime());
     }
 
+    @Test
+    public void testTimes_keepNanoseconds() {
+        attrib = new GlusterFileAttributes(MODE, UID, GID, SIZE, ATIME, CTIME, MTIME, INODE, 1, 2, 3);
+
+        assertEquals(FileTime.from(ATIME * 1000000000 + 1, TimeUnit.NANOSECONDS), attrib.lastAccessTime());
+        assertEquals(FileTime.from(CTIME * 1000000000 + 2, TimeUnit.NANOSECONDS), attrib.changeTime());
+        assertEquals(FileTime.from(MTIME * 1000000000 + 3, TimeUnit.NANOSECONDS), attrib.lastModifiedTime());
+        assertEquals(attrib.changeTime(), attrib.creationTime());
+    }
+
+    @Test
+    public void testFromStat_keepsNanoseconds() {
+        stat stat = new stat();
+        stat.mtime = MTIME;
+        stat.mtime_nsec = 500;
+
+        GlusterFileAttributes first = GlusterFileAttributes.fromStat(stat);
+        stat.mtime_nsec = 501;
+        GlusterFileAttributes second = GlusterFileAttributes.fromStat(stat);
+
+        assertTrue(first.lastModifiedTime().compareTo(second.lastModifiedTime()) < 0);
+        assertFalse(first.equals(second));
+    }
+
     @Test
     public void testPermissions() {
         Set<PosixFilePermission> expected = PosixFilePermissions.fromString("rwxrwxrwx");
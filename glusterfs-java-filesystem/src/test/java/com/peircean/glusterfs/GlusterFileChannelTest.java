@@ -9,18 +9,26 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import sun.nio.ch.DirectBuffer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.OpenOption;
 import java.nio.file.StandardOpenOption;
@@ -29,8 +37,10 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
@@ -139,6 +149,42 @@ public class GlusterFileChannelTest extends TestCase {
 		}
 	}
 
+	@Test
+	public void testNewFileChannel_whenPreallocate() throws IOException, URISyntaxException {
+		preallocateHelper(0);
+	}
+
+	@Test
+	public void testNewFileChannel_whenPreallocateFails() throws IOException, URISyntaxException {
+		try {
+			preallocateHelper(-1);
+			fail();
+		} catch (IOException e) {
+			verifyStatic();
+			GLFS.glfs_close(4321l);
+		}
+	}
+
+	private void preallocateHelper(int result) throws IOException, URISyntaxException {
+		Set<OpenOption> options = new HashSet<OpenOption>();
+		options.add(StandardOpenOption.WRITE);
+		options.add(GlusterFileOption.preallocate(1000));
+		long volptr = 1234l;
+		long fileptr = 4321l;
+		doReturn(volptr).when(mockFileSystem).getVolptr();
+		doReturn(true).when(mockPath).isAbsolute();
+		doReturn(new URI("gluster://server:volume/foo")).when(mockPath).toUri();
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_open(eq(volptr), eq("/foo"), anyInt())).thenReturn(fileptr);
+		when(GLFS.glfs_fallocate(fileptr, 1, 0, 1000)).thenReturn(result);
+
+		channel.init(mockFileSystem, mockPath, options);
+
+		verifyStatic();
+		GLFS.glfs_fallocate(fileptr, 1, 0, 1000);
+	}
+
 	@Test
 	public void testParseOptions() {
 		Set<StandardOpenOption> options = new HashSet<StandardOpenOption>();
@@ -150,6 +196,181 @@ public class GlusterFileChannelTest extends TestCase {
 		assertEquals(GlusterOpenOption.O_RDWR | GlusterOpenOption.O_APPEND, result);
 	}
 
+	@Test
+	public void testParseOptions_skipsGlusterFileOptions() {
+		Set<OpenOption> options = new HashSet<OpenOption>();
+		options.add(StandardOpenOption.READ);
+		options.add(GlusterFileOption.readAhead());
+
+		int result = channel.parseOptions(options);
+
+		assertEquals(GlusterOpenOption.O_RDONLY, result);
+	}
+
+	@Test
+	public void testParseOptions_whenDirect() {
+		Set<OpenOption> options = new HashSet<OpenOption>();
+		options.add(StandardOpenOption.READ);
+		options.add(GlusterFileOption.direct());
+
+		int result = channel.parseOptions(options);
+
+		assertEquals(GlusterOpenOption.O_RDONLY | GlusterFileChannel.O_DIRECT, result);
+	}
+
+	@Test
+	public void testRead1Arg_whenDirect() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(100);
+		GlusterDirectIO mockDirectIO = Mockito.mock(GlusterDirectIO.class);
+		channel.setDirectIO(mockDirectIO);
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		doReturn(10L).when(mockDirectIO).read(buffer, 100);
+
+		mockStatic(GLFS.class);
+
+		int read = channel.read(buffer);
+
+		assertEquals(10, read);
+		assertEquals(110, channel.getPosition());
+		assertTrue(channel.isOffsetStale());
+		verifyStatic(never());
+		GLFS.glfs_lseek(anyLong(), anyLong(), anyInt());
+	}
+
+	@Test
+	public void testRead1Arg_whenReadAhead() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(100);
+		GlusterReadAhead mockReadAhead = Mockito.mock(GlusterReadAhead.class);
+		channel.setReadAhead(mockReadAhead);
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		doReturn(10L).when(mockReadAhead).read(buffer, 100);
+
+		mockStatic(GLFS.class);
+
+		int read = channel.read(buffer);
+
+		assertEquals(10, read);
+		assertEquals(110, channel.getPosition());
+		assertTrue(channel.isOffsetStale());
+		verify(mockReadAhead).read(buffer, 100);
+		verifyStatic(never());
+		GLFS.glfs_lseek(anyLong(), anyLong(), anyInt());
+		verifyStatic(never());
+		GLFS.glfs_read(anyLong(), anyLong(), anyLong(), anyInt());
+	}
+
+	@Test
+	public void testRead1Arg_afterPositionalRead() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(110);
+		channel.setOffsetStale(true);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(10);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_read(eq(fileptr), anyLong(), eq(10L), eq(0))).thenReturn(10L);
+
+		channel.read(buffer);
+		channel.read((ByteBuffer) buffer.clear());
+
+		assertFalse(channel.isOffsetStale());
+		verifyStatic(times(1));
+		GLFS.glfs_lseek(fileptr, 110, GlusterFileChannel.SEEK_SET);
+	}
+
+	@Test
+	public void testWrite1Arg_discardsReadAhead() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		GlusterReadAhead mockReadAhead = Mockito.mock(GlusterReadAhead.class);
+		channel.setReadAhead(mockReadAhead);
+
+		byte[] bytes = new byte[]{'a'};
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_write(eq(fileptr), anyLong(), eq(1L), eq(0))).thenReturn(1);
+
+		channel.write(ByteBuffer.wrap(bytes));
+
+		verify(mockReadAhead).discard();
+	}
+
+	@Test
+	public void testWrite1Arg_whenWriteBehind() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(100);
+		GlusterWriteBehind mockWriteBehind = Mockito.mock(GlusterWriteBehind.class);
+		channel.setWriteBehind(mockWriteBehind);
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		doAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer b = (ByteBuffer) invocation.getArguments()[0];
+				b.position(b.limit());
+				return 10;
+			}
+		}).when(mockWriteBehind).write(buffer, 100);
+
+		mockStatic(GLFS.class);
+
+		int written = channel.write(buffer);
+
+		assertEquals(10, written);
+		assertEquals(110, channel.getPosition());
+		assertTrue(channel.isOffsetStale());
+		verify(channel, never()).writeBuffer(any(ByteBuffer.class), anyLong());
+	}
+
+	@Test
+	public void testWrite1Arg_whenWriteBehindDeclines() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(100);
+		GlusterWriteBehind mockWriteBehind = Mockito.mock(GlusterWriteBehind.class);
+		channel.setWriteBehind(mockWriteBehind);
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		doReturn(0).when(mockWriteBehind).write(buffer, 100);
+		doReturn(10).when(channel).writeBuffer(buffer, 100);
+
+		mockStatic(GLFS.class);
+
+		int written = channel.write(buffer);
+
+		assertEquals(10, written);
+		assertEquals(110, channel.getPosition());
+		verify(channel).writeBuffer(buffer, 100);
+	}
+
+	@Test
+	public void testRead1Arg_flushesWriteBehind() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		GlusterWriteBehind mockWriteBehind = Mockito.mock(GlusterWriteBehind.class);
+		channel.setWriteBehind(mockWriteBehind);
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		doReturn(10L).when(channel).readBuffer(buffer);
+
+		channel.read(buffer);
+
+		verify(mockWriteBehind).flush();
+	}
+
 	@Test
 	public void testRead1Arg() throws IOException {
 		doNothing().when(channel).guardClosed();
@@ -160,24 +381,141 @@ public class GlusterFileChannelTest extends TestCase {
 		long bufferLength = bytes.length;
 		long offset = 4;
 		channel.setPosition(offset);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
 
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_read(fileptr, bytes, bufferLength, 0)).thenReturn(bufferLength);
-
-		doReturn(bytes).when(mockBuffer).array();
-		doReturn(mockBuffer).when(mockBuffer).position((int) bufferLength);
+		when(GLFS.glfs_read(eq(fileptr), anyLong(), eq(bufferLength), eq(0))).thenReturn(bufferLength);
 
-		int read = channel.read(mockBuffer);
+		int read = channel.read(buffer);
 
 		assertEquals(bufferLength, read);
 
 		verify(channel).guardClosed();
-		verify(mockBuffer).array();
-		verify(mockBuffer).position((int) bufferLength);
+		assertEquals(bufferLength, buffer.position());
 		assertEquals(bufferLength + offset, channel.getPosition());
 
 		verifyStatic();
-		GLFS.glfs_read(fileptr, bytes, bufferLength, 0);
+		GLFS.glfs_read(eq(fileptr), anyLong(), eq(bufferLength), eq(0));
+	}
+
+	@Test
+	public void testRead1Arg_whenDirectBuffer() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(0);
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(10);
+		buffer.position(4);
+		long address = ((DirectBuffer) buffer).address() + 4;
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_read(fileptr, address, 6, 0)).thenReturn(5L);
+
+		int read = channel.read(buffer);
+
+		assertEquals(5, read);
+		assertEquals(9, buffer.position());
+		assertEquals(5, channel.getPosition());
+
+		verifyStatic();
+		GLFS.glfs_read(fileptr, address, 6, 0);
+	}
+
+	@Test
+	public void testRead1Arg_whenHeapBufferNotAtStart() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(0);
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		buffer.position(7);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_read(eq(fileptr), anyLong(), eq(3L), eq(0))).thenReturn(2L);
+
+		int read = channel.read(buffer);
+
+		assertEquals(2, read);
+		assertEquals(9, buffer.position());
+		assertEquals(2, channel.getPosition());
+	}
+
+	@Test
+	public void testReadBuffer_releasesStaging() {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		long inUse = GlusterBufferPool.getInstance().getInUseBytes();
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_pread(eq(fileptr), anyLong(), eq(10L), eq(20L), eq(0))).thenReturn(10L);
+
+		ByteBuffer buffer = ByteBuffer.allocate(10);
+		long read = channel.readBuffer(buffer, 20);
+
+		assertEquals(10, read);
+		assertEquals(10, buffer.position());
+		assertEquals(inUse, GlusterBufferPool.getInstance().getInUseBytes());
+	}
+
+	@Test
+	public void testReadBuffer_stagesAtMostMaxClass() {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		int max = GlusterBufferPool.MAX_CLASS;
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_pread(eq(fileptr), anyLong(), eq((long) max), eq(20L), eq(0))).thenReturn((long) max);
+		when(GLFS.glfs_pread(eq(fileptr), anyLong(), eq(100L), eq(20L + max), eq(0))).thenReturn(100L);
+
+		ByteBuffer buffer = ByteBuffer.allocate(max + 100);
+		long read = channel.readBuffer(buffer, 20);
+
+		assertEquals(max + 100, read);
+		assertFalse(buffer.hasRemaining());
+		verifyStatic(never());
+		GLFS.glfs_pread(eq(fileptr), anyLong(), eq(max + 100L), anyLong(), anyInt());
+	}
+
+	@Test
+	public void testWriteBuffer_stagesAtMostMaxClass() {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		int max = GlusterBufferPool.MAX_CLASS;
+		long inUse = GlusterBufferPool.getInstance().getInUseBytes();
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_pwrite(eq(fileptr), anyLong(), eq((long) max), eq(20L), eq(0))).thenReturn(max);
+		when(GLFS.glfs_pwrite(eq(fileptr), anyLong(), eq(100L), eq(20L + max), eq(0))).thenReturn(100);
+
+		ByteBuffer buffer = ByteBuffer.allocate(max + 100);
+		int written = channel.writeBuffer(buffer, 20);
+
+		assertEquals(max + 100, written);
+		assertFalse(buffer.hasRemaining());
+		assertEquals(inUse, GlusterBufferPool.getInstance().getInUseBytes());
+	}
+
+	@Test
+	public void testRead1Arg_whenEndOfFile() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		long offset = 4;
+		channel.setPosition(offset);
+
+		byte[] bytes = new byte[3];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_read(eq(fileptr), anyLong(), eq(3L), eq(0))).thenReturn(0L);
+
+		int read = channel.read(buffer);
+
+		assertEquals(-1, read);
+		assertEquals(0, buffer.position());
+		assertEquals(offset, channel.getPosition());
 	}
 
 	@Test(expected = IOException.class)
@@ -192,11 +530,9 @@ public class GlusterFileChannelTest extends TestCase {
 		channel.setPosition(offset);
 
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_read(fileptr, bytes, bufferLength, 0)).thenReturn(-1L);
-
-		doReturn(bytes).when(mockBuffer).array();
+		when(GLFS.glfs_read(eq(fileptr), anyLong(), eq(bufferLength), eq(0))).thenReturn(-1L);
 
-		channel.read(mockBuffer);
+		channel.read(ByteBuffer.wrap(bytes));
 	}
 
 	@Test
@@ -291,28 +627,41 @@ public class GlusterFileChannelTest extends TestCase {
 		long fileptr = 1234L;
 		channel.setFileptr(fileptr);
 
-		ByteBuffer[] buffers = new ByteBuffer[2];
-		buffers[0] = mockBuffer;
-		buffers[1] = mockBuffer;
+		ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.allocate(5), ByteBuffer.allocate(5)};
 		int offset = 0;
 		int length = 2;
 
-		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
-		doReturn(bytes).when(mockBuffer).array();
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_readv(eq(fileptr), anyLong(), eq(length), eq(0))).thenReturn(7L);
+
+		long ret = channel.readHelper(buffers, offset, length);
+
+		assertEquals(7, ret);
+		assertEquals(5, buffers[0].position());
+		assertEquals(2, buffers[1].position());
+		verifyStatic();
+		GLFS.glfs_readv(eq(fileptr), anyLong(), eq(length), eq(0));
+	}
+
+	@Test
+	public void testReadHelper_whenDirectBuffers() throws IOException {
+		long fileptr = 1234L;
+		channel.setFileptr(fileptr);
 
-		when(mockBuffer.remaining()).thenReturn(5, 0, 5, 0);
+		ByteBuffer buffer1 = ByteBuffer.allocateDirect(5);
+		ByteBuffer buffer2 = ByteBuffer.allocateDirect(5);
+		ByteBuffer[] buffers = new ByteBuffer[]{buffer1, buffer2};
 
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_read(fileptr, bytes, 5, 0)).thenReturn(5L);
-		doReturn(mockBuffer).when(mockBuffer).position(5);
+		when(GLFS.glfs_readv(eq(fileptr), anyLong(), eq(2), eq(0))).thenReturn(10L);
 
-		channel.readHelper(buffers, offset, length);
+		long ret = channel.readHelper(buffers, 0, 2);
 
-		verify(mockBuffer, times(2)).position(5);
-		verifyStatic(times(2));
-		GLFS.glfs_read(fileptr, bytes, 5, 0);
-		verify(mockBuffer, times(4)).remaining();
-		verify(mockBuffer, times(2)).array();
+		assertEquals(10, ret);
+		assertEquals(5, buffer1.position());
+		assertEquals(5, buffer2.position());
+		verifyStatic();
+		GLFS.glfs_readv(eq(fileptr), anyLong(), eq(2), eq(0));
 	}
 
 	@Test(expected = IOException.class)
@@ -320,19 +669,12 @@ public class GlusterFileChannelTest extends TestCase {
 		long fileptr = 1234L;
 		channel.setFileptr(fileptr);
 
-		ByteBuffer[] buffers = new ByteBuffer[2];
-		buffers[0] = mockBuffer;
-		buffers[1] = mockBuffer;
+		ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.allocate(5), ByteBuffer.allocate(5)};
 		int offset = 0;
 		int length = 2;
 
-		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
-		doReturn(bytes).when(mockBuffer).array();
-
-		when(mockBuffer.remaining()).thenReturn(5, 0, 5, 0);
-
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_read(fileptr, bytes, 5, 0)).thenReturn(-1L);
+		when(GLFS.glfs_readv(eq(fileptr), anyLong(), eq(length), eq(0))).thenReturn(-1L);
 
 		channel.readHelper(buffers, offset, length);
 	}
@@ -342,29 +684,49 @@ public class GlusterFileChannelTest extends TestCase {
 		long fileptr = 1234L;
 		channel.setFileptr(fileptr);
 
-		ByteBuffer[] buffers = new ByteBuffer[2];
-		buffers[0] = mockBuffer;
-		buffers[1] = mockBuffer;
+		ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.allocate(5), ByteBuffer.allocate(5)};
 		int offset = 0;
 		int length = 2;
 
-		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
-		doReturn(bytes).when(mockBuffer).array();
-
-		when(mockBuffer.remaining()).thenReturn(5, 0, 5, 0);
-
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_read(fileptr, bytes, 5, 0)).thenReturn(0L);
-		doReturn(mockBuffer).when(mockBuffer).position(0);
+		when(GLFS.glfs_readv(eq(fileptr), anyLong(), eq(length), eq(0))).thenReturn(0L);
 
 		long ret = channel.readHelper(buffers, offset, length);
 
 		assertEquals(ret, -1);
-		verify(mockBuffer).position(0);
+		assertEquals(0, buffers[0].position());
 		verifyStatic();
-		GLFS.glfs_read(fileptr, bytes, 5, 0);
-		verify(mockBuffer).remaining();
-		verify(mockBuffer).array();
+		GLFS.glfs_readv(eq(fileptr), anyLong(), eq(length), eq(0));
+	}
+
+	@Test
+	public void testIovec() {
+		ByteBuffer buffer1 = ByteBuffer.allocateDirect(8);
+		ByteBuffer buffer2 = ByteBuffer.allocateDirect(16);
+		buffer2.position(4);
+
+		ByteBuffer iov = GlusterFileChannel.iovec(new ByteBuffer[]{buffer1, buffer2});
+
+		assertEquals(2 * GlusterFileChannel.IOVEC_SIZE, iov.remaining());
+		assertEquals(((DirectBuffer) buffer1).address(), iov.getLong(0));
+		assertEquals(8, iov.getLong(8));
+		assertEquals(((DirectBuffer) buffer2).address() + 4, iov.getLong(16));
+		assertEquals(12, iov.getLong(24));
+	}
+
+	@Test
+	public void testDirectTargets() {
+		ByteBuffer direct = ByteBuffer.allocateDirect(4);
+		ByteBuffer heap = ByteBuffer.wrap(new byte[]{'a', 'b', 'c'});
+		heap.position(1);
+
+		ByteBuffer[] targets = channel.directTargets(new ByteBuffer[]{direct, heap}, 0, 2, true);
+
+		assertSame(direct, targets[0]);
+		assertTrue(targets[1].isDirect());
+		assertEquals(2, targets[1].remaining());
+		assertEquals('b', targets[1].get(0));
+		assertEquals(1, heap.position());
 	}
 
 	@Test
@@ -381,31 +743,50 @@ public class GlusterFileChannelTest extends TestCase {
 		options.add(StandardOpenOption.READ);
 		channel.setOptions(options);
 
-		doReturn(10L).when(channel).size();
+		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
 
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(0);
+		long expectedRet = 4L;
+		when(GLFS.glfs_pread(eq(fileptr), anyLong(), eq((long) bytes.length), eq(position), eq(0))).thenReturn(expectedRet);
 
-		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
-		doReturn(bytes).when(mockBuffer).array();
+		long ret = channel.read(buffer, position);
+
+		assertEquals(ret, expectedRet);
+		assertEquals(expectedRet, buffer.position());
+		assertEquals(defaultPosition, channel.getPosition());
+		verifyStatic();
+		GLFS.glfs_pread(eq(fileptr), anyLong(), eq((long) bytes.length), eq(position), eq(0));
+		verifyStatic(never());
+		GLFS.glfs_lseek(anyLong(), anyLong(), anyInt());
+		verify(channel, never()).size();
+		verify(channel).guardClosed();
+	}
+
+	@Test
+	public void testRead2Arg_whenDirectBuffer() throws IOException {
+		long position = 5L;
+		long fileptr = 1234L;
+		channel.setFileptr(fileptr);
 
-		long expectedRet = 7L;
-		when(GLFS.glfs_read(fileptr, bytes, bytes.length, 0)).thenReturn(expectedRet);
+		doNothing().when(channel).guardClosed();
 
-		when(GLFS.glfs_lseek(fileptr, defaultPosition, 0)).thenReturn(0);
+		Set<StandardOpenOption> options = new HashSet<>();
+		options.add(StandardOpenOption.READ);
+		channel.setOptions(options);
 
-		long ret = channel.read(mockBuffer, position);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+		long address = ((DirectBuffer) buffer).address();
 
-		assertEquals(ret, expectedRet);
-		verifyStatic();
-		GLFS.glfs_lseek(fileptr, defaultPosition, 0);
-		verifyStatic();
-		GLFS.glfs_read(fileptr, bytes, bytes.length, 0);
-		verify(mockBuffer).array();
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_pread(fileptr, address, 4096, position, 0)).thenReturn(4096L);
+
+		long ret = channel.read(buffer, position);
+
+		assertEquals(4096, ret);
+		assertEquals(4096, buffer.position());
 		verifyStatic();
-		GLFS.glfs_lseek(fileptr, position, 0);
-		verify(channel).size();
-		verify(channel).guardClosed();
+		GLFS.glfs_pread(fileptr, address, 4096, position, 0);
 	}
 
 	@Test(expected = ClosedChannelException.class)
@@ -436,6 +817,8 @@ public class GlusterFileChannelTest extends TestCase {
 	@Test
 	public void testRead2Arg_whenPositionTooBig() throws IOException {
 		long position = 5L;
+		long fileptr = 1234L;
+		channel.setFileptr(fileptr);
 
 		doNothing().when(channel).guardClosed();
 
@@ -443,19 +826,19 @@ public class GlusterFileChannelTest extends TestCase {
 		options.add(StandardOpenOption.READ);
 		channel.setOptions(options);
 
-		doReturn(4L).when(channel).size();
+		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
 
-		long expectedRet = -1L;
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_pread(eq(fileptr), anyLong(), eq((long) bytes.length), eq(position), eq(0))).thenReturn(0L);
 
-		long ret = channel.read(mockBuffer, position);
+		long ret = channel.read(ByteBuffer.wrap(bytes), position);
 
-		assertEquals(ret, expectedRet);
-		verify(channel).size();
+		assertEquals(-1L, ret);
 		verify(channel).guardClosed();
 	}
 
 	@Test(expected = IOException.class)
-	public void testRead2Arg_whenFirstSeekFails() throws IOException {
+	public void testRead2Arg_whenReadFails() throws IOException {
 		long position = 5L;
 		long fileptr = 1234L;
 		channel.setFileptr(fileptr);
@@ -466,120 +849,98 @@ public class GlusterFileChannelTest extends TestCase {
 		options.add(StandardOpenOption.READ);
 		channel.setOptions(options);
 
-		doReturn(10L).when(channel).size();
+		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
 
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(-1);
-
-		channel.read(mockBuffer, position);
+		when(GLFS.glfs_pread(eq(fileptr), anyLong(), eq((long) bytes.length), eq(position), eq(0))).thenReturn(-1L);
 
-		verifyStatic();
-		GLFS.glfs_lseek(fileptr, position, 0);
-		verify(channel).size();
-		verify(channel).guardClosed();
+		channel.read(ByteBuffer.wrap(bytes), position);
 	}
 
-	@Test(expected = IOException.class)
-	public void testRead2Arg_whenReadFails() throws IOException {
-		long position = 5L;
-		long fileptr = 1234L;
-		long defaultPosition = 0L;
-		channel.setFileptr(fileptr);
-		channel.setPosition(defaultPosition);
-
-		doNothing().when(channel).guardClosed();
+    @Test
+    public void testWrite1Arg() throws IOException {
+        doNothing().when(channel).guardClosed();
+        long fileptr = 1234L;
+        channel.setFileptr(fileptr);
+        channel.setPosition(0);
 
-		Set<StandardOpenOption> options = new HashSet<>();
-		options.add(StandardOpenOption.READ);
-		channel.setOptions(options);
+        byte[] bytes = new byte[]{'a', 'b'};
+        int bufferLength = bytes.length;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
 
-		doReturn(10L).when(channel).size();
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_write(eq(fileptr), anyLong(), eq((long) bufferLength), eq(0))).thenReturn(bufferLength);
 
-		mockStatic(GLFS.class);
-		when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(0);
+        int written = channel.write(buffer);
 
-		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
-		doReturn(bytes).when(mockBuffer).array();
+        assertEquals(bufferLength, written);
+        assertEquals(bufferLength, buffer.position());
+        assertEquals(bufferLength, channel.getPosition());
 
-		long expectedRet = -1;
-		when(GLFS.glfs_read(fileptr, bytes, bytes.length, 0)).thenReturn(expectedRet);
+        verify(channel).guardClosed();
 
-		channel.read(mockBuffer, position);
+        verifyStatic();
+        GLFS.glfs_write(eq(fileptr), anyLong(), eq((long) bufferLength), eq(0));
+    }
 
-		verifyStatic();
-		GLFS.glfs_read(fileptr, bytes, bytes.length, 0);
-		verify(mockBuffer).array();
-		verifyStatic();
-		GLFS.glfs_lseek(fileptr, position, 0);
-		verify(channel).size();
-		verify(channel).guardClosed();
-	}
+    @Test
+    public void testWrite1Arg_whenDirectBuffer() throws IOException {
+        doNothing().when(channel).guardClosed();
+        long fileptr = 1234L;
+        channel.setFileptr(fileptr);
+        channel.setPosition(0);
 
-	@Test(expected = IOException.class)
-	public void testRead2Arg_whenSecondSeekFails() throws IOException {
-		long position = 5L;
-		long fileptr = 1234L;
-		long defaultPosition = 0L;
-		channel.setFileptr(fileptr);
-		channel.setPosition(defaultPosition);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10);
+        buffer.position(2).limit(8);
+        long address = ((DirectBuffer) buffer).address() + 2;
 
-		doNothing().when(channel).guardClosed();
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_write(fileptr, address, 6, 0)).thenReturn(6);
 
-		Set<StandardOpenOption> options = new HashSet<>();
-		options.add(StandardOpenOption.READ);
-		channel.setOptions(options);
+        int written = channel.write(buffer);
 
-		doReturn(10L).when(channel).size();
+        assertEquals(6, written);
+        assertEquals(8, buffer.position());
+        assertEquals(6, channel.getPosition());
 
-		mockStatic(GLFS.class);
-		when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(0);
+        verifyStatic();
+        GLFS.glfs_write(fileptr, address, 6, 0);
+    }
 
-		byte[] bytes = new byte[]{'h', 'e', 'l', 'l', 'o'};
-		doReturn(bytes).when(mockBuffer).array();
+    @Test
+    public void testWrite1Arg_whenHeapBufferNotAtStart() throws IOException {
+        doNothing().when(channel).guardClosed();
+        long fileptr = 1234L;
+        channel.setFileptr(fileptr);
+        channel.setPosition(0);
 
-		long expectedRet = 7L;
-		when(GLFS.glfs_read(fileptr, bytes, bytes.length, 0)).thenReturn(expectedRet);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{'a', 'b', 'c', 'd'});
+        buffer.position(1).limit(3);
 
-		when(GLFS.glfs_lseek(fileptr, defaultPosition, 0)).thenReturn(-1);
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_write(eq(fileptr), anyLong(), eq(2L), eq(0))).thenReturn(2);
 
-		channel.read(mockBuffer, position);
+        int written = channel.write(buffer);
 
-		verifyStatic();
-		GLFS.glfs_lseek(fileptr, defaultPosition, 0);
-		verifyStatic();
-		GLFS.glfs_read(fileptr, bytes, bytes.length, 0);
-		verify(mockBuffer).array();
-		verifyStatic();
-		GLFS.glfs_lseek(fileptr, position, 0);
-		verify(channel).size();
-		verify(channel).guardClosed();
-	}
+        assertEquals(2, written);
+        assertEquals(3, buffer.position());
 
-    @Test
-    public void testWrite1Arg() throws IOException {
+        verifyStatic();
+        GLFS.glfs_write(eq(fileptr), anyLong(), eq(2L), eq(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrite1Arg_whenWriteFails() throws IOException {
         doNothing().when(channel).guardClosed();
         long fileptr = 1234L;
         channel.setFileptr(fileptr);
 
         byte[] bytes = new byte[]{'a', 'b'};
-        int bufferLength = bytes.length;
 
         mockStatic(GLFS.class);
-        when(GLFS.glfs_write(fileptr, bytes, bufferLength, 0)).thenReturn(bufferLength);
-
-        doReturn(bytes).when(mockBuffer).array();
-        doReturn(null).when(mockBuffer).position(bufferLength);
+        when(GLFS.glfs_write(eq(fileptr), anyLong(), eq((long) bytes.length), eq(0))).thenReturn(-1);
 
-        int written = channel.write(mockBuffer);
-
-        assertEquals(bufferLength, written);
-
-        verify(channel).guardClosed();
-        verify(mockBuffer).array();
-        verify(mockBuffer).position(bufferLength);
-
-        verifyStatic();
-        GLFS.glfs_write(fileptr, bytes, bufferLength, 0);
+        channel.write(ByteBuffer.wrap(bytes));
     }
 
     @Test
@@ -587,6 +948,7 @@ public class GlusterFileChannelTest extends TestCase {
         doNothing().when(channel).guardClosed();
         long fileptr = 1234L;
         channel.setFileptr(fileptr);
+        channel.setPosition(0L);
         Set<? extends OpenOption> mockOptions = Mockito.mock(Set.class);
         channel.setOptions(mockOptions);
         doReturn(true).when(mockOptions).contains(StandardOpenOption.WRITE);
@@ -600,20 +962,68 @@ public class GlusterFileChannelTest extends TestCase {
         int offset = 0;
 
         mockStatic(GLFS.class);
-        when(GLFS.glfs_write(fileptr, bytes1, 10, 0)).thenReturn(10);
-        when(GLFS.glfs_write(fileptr, bytes2, 10, 0)).thenReturn(10);
+        when(GLFS.glfs_writev(eq(fileptr), anyLong(), eq(2), eq(0))).thenReturn(20L);
 
         long ret = channel.write(buffers, offset, length);
 
         assertEquals(ret, 20);
+        assertEquals(20, channel.getPosition());
+        assertEquals(10, buffer1.position());
+        assertEquals(10, buffer2.position());
 
-        verifyStatic(times(2));
-        GLFS.glfs_write(fileptr, bytes1, 10, 0);
+        verifyStatic(times(1));
+        GLFS.glfs_writev(eq(fileptr), anyLong(), eq(2), eq(0));
 
         verify(mockOptions).contains(StandardOpenOption.WRITE);
         verify(channel).guardClosed();
     }
 
+    @Test
+    public void testWrite3Arg_whenShortWrite() throws IOException {
+        doNothing().when(channel).guardClosed();
+        long fileptr = 1234L;
+        channel.setFileptr(fileptr);
+        channel.setPosition(0L);
+        Set<StandardOpenOption> options = new HashSet<>();
+        options.add(StandardOpenOption.WRITE);
+        channel.setOptions(options);
+
+        ByteBuffer buffer1 = ByteBuffer.allocateDirect(10);
+        ByteBuffer buffer2 = ByteBuffer.allocateDirect(10);
+        ByteBuffer[] buffers = new ByteBuffer[]{buffer1, buffer2};
+
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_writev(eq(fileptr), anyLong(), eq(2), eq(0))).thenReturn(12L);
+        when(GLFS.glfs_writev(eq(fileptr), anyLong(), eq(1), eq(0))).thenReturn(8L);
+
+        long ret = channel.write(buffers, 0, 2);
+
+        assertEquals(20, ret);
+        assertEquals(10, buffer1.position());
+        assertEquals(10, buffer2.position());
+        verifyStatic();
+        GLFS.glfs_writev(eq(fileptr), anyLong(), eq(2), eq(0));
+        verifyStatic();
+        GLFS.glfs_writev(eq(fileptr), anyLong(), eq(1), eq(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrite3Arg_whenWriteFails() throws IOException {
+        doNothing().when(channel).guardClosed();
+        long fileptr = 1234L;
+        channel.setFileptr(fileptr);
+        Set<StandardOpenOption> options = new HashSet<>();
+        options.add(StandardOpenOption.WRITE);
+        channel.setOptions(options);
+
+        ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.allocate(10), ByteBuffer.allocate(10)};
+
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_writev(eq(fileptr), anyLong(), eq(2), eq(0))).thenReturn(-1L);
+
+        channel.write(buffers, 0, 2);
+    }
+
     @Test(expected = NonWritableChannelException.class)
     public void testWrite3Arg_whenChannelNotOpenedForWrite() throws IOException {
         doNothing().when(channel).guardClosed();
@@ -693,16 +1103,7 @@ public class GlusterFileChannelTest extends TestCase {
     }
 
     @Test
-    public void testWrite2Arg_positionLessThanSize() throws IOException {
-        testWrite2Arg_helper(false);
-    }
-
-    @Test
-    public void testWrite2Arg_positionGreaterThanSize() throws IOException {
-        testWrite2Arg_helper(true);
-    }
-
-    private void testWrite2Arg_helper(boolean testingPositionSize) throws IOException {
+    public void testWrite2Arg() throws IOException {
         doNothing().when(channel).guardClosed();
         long fileptr = 1234L;
         channel.setFileptr(fileptr);
@@ -710,91 +1111,69 @@ public class GlusterFileChannelTest extends TestCase {
         channel.setOptions(mockOptions);
         doReturn(true).when(mockOptions).contains(StandardOpenOption.WRITE);
         channel.setPosition(0L);
-        doReturn(3L).when(channel).size();
 
         byte[] bytes = new byte[10];
         ByteBuffer buffer = ByteBuffer.wrap(bytes);
         long position = 2L;
 
-        if (testingPositionSize) {
-            position = 3L;
-            mockStatic(Arrays.class);
-            when(Arrays.copyOf(bytes, bytes.length)).thenReturn(bytes);
-            mockStatic(ByteBuffer.class);
-            when(ByteBuffer.wrap(bytes)).thenReturn(buffer);
-        }
-
         mockStatic(GLFS.class);
-        when(GLFS.glfs_write(fileptr, bytes, 10, 0)).thenReturn(10);
-        when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(0);
-        when(GLFS.glfs_lseek(fileptr, 0L, 0)).thenReturn(0);
+        when(GLFS.glfs_pwrite(eq(fileptr), anyLong(), eq(10L), eq(position), eq(0))).thenReturn(10);
 
         int ret = channel.write(buffer, position);
 
         assertEquals(ret, 10);
+        assertEquals(10, buffer.position());
+        assertEquals(0L, channel.getPosition());
 
         verifyStatic();
-        GLFS.glfs_lseek(fileptr, 0L, 0);
-        verifyStatic();
-        GLFS.glfs_lseek(fileptr, position, 0);
-        verifyStatic();
-        GLFS.glfs_write(fileptr, bytes, 10, 0);
-
-        if (testingPositionSize) {
-            verifyStatic();
-            ByteBuffer.wrap(bytes);
-            verifyStatic();
-            Arrays.copyOf(bytes, bytes.length);
-        }
-
-        verify(channel, times(testingPositionSize ? 2 : 1)).size();
+        GLFS.glfs_pwrite(eq(fileptr), anyLong(), eq(10L), eq(position), eq(0));
+        verifyStatic(never());
+        GLFS.glfs_lseek(anyLong(), anyLong(), anyInt());
+        verify(channel, never()).size();
         verify(mockOptions).contains(StandardOpenOption.WRITE);
         verify(channel).guardClosed();
     }
 
-    @Test(expected = IOException.class)
-    public void testWrite2Arg_firstSeekFails() throws IOException {
+    @Test
+    public void testWrite2Arg_whenDirectBuffer() throws IOException {
         doNothing().when(channel).guardClosed();
         long fileptr = 1234L;
         channel.setFileptr(fileptr);
-        Set<? extends OpenOption> mockOptions = Mockito.mock(Set.class);
-        channel.setOptions(mockOptions);
-        doReturn(true).when(mockOptions).contains(StandardOpenOption.WRITE);
-        channel.setPosition(0L);
-        doReturn(3L).when(channel).size();
+        Set<StandardOpenOption> options = new HashSet<>();
+        options.add(StandardOpenOption.WRITE);
+        channel.setOptions(options);
 
-        byte[] bytes = new byte[10];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        long position = 2L;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10);
+        long address = ((DirectBuffer) buffer).address();
+        long position = 20L;
 
         mockStatic(GLFS.class);
-        when(GLFS.glfs_write(fileptr, bytes, 10, 0)).thenReturn(10);
-        when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(0);
-        when(GLFS.glfs_lseek(fileptr, 0L, 0)).thenReturn(-1);
+        when(GLFS.glfs_pwrite(fileptr, address, 10, position, 0)).thenReturn(10);
 
-        channel.write(buffer, position);
+        int ret = channel.write(buffer, position);
+
+        assertEquals(10, ret);
+        assertEquals(10, buffer.position());
+        verifyStatic();
+        GLFS.glfs_pwrite(fileptr, address, 10, position, 0);
     }
 
     @Test(expected = IOException.class)
-    public void testWrite2Arg_secondSeekFails() throws IOException {
+    public void testWrite2Arg_whenWriteFails() throws IOException {
         doNothing().when(channel).guardClosed();
         long fileptr = 1234L;
         channel.setFileptr(fileptr);
-        Set<? extends OpenOption> mockOptions = Mockito.mock(Set.class);
-        channel.setOptions(mockOptions);
-        doReturn(true).when(mockOptions).contains(StandardOpenOption.WRITE);
-        channel.setPosition(0L);
-        doReturn(3L).when(channel).size();
+        Set<StandardOpenOption> options = new HashSet<>();
+        options.add(StandardOpenOption.WRITE);
+        channel.setOptions(options);
 
         byte[] bytes = new byte[10];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
         long position = 2L;
 
         mockStatic(GLFS.class);
-        when(GLFS.glfs_write(fileptr, bytes, 10, 0)).thenReturn(10);
-        when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(-1);
+        when(GLFS.glfs_pwrite(eq(fileptr), anyLong(), eq(10L), eq(position), eq(0))).thenReturn(-1);
 
-        channel.write(buffer, position);
+        channel.write(ByteBuffer.wrap(bytes), position);
     }
 
     @Test(expected = NonWritableChannelException.class)
@@ -866,15 +1245,15 @@ public class GlusterFileChannelTest extends TestCase {
 		long position = 12345l;
 
 		mockStatic(GLFS.class);
-		when(GLFS.glfs_lseek(fileptr, position, 0)).thenReturn(0);
 		FileChannel returnedChannel = channel.position(position);
 
 		verify(channel).guardClosed();
 		assertEquals(channel, returnedChannel);
 		assertEquals(position, channel.getPosition());
+		assertTrue(channel.isOffsetStale());
 
-		verifyStatic();
-		GLFS.glfs_lseek(fileptr, position, 0);
+		verifyStatic(never());
+		GLFS.glfs_lseek(anyLong(), anyLong(), anyInt());
 	}
 
 	@Test(expected = IOException.class)
@@ -947,6 +1326,489 @@ public class GlusterFileChannelTest extends TestCase {
 		GLFS.glfs_close(fileptr);
 	}
 
+	@Test
+	public void testImplCloseChannel_whenReadAhead() throws IOException {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		GlusterReadAhead mockReadAhead = Mockito.mock(GlusterReadAhead.class);
+		channel.setReadAhead(mockReadAhead);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_close(fileptr)).thenReturn(0);
+
+		channel.implCloseChannel();
+
+		verify(mockReadAhead).close();
+		verifyStatic();
+		GLFS.glfs_close(fileptr);
+	}
+
+	@Test
+	public void testImplCloseChannel_whenWriteBehind() throws IOException {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		GlusterWriteBehind mockWriteBehind = Mockito.mock(GlusterWriteBehind.class);
+		channel.setWriteBehind(mockWriteBehind);
+		doThrow(new IOException()).when(mockWriteBehind).close();
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_close(fileptr)).thenReturn(0);
+
+		try {
+			channel.implCloseChannel();
+			fail();
+		} catch (IOException e) {
+		}
+
+		verify(mockWriteBehind).close();
+		verifyStatic();
+		GLFS.glfs_close(fileptr);
+		assertTrue(channel.isClosed());
+	}
+
+	private stat sizedStat(long size) {
+		stat stat = new stat();
+		stat.st_size = size;
+		return stat;
+	}
+
+	@Test
+	public void testTransferTo_whenPastEnd() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+		doReturn(sizedStat(100)).when(channel).fstat();
+		WritableByteChannel target = Mockito.mock(WritableByteChannel.class);
+		doReturn(true).when(target).isOpen();
+
+		long transferred = channel.transferTo(100, 10, target);
+
+		assertEquals(0, transferred);
+		verify(target, never()).write(any(ByteBuffer.class));
+	}
+
+	@Test
+	public void testTransferTo_whenSameVolume() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setFileSystem(mockFileSystem);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+		doReturn(sizedStat(100)).when(channel).fstat();
+
+		GlusterFileChannel target = PowerMockito.spy(new GlusterFileChannel());
+		long targetptr = 5678l;
+		target.setFileptr(targetptr);
+		target.setFileSystem(mockFileSystem);
+		target.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+		target.setPosition(7);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_copy_file_range(eq(fileptr), any(long[].class), eq(targetptr), any(long[].class), eq(90L), eq(0))).thenReturn(90L);
+		when(GLFS.glfs_lseek(targetptr, 97, GlusterFileChannel.SEEK_SET)).thenReturn(97L);
+
+		long transferred = channel.transferTo(10, 1000, target);
+
+		assertEquals(90, transferred);
+		assertEquals(97, target.getPosition());
+		verify(channel, never()).read(any(ByteBuffer.class), anyLong());
+	}
+
+	@Test
+	public void testTransferTo_whenCopyFileRangeUnsupported() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setFileSystem(mockFileSystem);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+		doReturn(sizedStat(100)).when(channel).fstat();
+		doAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+				long position = (Long) invocation.getArguments()[1];
+				int read = (int) Math.min(buffer.remaining(), 100 - position);
+				buffer.position(buffer.position() + read);
+				return read;
+			}
+		}).when(channel).read(any(ByteBuffer.class), anyLong());
+
+		GlusterFileChannel target = PowerMockito.spy(new GlusterFileChannel());
+		target.setFileSystem(mockFileSystem);
+		target.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+		doAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+				int written = buffer.remaining();
+				buffer.position(buffer.limit());
+				return written;
+			}
+		}).when(target).write(any(ByteBuffer.class));
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_copy_file_range(anyLong(), any(long[].class), anyLong(), any(long[].class), anyLong(), anyInt())).thenReturn(-1L);
+
+		long transferred = channel.transferTo(10, 1000, target);
+
+		assertEquals(90, transferred);
+		verify(channel).read(any(ByteBuffer.class), eq(10L));
+	}
+
+	@Test
+	public void testTransferFrom() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+		doReturn(sizedStat(100)).when(channel).fstat();
+		doAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+				int written = buffer.remaining();
+				buffer.position(buffer.limit());
+				return written;
+			}
+		}).when(channel).write(any(ByteBuffer.class), anyLong());
+
+		ReadableByteChannel src = Channels.newChannel(new ByteArrayInputStream(new byte[50]));
+
+		long transferred = channel.transferFrom(src, 20, 1000);
+
+		assertEquals(50, transferred);
+		verify(channel).write(any(ByteBuffer.class), eq(20L));
+	}
+
+	@Test
+	public void testTransferFrom_whenPastEnd() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+		doReturn(sizedStat(100)).when(channel).fstat();
+		ReadableByteChannel src = Mockito.mock(ReadableByteChannel.class);
+		doReturn(true).when(src).isOpen();
+
+		long transferred = channel.transferFrom(src, 101, 10);
+
+		assertEquals(0, transferred);
+		verify(src, never()).read(any(ByteBuffer.class));
+	}
+
+	@Test(expected = NonReadableChannelException.class)
+	public void testMap_whenNotReadable() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+
+		channel.map(FileChannel.MapMode.READ_ONLY, 0, 10);
+	}
+
+	@Test(expected = NonWritableChannelException.class)
+	public void testMap_readWrite_whenNotWritable() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+
+		channel.map(FileChannel.MapMode.READ_WRITE, 0, 10);
+	}
+
+	@Test
+	public void testMap_readWrite() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ, StandardOpenOption.WRITE)));
+		doReturn(sizedStat(100)).when(channel).fstat();
+		doReturn(-1).when(channel).read(any(ByteBuffer.class), anyLong());
+		doNothing().when(channel).setLength(anyLong());
+
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 50, 100);
+
+		assertEquals(100, buffer.capacity());
+		assertTrue(buffer.isDirect());
+		assertEquals(1, channel.getMappings().size());
+		verify(channel).setLength(150L);
+	}
+
+	@Test
+	public void testMap_dropsUnreachableMappings() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ, StandardOpenOption.WRITE)));
+		doReturn(sizedStat(200)).when(channel).fstat();
+		doReturn(-1).when(channel).read(any(ByteBuffer.class), anyLong());
+		GlusterMappedRegion unmapped = Mockito.mock(GlusterMappedRegion.class);
+		GlusterMappedRegion mapped = Mockito.mock(GlusterMappedRegion.class);
+		doReturn(true).when(mapped).isMapped();
+		channel.getMappings().add(unmapped);
+		channel.getMappings().add(mapped);
+
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 100);
+
+		verify(unmapped).writeBack();
+		verify(mapped, never()).writeBack();
+		assertEquals(2, channel.getMappings().size());
+		assertSame(mapped, channel.getMappings().get(0));
+		assertTrue(channel.getMappings().get(1).isMapped());
+		assertNotNull(buffer);
+	}
+
+	@Test
+	public void testForce_writesBackMappings() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		GlusterMappedRegion mockRegion = Mockito.mock(GlusterMappedRegion.class);
+		channel.getMappings().add(mockRegion);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_fsync(fileptr)).thenReturn(0);
+
+		channel.force(true);
+
+		verify(mockRegion).writeBack();
+		verifyStatic();
+		GLFS.glfs_fsync(fileptr);
+	}
+
+	@Test
+	public void testPreallocate() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_fallocate(fileptr, 0, 10, 20)).thenReturn(0);
+
+		channel.preallocate(10, 20, false);
+
+		verifyStatic();
+		GLFS.glfs_fallocate(fileptr, 0, 10, 20);
+	}
+
+	@Test
+	public void testPunchHole() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_discard(fileptr, 10, 20)).thenReturn(0);
+
+		channel.punchHole(10, 20);
+
+		verifyStatic();
+		GLFS.glfs_discard(fileptr, 10, 20);
+	}
+
+	@Test(expected = IOException.class)
+	public void testZeroFill_whenFails() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_zerofill(fileptr, 10, 20)).thenReturn(-1);
+
+		channel.zeroFill(10, 20);
+	}
+
+	@Test(expected = NonWritableChannelException.class)
+	public void testPunchHole_whenNotWritable() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+
+		channel.punchHole(10, 20);
+	}
+
+	@Test
+	public void testTruncate() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+		channel.setPosition(80);
+		doReturn(sizedStat(100)).when(channel).fstat();
+		doNothing().when(channel).setLength(anyLong());
+		doReturn(channel).when(channel).position(anyLong());
+
+		FileChannel returned = channel.truncate(50);
+
+		assertEquals(channel, returned);
+		verify(channel).setLength(50L);
+		verify(channel).position(50L);
+	}
+
+	@Test
+	public void testTruncate_whenLarger() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+		channel.setPosition(80);
+		doReturn(sizedStat(100)).when(channel).fstat();
+
+		channel.truncate(200);
+
+		verify(channel, never()).setLength(anyLong());
+		verify(channel, never()).position(anyLong());
+	}
+
+	@Test(expected = NonWritableChannelException.class)
+	public void testTruncate_whenNotWritable() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+
+		channel.truncate(10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTruncate_whenNegative() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+
+		channel.truncate(-1);
+	}
+
+	@Test
+	public void testSetLength() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_ftruncate(fileptr, 4096)).thenReturn(0);
+
+		channel.setLength(4096);
+
+		verifyStatic();
+		GLFS.glfs_ftruncate(fileptr, 4096);
+	}
+
+	@Test(expected = IOException.class)
+	public void testSetLength_whenFails() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_ftruncate(fileptr, 4096)).thenReturn(-1);
+
+		channel.setLength(4096);
+	}
+
+	@Test
+	public void testDataRanges() {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setPosition(5);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_lseek(fileptr, 0, GlusterFileChannel.SEEK_DATA)).thenReturn(0L);
+		when(GLFS.glfs_lseek(fileptr, 0, GlusterFileChannel.SEEK_HOLE)).thenReturn(10L);
+		when(GLFS.glfs_lseek(fileptr, 10, GlusterFileChannel.SEEK_DATA)).thenReturn(50L);
+		when(GLFS.glfs_lseek(fileptr, 50, GlusterFileChannel.SEEK_HOLE)).thenReturn(200L);
+
+		List<long[]> ranges = channel.dataRanges(0, 100);
+
+		assertEquals(2, ranges.size());
+		assertArrayEquals(new long[]{0, 10}, ranges.get(0));
+		assertArrayEquals(new long[]{50, 50}, ranges.get(1));
+		assertTrue(channel.isOffsetStale());
+		verifyStatic(never());
+		GLFS.glfs_lseek(anyLong(), anyLong(), eq(GlusterFileChannel.SEEK_SET));
+	}
+
+	@Test
+	public void testDataRanges_whenTrailingHole() {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_lseek(fileptr, 0, GlusterFileChannel.SEEK_DATA)).thenReturn(-1L);
+		when(GLFS.glfs_lseek(fileptr, 0, GlusterFileChannel.SEEK_HOLE)).thenReturn(0L);
+
+		assertTrue(channel.dataRanges(0, 100).isEmpty());
+	}
+
+	@Test
+	public void testDataRanges_whenUnsupported() {
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_lseek(eq(fileptr), anyLong(), anyInt())).thenReturn(-1L);
+
+		List<long[]> ranges = channel.dataRanges(20, 100);
+
+		assertEquals(1, ranges.size());
+		assertArrayEquals(new long[]{20, 100}, ranges.get(0));
+	}
+
+	@Test
+	public void testTransferTo_whenSparse() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setFileSystem(mockFileSystem);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+		doReturn(sizedStat(10 + GlusterFileChannel.MIN_SPARSE_TRANSFER)).when(channel).fstat();
+		doReturn(Arrays.asList(new long[]{20, 10}, new long[]{60, 20})).when(channel).dataRanges(10, GlusterFileChannel.MIN_SPARSE_TRANSFER);
+		doAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+				int read = buffer.remaining();
+				buffer.position(buffer.limit());
+				return read;
+			}
+		}).when(channel).read(any(ByteBuffer.class), anyLong());
+
+		FileChannel target = PowerMockito.mock(FileChannel.class);
+		doReturn(true).when(target).isOpen();
+		doReturn(5L).when(target).position();
+		doReturn(0L).when(target).size();
+		doAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+				int written = buffer.remaining();
+				buffer.position(buffer.limit());
+				return written;
+			}
+		}).when(target).write(any(ByteBuffer.class), anyLong());
+
+		long transferred = channel.transferTo(10, Long.MAX_VALUE, target);
+
+		assertEquals(GlusterFileChannel.MIN_SPARSE_TRANSFER, transferred);
+		verify(target).write(any(ByteBuffer.class), eq(15L));
+		verify(target).write(any(ByteBuffer.class), eq(55L));
+		verify(target).write(any(ByteBuffer.class), eq(4 + GlusterFileChannel.MIN_SPARSE_TRANSFER));
+		verify(target).position(5 + GlusterFileChannel.MIN_SPARSE_TRANSFER);
+	}
+
+	@Test
+	public void testTransferTo_whenShort_doesntLookForHoles() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+		doReturn(sizedStat(100)).when(channel).fstat();
+		doReturn(0).when(channel).read(any(ByteBuffer.class), anyLong());
+		FileChannel target = PowerMockito.mock(FileChannel.class);
+		doReturn(true).when(target).isOpen();
+
+		channel.transferTo(0, 100, target);
+
+		verify(channel, never()).dataRanges(anyLong(), anyLong());
+	}
+
+	@Test(expected = NonWritableChannelException.class)
+	public void testTransferTo_whenSameVolumeTargetNotWritable() throws IOException {
+		doNothing().when(channel).guardClosed();
+		channel.setFileSystem(mockFileSystem);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+		doReturn(sizedStat(10 + GlusterFileChannel.MIN_SPARSE_TRANSFER)).when(channel).fstat();
+		GlusterFileChannel target = PowerMockito.spy(new GlusterFileChannel());
+		target.setFileSystem(mockFileSystem);
+		target.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.READ)));
+
+		try {
+			channel.transferTo(10, GlusterFileChannel.MIN_SPARSE_TRANSFER, target);
+		} finally {
+			verify(channel, never()).dataRanges(anyLong(), anyLong());
+		}
+	}
+
 	@Test
 	public void testSize() throws Exception {
 		long fileptr = 1234l;
@@ -969,6 +1831,79 @@ public class GlusterFileChannelTest extends TestCase {
 		GLFS.glfs_fstat(fileptr, stat);
 	}
 
+	@Test
+	public void testSize_fromSnapshot() throws IOException {
+		doReturn(sizedStat(100)).when(channel).fstat();
+		channel.setStatCache(1000);
+		channel.setSnapshot(sizedStat(100));
+		channel.setSnapshotTime(System.nanoTime());
+
+		assertEquals(100, channel.size());
+		assertEquals(100, channel.size());
+
+		verify(channel, never()).fstat();
+	}
+
+	@Test
+	public void testSize_fstatsEveryTimeByDefault() throws IOException {
+		doReturn(sizedStat(100)).when(channel).fstat();
+
+		assertEquals(100, channel.size());
+		assertEquals(100, channel.size());
+
+		verify(channel, times(2)).fstat();
+	}
+
+	@Test
+	public void testSize_whenSnapshotExpired() throws IOException {
+		doReturn(sizedStat(200)).when(channel).fstat();
+		channel.setStatCache(0);
+		channel.setSnapshot(sizedStat(100));
+		channel.setSnapshotTime(System.nanoTime());
+
+		assertEquals(200, channel.size());
+
+		verify(channel).fstat();
+	}
+
+	@Test
+	public void testWritten_growsSnapshot() {
+		channel.setSnapshot(sizedStat(100));
+		channel.setPosition(90);
+
+		channel.written(50, 10);
+		assertEquals(100, channel.getSnapshot().st_size);
+
+		channel.written(GlusterFileChannel.CURRENT_POSITION, 30);
+		assertEquals(120, channel.getSnapshot().st_size);
+	}
+
+	@Test
+	public void testWritten_whenAppending() {
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+		channel.setSnapshot(sizedStat(100));
+
+		channel.written(GlusterFileChannel.CURRENT_POSITION, 30);
+
+		assertNull(channel.getSnapshot());
+	}
+
+	@Test
+	public void testSetLength_resizesSnapshot() throws IOException {
+		doNothing().when(channel).guardClosed();
+		long fileptr = 1234l;
+		channel.setFileptr(fileptr);
+		channel.setOptions(new HashSet<>(Arrays.asList(StandardOpenOption.WRITE)));
+		channel.setSnapshot(sizedStat(100));
+
+		mockStatic(GLFS.class);
+		when(GLFS.glfs_ftruncate(fileptr, 10)).thenReturn(0);
+
+		channel.setLength(10);
+
+		assertEquals(10, channel.getSnapshot().st_size);
+	}
+
 	@Test(expected = IOException.class)
 	public void testSize_whenFailing() throws Exception {
 		long fileptr = 1234l;
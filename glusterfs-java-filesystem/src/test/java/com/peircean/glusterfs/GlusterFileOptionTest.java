@@ -0,0 +1,101 @@
+package com.peircean.glusterfs;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class GlusterFileOptionTest {
+
+    @Test
+    public void testReadAhead() {
+        GlusterFileOption option = GlusterFileOption.readAhead(1024);
+        assertEquals(GlusterFileOption.Type.READ_AHEAD, option.getType());
+        assertEquals(1024, option.getSize());
+    }
+
+    @Test
+    public void testReadAhead_default() {
+        assertEquals(GlusterFileOption.DEFAULT_READ_AHEAD, GlusterFileOption.readAhead().getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadAhead_whenWindowNotPositive() {
+        GlusterFileOption.readAhead(0);
+    }
+
+    @Test
+    public void testWriteBehind() {
+        GlusterFileOption option = GlusterFileOption.writeBehind(4096, 200);
+        assertEquals(GlusterFileOption.Type.WRITE_BEHIND, option.getType());
+        assertEquals(4096, option.getSize());
+        assertEquals(200, option.getInterval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteBehind_whenIntervalNegative() {
+        GlusterFileOption.writeBehind(4096, -1);
+    }
+
+    @Test
+    public void testPreallocate() {
+        GlusterFileOption option = GlusterFileOption.preallocate(50L * 1024 * 1024 * 1024);
+        assertEquals(GlusterFileOption.Type.PREALLOCATE, option.getType());
+        assertEquals(50L * 1024 * 1024 * 1024, option.getSize());
+    }
+
+    @Test
+    public void testStatCache() {
+        GlusterFileOption option = GlusterFileOption.statCache(0);
+        assertEquals(GlusterFileOption.Type.STAT_CACHE, option.getType());
+        assertEquals(0, option.getInterval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStatCache_whenNegative() {
+        GlusterFileOption.statCache(-1);
+    }
+
+    @Test
+    public void testDirect() {
+        String arch = System.getProperty("os.arch");
+        try {
+            System.setProperty("os.arch", "amd64");
+            assertEquals(GlusterFileOption.Type.DIRECT, GlusterFileOption.direct().getType());
+        } finally {
+            System.setProperty("os.arch", arch);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDirect_whenNotX86() {
+        String arch = System.getProperty("os.arch");
+        try {
+            System.setProperty("os.arch", "aarch64");
+            GlusterFileOption.direct();
+        } finally {
+            System.setProperty("os.arch", arch);
+        }
+    }
+
+    @Test
+    public void testSupportsDirect() {
+        assertTrue(GlusterFileOption.supportsDirect("x86_64"));
+        assertTrue(GlusterFileOption.supportsDirect("i386"));
+        assertFalse(GlusterFileOption.supportsDirect("ppc64le"));
+        assertFalse(GlusterFileOption.supportsDirect(null));
+    }
+
+    @Test
+    public void testStreamBuffer() {
+        GlusterFileOption option = GlusterFileOption.streamBuffer(65536);
+        assertEquals(GlusterFileOption.Type.STREAM_BUFFER, option.getType());
+        assertEquals(65536, option.getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStreamBuffer_whenNotPositive() {
+        GlusterFileOption.streamBuffer(0);
+    }
+}
@@ -1,11 +1,14 @@
 package com.peircean.glusterfs;
 
 import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
 import com.peircean.libgfapi_jni.internal.structs.stat;
 import com.peircean.libgfapi_jni.internal.structs.statvfs;
+import com.peircean.libgfapi_jni.internal.structs.timespec;
 import junit.framework.TestCase;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
@@ -17,13 +20,22 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.DosFileAttributeView;
 import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
@@ -37,7 +49,7 @@ import static org.powermock.api.mockito.PowerMockito.verifyNoMoreInteractions;
  * @author <a href="http://about.me/louiszuckerman">Louis Zuckerman</a>
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({GLFS.class, GlusterFileSystemProvider.class, GlusterFileChannel.class, GlusterFileAttributes.class,
+@PrepareForTest({GLFS.class, UtilJNI.class, GlusterFileSystemProvider.class, GlusterFileChannel.class, GlusterFileAttributes.class,
         GlusterDirectoryStream.class, String.class})
 public class GlusterFileSystemProviderTest extends TestCase {
 
@@ -188,6 +200,22 @@ public class GlusterFileSystemProviderTest extends TestCase {
         assertEquals(mockChannel, fileChannel);
     }
 
+    @Test
+    public void testNewAsynchronousFileChannel() throws Exception {
+        FileAttribute<?>[] attrs = new FileAttribute[0];
+        Set<OpenOption> opts = new HashSet<OpenOption>();
+        Set<OpenOption> readOpts = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.READ));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        doReturn(mockChannel).when(provider).newFileChannelHelper(mockPath, readOpts, attrs);
+
+        AsynchronousFileChannel channel = provider.newAsynchronousFileChannel(mockPath, opts, executor, attrs);
+
+        verify(provider).newFileChannelHelper(mockPath, readOpts, attrs);
+        assertEquals(mockChannel, ((GlusterAsynchronousFileChannel) channel).getChannel());
+        assertEquals(executor, ((GlusterAsynchronousFileChannel) channel).getExecutor());
+        executor.shutdown();
+    }
+
     @Test
     public void testNewByteChannel() throws Exception {
         FileAttribute<?>[] attrs = new FileAttribute[0];
@@ -198,19 +226,85 @@ public class GlusterFileSystemProviderTest extends TestCase {
         assertEquals(mockChannel, fileChannel);
     }
 
+    @Test
+    public void testNewInputStream() throws Exception {
+        Set<OpenOption> opts = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.READ, GlusterFileOption.readAhead()));
+        doReturn(mockChannel).when(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+
+        GlusterInputStream stream = (GlusterInputStream) provider.newInputStream(mockPath);
+
+        verify(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+        assertEquals(mockChannel, stream.getChannel());
+    }
+
+    @Test
+    public void testNewInputStream_whenReadAheadGiven() throws Exception {
+        GlusterFileOption readAhead = GlusterFileOption.readAhead(1024 * 1024);
+        Set<OpenOption> opts = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.READ, readAhead));
+        doReturn(mockChannel).when(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+
+        provider.newInputStream(mockPath, readAhead);
+
+        verify(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+    }
+
+    @Test
+    public void testNewInputStream_whenStreamBufferGiven() throws Exception {
+        Set<OpenOption> opts = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.READ,
+                GlusterFileOption.readAhead()));
+        doReturn(mockChannel).when(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+
+        GlusterInputStream stream = (GlusterInputStream) provider.newInputStream(mockPath,
+                GlusterFileOption.streamBuffer(65536));
+
+        verify(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+        assertEquals(65536, stream.getBuffer().capacity());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNewInputStream_whenWrite() throws Exception {
+        provider.newInputStream(mockPath, StandardOpenOption.WRITE);
+    }
+
+    @Test
+    public void testNewOutputStream() throws Exception {
+        Set<OpenOption> opts = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, GlusterFileOption.writeBehind()));
+        doReturn(mockChannel).when(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+
+        GlusterOutputStream stream = (GlusterOutputStream) provider.newOutputStream(mockPath);
+
+        verify(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+        assertEquals(mockChannel, stream.getChannel());
+    }
+
+    @Test
+    public void testNewOutputStream_whenAppend() throws Exception {
+        Set<OpenOption> opts = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.APPEND,
+                StandardOpenOption.WRITE, GlusterFileOption.writeBehind()));
+        doReturn(mockChannel).when(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+
+        provider.newOutputStream(mockPath, StandardOpenOption.APPEND);
+
+        verify(provider).newFileChannelHelper(eq(mockPath), eq(opts), any(FileAttribute[].class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNewOutputStream_whenRead() throws Exception {
+        provider.newOutputStream(mockPath, StandardOpenOption.READ);
+    }
+
     @Test
     public void testNewFileChannelHelper() throws Exception {
         Set<? extends OpenOption> options = new HashSet<OpenOption>();
         FileAttribute<?> attrs[] = new FileAttribute[0];
-        URI uri = new URI("foo://bar/baz");
-        doReturn(uri).when(mockPath).toUri();
-        doReturn(mockFileSystem).when(provider).getFileSystem(uri);
+        doReturn(mockFileSystem).when(mockPath).getFileSystem();
         whenNew(GlusterFileChannel.class).withNoArguments().thenReturn(mockChannel);
         doNothing().when(mockChannel).init(mockFileSystem, mockPath, options, attrs);
         FileChannel channel = provider.newFileChannel(mockPath, options, attrs);
         verify(mockChannel).init(mockFileSystem, mockPath, options, attrs);
-        verify(provider).getFileSystem(uri);
-        verify(mockPath).toUri();
+        verify(mockPath).getFileSystem();
+        verify(mockPath, never()).toUri();
         verifyNew(GlusterFileChannel.class).withNoArguments();
         assertEquals(mockChannel, channel);
     }
@@ -289,7 +383,7 @@ public class GlusterFileSystemProviderTest extends TestCase {
 
         assertEquals(fakeAttributes, attributes);
 
-        verify(mockPath).getFileSystem();
+        verify(mockPath, times(3)).getFileSystem();
         verify(mockFileSystem).getVolptr();
         verify(mockPath).getString();
 
@@ -334,7 +428,7 @@ public class GlusterFileSystemProviderTest extends TestCase {
 
         assertEquals(fakeAttributes, attributes);
 
-        verify(mockPath).getFileSystem();
+        verify(mockPath, times(2)).getFileSystem();
         verify(mockFileSystem).getVolptr();
         verify(mockPath).getString();
 
@@ -347,6 +441,121 @@ public class GlusterFileSystemProviderTest extends TestCase {
         GlusterFileAttributes.fromStat(stat);
     }
 
+    @Test
+    public void testReadAttributes_byName() throws IOException {
+        stat stat = new stat();
+        stat.st_size = 1234;
+        stat.st_mode = 0100644;
+        stat.st_uid = 7;
+        doReturn(stat).when(provider).lookupStat(mockPath, true);
+
+        Map<String, Object> attributes = provider.readAttributes(mockPath, "unix:size,mode,uid");
+
+        assertEquals(3, attributes.size());
+        assertEquals(1234L, attributes.get("size"));
+        assertEquals(0100644, attributes.get("mode"));
+        assertEquals(7, attributes.get("uid"));
+        verify(provider).lookupStat(mockPath, true);
+    }
+
+    @Test
+    public void testReadAttributes_byName_dontFollowLinks() throws IOException {
+        stat stat = new stat();
+        stat.st_mode = 0120777;
+        doReturn(stat).when(provider).lookupStat(mockPath, false);
+
+        Map<String, Object> attributes = provider.readAttributes(mockPath, "*", LinkOption.NOFOLLOW_LINKS);
+
+        assertEquals(GlusterAttributeMap.BASIC.size(), attributes.size());
+        assertEquals(true, attributes.get("isSymbolicLink"));
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testReadAttributes_byName_whenNoSuchFile() throws IOException {
+        doReturn(null).when(provider).lookupStat(mockPath, true);
+        provider.readAttributes(mockPath, "posix:*");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadAttributes_byName_whenUnsupportedView() throws IOException {
+        provider.readAttributes(mockPath, "dos:*");
+    }
+
+    @Test
+    public void testGetFileAttributeView() {
+        PosixFileAttributeView view = provider.getFileAttributeView(mockPath, PosixFileAttributeView.class);
+        assertEquals(mockPath, ((GlusterFileAttributeView) view).getPath());
+        assertTrue(((GlusterFileAttributeView) view).isFollowLinks());
+
+        BasicFileAttributeView basicView = provider.getFileAttributeView(mockPath, BasicFileAttributeView.class,
+                LinkOption.NOFOLLOW_LINKS);
+        assertFalse(((GlusterFileAttributeView) basicView).isFollowLinks());
+        assertEquals("basic", basicView.name());
+    }
+
+    @Test
+    public void testGetFileAttributeView_whenUnsupported() {
+        assertNull(provider.getFileAttributeView(mockPath, DosFileAttributeView.class));
+    }
+
+    @Test
+    public void testGetFileAttributeView_whenUserDefined() {
+        UserDefinedFileAttributeView view = provider.getFileAttributeView(mockPath, UserDefinedFileAttributeView.class);
+        assertEquals(mockPath, ((GlusterUserDefinedFileAttributeView) view).getPath());
+    }
+
+    @Test
+    public void testReadAttributes_userDefined() throws IOException {
+        GlusterUserDefinedFileAttributeView view = Mockito.mock(GlusterUserDefinedFileAttributeView.class);
+        doReturn(view).when(provider).getFileAttributeView(mockPath, GlusterUserDefinedFileAttributeView.class);
+        Map<String, byte[]> all = new HashMap<String, byte[]>();
+        all.put("a", new byte[1]);
+        doReturn(all).when(view).readAll();
+
+        assertEquals(all, provider.readAttributes(mockPath, "user:*"));
+        verify(provider, never()).lookupStat(any(Path.class), anyBoolean());
+    }
+
+    @Test
+    public void testSetAttribute_userDefined() throws IOException {
+        GlusterUserDefinedFileAttributeView view = Mockito.mock(GlusterUserDefinedFileAttributeView.class);
+        doReturn(view).when(provider).getFileAttributeView(mockPath, GlusterUserDefinedFileAttributeView.class);
+        byte[] value = {1, 2};
+
+        provider.setAttribute(mockPath, "user:x", value);
+
+        verify(view).write("x", ByteBuffer.wrap(value));
+    }
+
+    @Test
+    public void testSetAttribute() throws IOException {
+        GlusterFileAttributeView view = Mockito.mock(GlusterFileAttributeView.class);
+        doReturn(view).when(provider).getFileAttributeView(mockPath, GlusterFileAttributeView.class);
+        FileTime time = FileTime.fromMillis(1000);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-------");
+
+        provider.setAttribute(mockPath, "lastModifiedTime", time);
+        provider.setAttribute(mockPath, "posix:permissions", permissions);
+
+        verify(view).setAttributes(null, null, null, time, null);
+        verify(view).setPermissions(permissions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetAttribute_whenNotInView() throws IOException {
+        provider.setAttribute(mockPath, "basic:permissions", PosixFilePermissions.fromString("rw-------"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetAttribute_whenReadOnly() throws IOException {
+        provider.setAttribute(mockPath, "size", 1L);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSetAttribute_whenUnsupportedView() throws IOException {
+        provider.setAttribute(mockPath, "unix:mode", 0644);
+    }
+
     @Test
     public void testDirectoryIsEmpty_whenNotEmpty() throws IOException {
         doReturn(mockStream).when(provider).newDirectoryStream(mockPath, null);
@@ -369,98 +578,77 @@ public class GlusterFileSystemProviderTest extends TestCase {
         assertEquals(ret, true);
     }
 
-    @Test(expected = NoSuchFileException.class)
-    public void testDelete_whenFileDoesNotExist() throws IOException {
-        mockStatic(Files.class);
-        when(Files.exists(mockPath)).thenReturn(false);
-
-        provider.delete(mockPath);
+    private void deleteMocks(long volptr, String path) {
+        mockStatic(GLFS.class);
+        mockStatic(UtilJNI.class);
+        doReturn(mockFileSystem).when(mockPath).getFileSystem();
+        doReturn(volptr).when(mockFileSystem).getVolptr();
+        doReturn(path).when(mockPath).toString();
     }
 
-    @Test(expected = DirectoryNotEmptyException.class)
-    public void testDelete_whenDirectoryIsNotEmpty() throws IOException {
-        mockStatic(Files.class);
-        when(Files.exists(mockPath)).thenReturn(true);
-        when(Files.isDirectory(mockPath)).thenReturn(true);
-        doReturn(false).when(provider).directoryIsEmpty(mockPath);
+    @Test
+    public void testDelete_whenFile() throws IOException {
+        long volptr = 1234L;
+        String path = "/foo";
+        deleteMocks(volptr, path);
+        when(GLFS.glfs_unlink(volptr, path)).thenReturn(0);
 
         provider.delete(mockPath);
-    }
-
-    @Test(expected = IOException.class)
-    public void testDelete_whenDirectoryAndFailing() throws IOException {
-        delete_helper(true, false);
-    }
 
-    @Test(expected = IOException.class)
-    public void testDelete_whenFileAndFailing() throws IOException {
-        delete_helper(false, false);
+        verifyStatic();
+        GLFS.glfs_unlink(volptr, path);
+        verifyStatic(never());
+        GLFS.glfs_rmdir(anyLong(), anyString());
     }
 
     @Test
-    public void testDelete_whenFileAndSuccess() throws IOException {
-        delete_helper(false, true);
-    }
+    public void testDelete_whenDirectory() throws IOException {
+        long volptr = 1234L;
+        String path = "/foo";
+        deleteMocks(volptr, path);
+        when(GLFS.glfs_unlink(volptr, path)).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.EISDIR);
+        when(GLFS.glfs_rmdir(volptr, path)).thenReturn(0);
 
-    @Test
-    public void testDelete_whenDirectoryAndSuccess() throws IOException {
-        delete_helper(true, true);
+        provider.delete(mockPath);
+
+        verifyStatic();
+        GLFS.glfs_rmdir(volptr, path);
     }
 
-    private void delete_helper(boolean directory, boolean success) throws IOException {
+    @Test(expected = NoSuchFileException.class)
+    public void testDelete_whenFileDoesNotExist() throws IOException {
         long volptr = 1234L;
         String path = "/foo";
+        deleteMocks(volptr, path);
+        when(GLFS.glfs_unlink(volptr, path)).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
 
-        mockStatic(Files.class);
-        mockStatic(GLFS.class);
-
-        when(Files.exists(mockPath)).thenReturn(true);
-        doReturn(mockFileSystem).when(mockPath).getFileSystem();
-        doReturn(volptr).when(mockFileSystem).getVolptr();
-        doReturn(path).when(mockPath).toString();
+        provider.delete(mockPath);
+    }
 
-        if (directory) {
-            when(Files.isDirectory(mockPath)).thenReturn(true);
-            doReturn(true).when(provider).directoryIsEmpty(mockPath);
-            if (success) {
-                when(GLFS.glfs_rmdir(volptr, path)).thenReturn(0);
-            } else {
-                when(GLFS.glfs_rmdir(volptr, path)).thenReturn(-1);
-            }
-        } else {
-            when(Files.isDirectory(mockPath)).thenReturn(false);
-            if (success) {
-                when(GLFS.glfs_unlink(volptr, path)).thenReturn(0);
-            } else {
-                when(GLFS.glfs_unlink(volptr, path)).thenReturn(-1);
-            }
-        }
+    @Test(expected = DirectoryNotEmptyException.class)
+    public void testDelete_whenDirectoryIsNotEmpty() throws IOException {
+        long volptr = 1234L;
+        String path = "/foo";
+        deleteMocks(volptr, path);
+        when(GLFS.glfs_unlink(volptr, path)).thenReturn(-1);
+        when(GLFS.glfs_rmdir(volptr, path)).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.EISDIR, GlusterErrno.ENOTEMPTY);
 
         provider.delete(mockPath);
-
-        if (success) {
-            verifyStatic();
-            Files.exists(mockPath);
-            verifyStatic();
-            Files.isDirectory(mockPath);
-
-            verify(mockPath).getFileSystem();
-            verify(mockFileSystem).getVolptr();
-
-            if (directory) {
-                verify(provider).directoryIsEmpty(mockPath);
-                verifyStatic();
-                GLFS.glfs_rmdir(volptr, path);
-            } else {
-                verifyStatic();
-                GLFS.glfs_unlink(volptr, path);
-            }
-        }
     }
 
-    @Test
-    public void testDelete() throws IOException {
+    @Test(expected = AccessDeniedException.class)
+    public void testDelete_whenFileAndNotPermitted() throws IOException {
+        long volptr = 1234L;
+        String path = "/foo";
+        deleteMocks(volptr, path);
+        when(GLFS.glfs_unlink(volptr, path)).thenReturn(-1);
+        when(GLFS.glfs_rmdir(volptr, path)).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.EPERM, GlusterErrno.ENOTDIR);
 
+        provider.delete(mockPath);
     }
 
     @Test
@@ -533,9 +721,9 @@ public class GlusterFileSystemProviderTest extends TestCase {
         PowerMockito.verifyStatic();
         GLFS.glfs_access(volptr, path, mode);
 
-        verify(mockPath).getFileSystem();
-        verify(mockFileSystem).getVolptr();
-        verify(mockPath).getString();
+        verify(mockPath, times(3)).getFileSystem();
+        verify(mockFileSystem, times(2)).getVolptr();
+        verify(mockPath, times(2)).getString();
 
     }
 
@@ -701,11 +889,9 @@ public class GlusterFileSystemProviderTest extends TestCase {
         when(Files.isDirectory(targetPath)).thenReturn(false);
         when(Files.isDirectory(mockPath)).thenReturn(false);
 
-        when(Files.createFile(any(GlusterPath.class), any(FileAttribute.class))).thenReturn(targetPath);
-        doNothing().when(provider).copyFileContent(mockPath, targetPath);
+        doNothing().when(provider).copyFileContent(mockPath, targetPath, attributes);
 
         if (attributes) {
-            doNothing().when(provider).copyFileAttributes(mockPath, targetPath);
             provider.copy(mockPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
 
         } else {
@@ -721,205 +907,202 @@ public class GlusterFileSystemProviderTest extends TestCase {
         Files.isDirectory(targetPath);
         verifyStatic();
         Files.isDirectory(mockPath);
-        verifyStatic();
-        Files.createFile(any(GlusterPath.class), any(FileAttribute.class));
-        verify(provider).copyFileContent(mockPath, targetPath);
-        if (attributes) {
-            verify(provider).copyFileAttributes(mockPath, targetPath);
-        }
+        verify(provider).copyFileContent(mockPath, targetPath, attributes);
         Mockito.verifyNoMoreInteractions(mockPath, targetPath);
         PowerMockito.verifyNoMoreInteractions(Files.class);
     }
 
     @Test
-    public void testCopyFileAttributes_whenNotDefaultPermissions() throws IOException {
-        copyFileAttributesHelper(false);
-    }
-
-    @Test
-    public void testCopyFileAttributes_whenDefaultPermissions() throws IOException {
-        copyFileAttributesHelper(true);
-    }
-
-    @Test(expected = IOException.class)
-    public void testCopyFileAttributes_whenStatFails() throws IOException {
-        copyFileAttributesFailureHelper(true);
-    }
-
-    @Test(expected = IOException.class)
-    public void testCopyFileAttributes_whenChmodFails() throws IOException {
-        copyFileAttributesFailureHelper(false);
-    }
-
-    private void copyFileAttributesHelper(boolean defaultPermissions) throws IOException {
-        stat blankStat = new stat();
+    public void testCopyFileAttributes() throws IOException {
+        stat stat = new stat();
+        stat.st_mode = 0104750;
+        stat.atime = 1400000000;
+        stat.atime_nsec = 5;
+        stat.mtime = 1300000000;
+        stat.mtime_nsec = 7;
         long volptr = 1234L;
         mockStatic(GLFS.class);
-        when(GLFS.glfs_stat(volptr, mockPath.toString(), blankStat)).thenReturn(0);
-        doReturn(mockFileSystem).when(mockPath).getFileSystem();
+        doReturn(mockFileSystem).when(targetPath).getFileSystem();
         doReturn(volptr).when(mockFileSystem).getVolptr();
+        doReturn("/target").when(targetPath).getString();
+        when(GLFS.glfs_chmod(volptr, "/target", 04750)).thenReturn(0);
+        when(GLFS.glfs_utimens(eq(volptr), eq("/target"), any(timespec[].class))).thenReturn(0);
 
-        if (!defaultPermissions) {
-            when(GLFS.glfs_chmod(volptr, mockPath.toString(), blankStat.st_mode)).thenReturn(0);
-        }
-
-        provider.copyFileAttributes(mockPath, mockPath);
+        provider.copyFileAttributes(stat, targetPath);
 
         verifyStatic();
-        GLFS.glfs_stat(volptr, mockPath.toString(), blankStat);
-        verify(mockFileSystem).getVolptr();
-        verify(mockPath).getFileSystem();
-
-        if (!defaultPermissions) {
-            verifyStatic();
-            GLFS.glfs_chmod(volptr, mockPath.toString(), blankStat.st_mode);
-        } else {
-            verifyNoMoreInteractions(mockPath);
-        }
+        GLFS.glfs_chmod(volptr, "/target", 04750);
+        ArgumentCaptor<timespec[]> times = ArgumentCaptor.forClass(timespec[].class);
+        verifyStatic();
+        GLFS.glfs_utimens(eq(volptr), eq("/target"), times.capture());
+        assertEquals(1400000000, times.getValue()[0].tv_sec);
+        assertEquals(5, times.getValue()[0].tv_nsec);
+        assertEquals(1300000000, times.getValue()[1].tv_sec);
+        assertEquals(7, times.getValue()[1].tv_nsec);
     }
 
-    private void copyFileAttributesFailureHelper(boolean statFailed) throws IOException {
-        stat blankStat = new stat();
+    @Test(expected = IOException.class)
+    public void testCopyFileAttributes_whenChmodFails() throws IOException {
+        stat stat = new stat();
         long volptr = 1234L;
         mockStatic(GLFS.class);
-        doReturn(mockFileSystem).when(mockPath).getFileSystem();
+        mockStatic(UtilJNI.class);
+        doReturn(mockFileSystem).when(targetPath).getFileSystem();
         doReturn(volptr).when(mockFileSystem).getVolptr();
+        doReturn("/target").when(targetPath).getString();
+        when(GLFS.glfs_chmod(volptr, "/target", stat.st_mode)).thenReturn(-1);
 
-        when(GLFS.glfs_stat(volptr, mockPath.toString(), blankStat)).thenReturn(statFailed ? -1 : 0);
-
-        when(GLFS.glfs_chmod(volptr, mockPath.toString(), blankStat.st_mode)).thenReturn(statFailed ? 0 : -1);
-
-        provider.copyFileAttributes(mockPath, mockPath);
+        provider.copyFileAttributes(stat, targetPath);
     }
 
     @Test
     public void testCopyFileContent() throws IOException {
-        Set<StandardOpenOption> options = new HashSet<>();
-        options.add(StandardOpenOption.READ);
-
-        byte[] bytes = new byte[8192];
-        doReturn(mockChannel).when(provider).newFileChannel(mockPath, options);
-        when(mockChannel.read(any(ByteBuffer.class))).thenReturn(10, 10, 0);
+        copyFileContentHelper(false);
+    }
 
-        mockStatic(Arrays.class);
-        when(Arrays.copyOf(bytes, 10)).thenReturn(bytes);
-        mockStatic(Files.class);
-        when(Files.write(mockPath, bytes, StandardOpenOption.TRUNCATE_EXISTING)).thenReturn(mockPath);
-        when(Files.write(mockPath, bytes, StandardOpenOption.APPEND)).thenReturn(mockPath);
+    @Test
+    public void testCopyFileContent_whenCopyAttributes() throws IOException {
+        copyFileContentHelper(true);
+    }
 
+    @Test
+    public void testCopyFileContent_whenLarge() throws IOException {
+        stat stat = new stat();
+        stat.st_size = GlusterParallelCopy.DEFAULT_THRESHOLD;
+        GlusterParallelCopy mockParallelCopy = Mockito.mock(GlusterParallelCopy.class);
+        provider.setParallelCopy(mockParallelCopy);
+        doReturn(true).when(mockParallelCopy).accepts(stat.st_size);
+        doReturn(mockChannel).when(provider).newFileChannel(mockPath, EnumSet.of(StandardOpenOption.READ));
+        doReturn(stat).when(mockChannel).fstat();
         doNothing().when(mockChannel).close();
 
-        provider.copyFileContent(mockPath, mockPath);
+        provider.copyFileContent(mockPath, targetPath, false);
 
+        verify(mockParallelCopy).copyRanges(eq(mockPath), eq(targetPath), eq(stat.st_size), any(FileAttribute.class));
+        verify(provider, never()).transferContent(any(FileChannel.class), anyLong(), any(Path.class), any(FileAttribute.class));
         verify(mockChannel).close();
-        verifyStatic();
-        Files.write(mockPath, bytes, StandardOpenOption.APPEND);
-        verifyStatic();
-        Files.write(mockPath, bytes, StandardOpenOption.TRUNCATE_EXISTING);
-        verifyStatic(times(2));
-        Arrays.copyOf(bytes, 10);
-        verify(mockChannel, times(3)).read(any(ByteBuffer.class));
-        verify(provider).newFileChannel(mockPath, options);
     }
 
-    @Test
-    public void testCopyFileContent_whenNothingRead() throws IOException {
-        Set<StandardOpenOption> options = new HashSet<>();
-        options.add(StandardOpenOption.READ);
-        doReturn(mockChannel).when(provider).newFileChannel(mockPath, options);
-        when(mockChannel.read(any(ByteBuffer.class))).thenReturn(0);
+    private void copyFileContentHelper(boolean attributes) throws IOException {
+        stat stat = new stat();
+        stat.st_size = 100;
+        stat.st_mode = 0100750;
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.READ);
+        Set<StandardOpenOption> targetOptions = EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        GlusterFileChannel mockTarget = PowerMockito.mock(GlusterFileChannel.class);
+        doNothing().when(mockTarget).close();
         doNothing().when(mockChannel).close();
 
-        provider.copyFileContent(mockPath, mockPath);
-
+        doReturn(mockChannel).when(provider).newFileChannel(mockPath, options);
+        doReturn(stat).when(mockChannel).fstat();
+        doReturn(mockTarget).when(provider).newFileChannel(eq(targetPath), eq(targetOptions), any(FileAttribute.class));
+        doReturn(60L).when(mockChannel).transferTo(0, 100, mockTarget);
+        doReturn(40L).when(mockChannel).transferTo(60, 40, mockTarget);
+        doNothing().when(provider).copyFileAttributes(stat, targetPath);
+
+        provider.copyFileContent(mockPath, targetPath, attributes);
+
+        ArgumentCaptor<FileAttribute> attribute = ArgumentCaptor.forClass(FileAttribute.class);
+        verify(provider).newFileChannel(eq(targetPath), eq(targetOptions), attribute.capture());
+        String expected = attributes ? "rwxr-x---" : "rw-rw-r--";
+        assertEquals(PosixFilePermissions.fromString(expected), attribute.getValue().value());
+        verify(mockChannel).transferTo(0, 100, mockTarget);
+        verify(mockChannel).transferTo(60, 40, mockTarget);
         verify(mockChannel).close();
-        verify(mockChannel).read(any(ByteBuffer.class));
-        verify(provider).newFileChannel(mockPath, options);
-
-        verifyNoMoreInteractions(mockPath);
+        verify(mockTarget).close();
+        verify(provider, times(attributes ? 1 : 0)).copyFileAttributes(stat, targetPath);
     }
 
-    @Test
-    public void testMoveFile_whenSameFile() throws IOException {
-        mockStatic(Files.class);
-        when(Files.exists(targetPath)).thenReturn(true);
-
-        doNothing().when(provider).guardFileExists(mockPath);
+    private void moveMocks(long volptr, String srcPath, String dstPath) {
         doNothing().when(provider).guardAbsolutePath(mockPath);
         doNothing().when(provider).guardAbsolutePath(targetPath);
+        GlusterFileSystem mfs = Mockito.mock(GlusterFileSystem.class);
+        doReturn(mfs).when(mockPath).getFileSystem();
+        doReturn(mfs).when(targetPath).getFileSystem();
+        doReturn(volptr).when(mfs).getVolptr();
+        doReturn(srcPath).when(mockPath).getString();
+        doReturn(dstPath).when(targetPath).getString();
+        mockStatic(GLFS.class);
+        mockStatic(UtilJNI.class);
+    }
 
-        doReturn(true).when(provider).isSameFile(mockPath, targetPath);
+    @Test
+    public void testMoveFile_whenSameFile() throws IOException {
+        moveMocks(12345L, "/foo/src", "/foo/dst");
+        stat stat = new stat();
+        stat.st_ino = 7;
+        doReturn(stat).when(provider).freshStat(targetPath, false);
+        doReturn(stat).when(provider).freshStat(mockPath, false);
 
         provider.move(mockPath, targetPath);
 
-        verify(provider).guardFileExists(mockPath);
-        verify(provider).guardAbsolutePath(mockPath);
-        verify(provider).guardAbsolutePath(targetPath);
-
-        verify(provider).isSameFile(mockPath, targetPath);
-        verify(mockPath, never()).getFileSystem();
-
-        verifyStatic();
-        Files.exists(targetPath);
+        verifyStatic(never());
+        GLFS.glfs_rename(anyLong(), anyString(), anyString());
     }
 
     @Test(expected = AtomicMoveNotSupportedException.class)
     public void testMoveFile_whenAtomicMove() throws IOException {
-        mockStatic(Files.class);
-        PowerMockito.when(Files.exists(targetPath)).thenReturn(false);
-
-        doNothing().when(provider).guardFileExists(mockPath);
-        doNothing().when(provider).guardAbsolutePath(mockPath);
-        doNothing().when(provider).guardAbsolutePath(targetPath);
-
-        CopyOption copyOption = StandardCopyOption.ATOMIC_MOVE;
-        doReturn(false).when(provider).isSameFile(mockPath, targetPath);
-        provider.move(mockPath, targetPath, copyOption);
+        moveMocks(12345L, "/foo/src", "/foo/dst");
+        provider.move(mockPath, targetPath, StandardCopyOption.ATOMIC_MOVE);
     }
 
     @Test(expected = FileAlreadyExistsException.class)
     public void testMoveFile_whenTargetExists_andNoReplaceExisting() throws IOException {
-        mockStatic(Files.class);
-        PowerMockito.when(Files.exists(targetPath)).thenReturn(true);
+        moveMocks(12345L, "/foo/src", "/foo/dst");
+        stat source = new stat();
+        source.st_ino = 7;
+        stat target = new stat();
+        target.st_ino = 8;
+        doReturn(target).when(provider).freshStat(targetPath, false);
+        doReturn(source).when(provider).freshStat(mockPath, false);
 
-        doNothing().when(provider).guardFileExists(mockPath);
-        doNothing().when(provider).guardAbsolutePath(mockPath);
-        doNothing().when(provider).guardAbsolutePath(targetPath);
-
-        doReturn(false).when(provider).isSameFile(mockPath, targetPath);
-        when(Files.exists(targetPath)).thenReturn(true);
         provider.move(mockPath, targetPath, StandardCopyOption.COPY_ATTRIBUTES);
     }
 
+    @Test(expected = FileAlreadyExistsException.class)
+    public void testMoveFile_whenTargetExists_andCachedAsMissing() throws IOException {
+        moveMocks(12345L, "/foo/src", "/foo/dst");
+        doReturn(null).when(provider).lookupStat(any(Path.class), anyBoolean());
+        stat source = new stat();
+        source.st_ino = 7;
+        stat target = new stat();
+        target.st_ino = 8;
+        doReturn(target).when(provider).freshStat(targetPath, false);
+        doReturn(source).when(provider).freshStat(mockPath, false);
+
+        try {
+            provider.move(mockPath, targetPath);
+        } finally {
+            verifyStatic(never());
+            GLFS.glfs_rename(anyLong(), anyString(), anyString());
+        }
+    }
+
     @Test(expected = DirectoryNotEmptyException.class)
     public void testMoveFile_whenTargetDirNotEmpty_andReplaceExisting() throws IOException {
-        mockStatic(Files.class);
-        PowerMockito.when(Files.exists(targetPath)).thenReturn(true);
+        long volptr = 12345L;
+        moveMocks(volptr, "/foo/src", "/foo/dst");
+        when(GLFS.glfs_rename(volptr, "/foo/src", "/foo/dst")).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOTEMPTY);
 
-        doNothing().when(provider).guardFileExists(mockPath);
-        doNothing().when(provider).guardAbsolutePath(mockPath);
-        doNothing().when(provider).guardAbsolutePath(targetPath);
+        provider.move(mockPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testMoveFile_whenSourceDoesNotExist() throws IOException {
+        long volptr = 12345L;
+        moveMocks(volptr, "/foo/src", "/foo/dst");
+        when(GLFS.glfs_rename(volptr, "/foo/src", "/foo/dst")).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
 
-        doReturn(false).when(provider).isSameFile(mockPath, targetPath);
-        when(Files.isDirectory(targetPath)).thenReturn(true);
-        doReturn(false).when(provider).directoryIsEmpty(targetPath);
         provider.move(mockPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
     }
 
     @Test(expected = UnsupportedOperationException.class)
     public void testMoveFile_whenDifferentFilesystem() throws IOException {
-        mockStatic(Files.class);
-        PowerMockito.when(Files.exists(targetPath)).thenReturn(false);
-
-        doNothing().when(provider).guardFileExists(mockPath);
         doNothing().when(provider).guardAbsolutePath(mockPath);
         doNothing().when(provider).guardAbsolutePath(targetPath);
-
-        doReturn(false).when(provider).isSameFile(mockPath, targetPath);
-
-        when(Files.isDirectory(targetPath)).thenReturn(false);
-        when(Files.exists(targetPath)).thenReturn(false);
-
         doReturn(mockFileSystem).when(mockPath).getFileSystem();
         doReturn(differentMockFileSystem).when(targetPath).getFileSystem();
 
@@ -928,46 +1111,34 @@ public class GlusterFileSystemProviderTest extends TestCase {
 
     @Test
     public void testMoveFile_whenTargetDoesNotExist() throws IOException {
-        mockStatic(Files.class);
-        PowerMockito.when(Files.exists(targetPath)).thenReturn(false);
-
-        doNothing().when(provider).guardFileExists(mockPath);
-        doNothing().when(provider).guardAbsolutePath(mockPath);
-        doNothing().when(provider).guardAbsolutePath(targetPath);
-
-        doReturn(false).when(provider).isSameFile(mockPath, targetPath);
-        GlusterFileSystem mfs = Mockito.mock(GlusterFileSystem.class);
-
-        when(Files.isDirectory(targetPath)).thenReturn(false);
-        when(Files.exists(targetPath)).thenReturn(false);
+        long volptr = 12345L;
         String srcPath = "/foo/src";
         String dstPath = "/foo/dst";
-        doReturn(srcPath).when(mockPath).getString();
-        doReturn(dstPath).when(targetPath).getString();
-
-        doReturn(mfs).when(mockPath).getFileSystem();
-        doReturn(mfs).when(targetPath).getFileSystem();
-
-        long volptr = 12345L;
-        doReturn(volptr).when(mfs).getVolptr();
-        mockStatic(GLFS.class);
+        moveMocks(volptr, srcPath, dstPath);
+        doReturn(null).when(provider).freshStat(targetPath, false);
         when(GLFS.glfs_rename(volptr, srcPath, dstPath)).thenReturn(0);
 
         provider.move(mockPath, targetPath);
 
-        verify(provider).guardFileExists(mockPath);
         verify(provider).guardAbsolutePath(mockPath);
         verify(provider).guardAbsolutePath(targetPath);
-        verify(mockPath).getString();
-        verify(targetPath).getString();
-        verify(mockPath).getFileSystem();
-        verify(targetPath).getFileSystem();
-        verify(mfs).getVolptr();
-
+        verify(provider).freshStat(targetPath, false);
+        verify(provider, never()).freshStat(mockPath, false);
         verifyStatic();
-        Files.isDirectory(targetPath);
-        verifyStatic(times(2));
-        Files.exists(targetPath);
+        GLFS.glfs_rename(volptr, srcPath, dstPath);
+    }
+
+    @Test
+    public void testMoveFile_whenReplaceExisting() throws IOException {
+        long volptr = 12345L;
+        String srcPath = "/foo/src";
+        String dstPath = "/foo/dst";
+        moveMocks(volptr, srcPath, dstPath);
+        when(GLFS.glfs_rename(volptr, srcPath, dstPath)).thenReturn(0);
+
+        provider.move(mockPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+
+        verify(provider, never()).freshStat(any(Path.class), anyBoolean());
         verifyStatic();
         GLFS.glfs_rename(volptr, srcPath, dstPath);
     }
@@ -1165,7 +1336,7 @@ public class GlusterFileSystemProviderTest extends TestCase {
 
         provider.createSymbolicLink(mockPath, targetPath);
 
-        verify(mockPath).getFileSystem();
+        verify(mockPath, times(2)).getFileSystem();
         verify(mockFileSystem).getVolptr();
         
         verifyStatic();
@@ -1177,51 +1348,34 @@ public class GlusterFileSystemProviderTest extends TestCase {
 
     @Test(expected = FileAlreadyExistsException.class)
     public void testCreateDirectory_whenFileOrDirectoryExists() throws IOException {
-        mockStatic(Files.class);
-        when(Files.exists(mockPath)).thenReturn(true);
-
-        provider.createDirectory(mockPath);
+        helperCreateDirectory(GlusterErrno.EEXIST, false);
     }
 
-    @Test(expected = IOException.class)
+    @Test(expected = NoSuchFileException.class)
     public void testCreateDirectory_whenParentDirectoryDoesNotExist() throws IOException {
-        mockStatic(Files.class);
-        GlusterPath parentPath = Mockito.mock(GlusterPath.class);
-        doReturn(parentPath).when(mockPath).getParent();
-        when(Files.exists(parentPath)).thenReturn(false);
-
-        provider.createDirectory(mockPath);
+        helperCreateDirectory(GlusterErrno.ENOENT, false);
     }
 
     @Test(expected = IOException.class)
     public void testCreateDirectory_whenCannotCreateDirectory() throws IOException {
-        helperCreateDirectory(true, false);
+        helperCreateDirectory(5, false);
     }
 
     @Test
     public void testCreateDirectory() throws IOException {
-        helperCreateDirectory(false, false);
+        helperCreateDirectory(0, false);
     }
 
     @Test
     public void testCreateDirectory_whenGivenFileAttributes() throws IOException {
-        helperCreateDirectory(false, true);
+        helperCreateDirectory(0, true);
     }
 
     /*
-     * @param errorHappens - used to test the case when an IOException occurs
+     * @param errno - the error mkdir fails with, 0 for success
      * @param givenFileAttributes - used to test the case when the call to createDirectory includes a set of FileAttributes
-     *
-     * When errorHappens is true, the value of the second parameter doesn't matter.
      */
-    private void helperCreateDirectory(boolean errorHappens, boolean givenFileAttributes) throws IOException {
-        mockStatic(Files.class);
-        when(Files.exists(mockPath)).thenReturn(false);
-
-        GlusterPath parentPath = Mockito.mock(GlusterPath.class);
-        doReturn(parentPath).when(mockPath).getParent();
-        when(Files.exists(parentPath)).thenReturn(true);
-
+    private void helperCreateDirectory(int errno, boolean givenFileAttributes) throws IOException {
         int mode = 0775; //using default file attribute to avoid testing parseAttrs redundantly
         long volptr = 1234L;
         String pathString = "foo";
@@ -1231,11 +1385,9 @@ public class GlusterFileSystemProviderTest extends TestCase {
         doReturn(mockFileSystem).when(mockPath).getFileSystem();
         doReturn(volptr).when(mockFileSystem).getVolptr();
         mockStatic(GLFS.class);
-        int ret = 0;
-        if (errorHappens) {
-            ret = -1;
-        }
-        when(GLFS.glfs_mkdir(volptr, pathString, mode)).thenReturn(ret);
+        mockStatic(UtilJNI.class);
+        when(GLFS.glfs_mkdir(volptr, pathString, mode)).thenReturn(0 == errno ? 0 : -1);
+        when(UtilJNI.errno()).thenReturn(errno);
 
         if (givenFileAttributes) {
             mockStatic(GlusterFileAttributes.class);
@@ -1245,21 +1397,14 @@ public class GlusterFileSystemProviderTest extends TestCase {
             provider.createDirectory(mockPath);
         }
 
-        if (!errorHappens) {
-            verifyStatic();
-            GLFS.glfs_mkdir(volptr, pathString, mode);
-            verifyStatic();
-            Files.exists(mockPath);
+        verifyStatic();
+        GLFS.glfs_mkdir(volptr, pathString, mode);
+        verify(mockFileSystem).getVolptr();
+        verify(mockPath, never()).getParent();
+
+        if (givenFileAttributes) {
             verifyStatic();
-            Files.exists(parentPath);
-            verify(mockPath).getFileSystem();
-            verify(mockFileSystem).getVolptr();
-            verify(mockPath).getParent();
-
-            if (givenFileAttributes) {
-                verifyStatic();
-                GlusterFileAttributes.parseAttrs(attrs);
-            }
+            GlusterFileAttributes.parseAttrs(attrs);
         }
     }
 
@@ -1396,6 +1541,47 @@ public class GlusterFileSystemProviderTest extends TestCase {
         provider.statPath(mockPath);
     }
 
+    @Test
+    public void testLookupStat_fromCache() throws Exception {
+        GlusterStatCache cache = new GlusterStatCache();
+        cache.setTtl(1000);
+        stat cached = new stat();
+        cache.put("/foo", false, cached);
+        doReturn(mockFileSystem).when(mockPath).getFileSystem();
+        doReturn(true).when(mockFileSystem).isOpen();
+        doReturn(cache).when(mockFileSystem).getStatCache();
+        doReturn("/foo").when(mockPath).getString();
+        mockStatic(GLFS.class);
+
+        assertTrue(cached == provider.lookupStat(mockPath, false));
+
+        assertEquals(1, cache.getHits());
+        verifyStatic(never());
+        GLFS.glfs_lstat(anyLong(), anyString(), any(stat.class));
+    }
+
+    @Test
+    public void testLookupStat_storesResult() throws Exception {
+        long volptr = 1234L;
+        GlusterStatCache cache = new GlusterStatCache();
+        cache.setTtl(1000);
+        stat stat = new stat();
+        whenNew(stat.class).withNoArguments().thenReturn(stat);
+        doReturn(mockFileSystem).when(mockPath).getFileSystem();
+        doReturn(true).when(mockFileSystem).isOpen();
+        doReturn(cache).when(mockFileSystem).getStatCache();
+        doReturn(volptr).when(mockFileSystem).getVolptr();
+        doReturn("/foo").when(mockPath).getString();
+        mockStatic(GLFS.class);
+        when(GLFS.glfs_lstat(volptr, "/foo", stat)).thenReturn(0);
+
+        assertTrue(stat == provider.lookupStat(mockPath, false));
+
+        assertEquals(1, cache.getMisses());
+        assertTrue(stat == cache.get("/foo", false));
+        assertNull(cache.get("/foo", true));
+    }
+
     @Test
     public void testStatPath() throws Exception {
         long volptr = 1234L;
@@ -1415,7 +1601,7 @@ public class GlusterFileSystemProviderTest extends TestCase {
 
         assertTrue(ret == stat);
 
-        verify(mockPath).getFileSystem();
+        verify(mockPath, times(3)).getFileSystem();
         verify(mockFileSystem).getVolptr();
         verify(mockPath).getString();
 
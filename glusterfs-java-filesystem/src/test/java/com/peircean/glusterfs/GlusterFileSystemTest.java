@@ -15,6 +15,7 @@ import java.nio.file.FileStore;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -120,6 +121,16 @@ public class GlusterFileSystemTest extends TestCase {
         verify(mockFileSystemProvider).getScheme();
     }
 
+    @Test
+    public void testSupportedFileAttributeViews() {
+        Set<String> views = fileSystem.supportedFileAttributeViews();
+        assertEquals(4, views.size());
+        assertTrue(views.contains("basic"));
+        assertTrue(views.contains("posix"));
+        assertTrue(views.contains("unix"));
+        assertTrue(views.contains("user"));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetPathMatcher_whenBadInput() {
         fileSystem.getPathMatcher("foo");
@@ -0,0 +1,405 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GLFS.class, UtilJNI.class, GlusterHandleCache.class})
+public class GlusterHandleCacheTest {
+    private long volptr = 123l;
+    private GlusterFileSystem fileSystem;
+    private GlusterHandleCache cache;
+
+    @Before
+    public void setUp() {
+        fileSystem = new GlusterFileSystem(new GlusterFileSystemProvider(), "host", "vol", volptr);
+        cache = fileSystem.getHandleCache();
+        mockStatic(GLFS.class);
+        mockStatic(UtilJNI.class);
+        lookup(0, "/", 1);
+        lookup(1, "a", 2);
+        lookup(2, "b", 3);
+        lookup(3, "c", 4);
+        lookup(3, "f", 5, 0100644);
+    }
+
+    private void lookup(long parent, String name, long object) {
+        lookup(parent, name, object, 0040755);
+    }
+
+    private void lookup(long parent, String name, final long object, final int mode) {
+        when(GLFS.glfs_h_lookupat(eq(volptr), eq(parent), eq(name), any(stat.class), eq(1))).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable {
+                ((stat) invocation.getArguments()[3]).st_mode = mode;
+                return object;
+            }
+        });
+    }
+
+    private GlusterPath path(String path) {
+        return new GlusterPath(fileSystem, path);
+    }
+
+    @Test
+    public void testAcquire() {
+        GlusterHandleCache.Handle handle = cache.acquire(path("/a/b/c"));
+
+        assertEquals(4, handle.object);
+        assertEquals(1, handle.references);
+        assertEquals(4, cache.size());
+        assertEquals(4, cache.getMisses());
+        cache.release(handle);
+        assertEquals(0, handle.references);
+    }
+
+    @Test
+    public void testAcquire_relativeToCachedParent() {
+        cache.release(cache.acquire(path("/a/b/c")));
+        lookup(3, "d", 5);
+
+        GlusterHandleCache.Handle handle = cache.acquire(path("/a/b/d"));
+
+        assertEquals(5, handle.object);
+        assertEquals(1, cache.getHits());
+        verifyStatic();
+        GLFS.glfs_h_lookupat(eq(volptr), eq(3L), eq("d"), any(stat.class), eq(1));
+        verifyStatic(never());
+        GLFS.glfs_h_lookupat(eq(volptr), eq(0L), eq("/a/b/d"), any(stat.class), anyInt());
+    }
+
+    @Test
+    public void testAcquire_whenMissing() {
+        assertNull(cache.acquire(path("/a/b/missing")));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testAcquire_whenDisabled() {
+        cache.setMaxHandles(0);
+        assertNull(cache.acquire(path("/a")));
+        verifyStatic(never());
+        GLFS.glfs_h_lookupat(anyLong(), anyLong(), anyString(), any(stat.class), anyInt());
+    }
+
+    @Test
+    public void testSetMaxHandles_closesLeastRecentlyUsed() {
+        cache.release(cache.acquire(path("/a/b/c")));
+
+        cache.setMaxHandles(2);
+
+        assertEquals(2, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(1);
+        verifyStatic();
+        GLFS.glfs_h_close(2);
+    }
+
+    @Test
+    public void testRelease_afterEviction() {
+        GlusterHandleCache.Handle handle = cache.acquire(path("/a"));
+        cache.invalidate("/a");
+        verifyStatic(never());
+        GLFS.glfs_h_close(2);
+
+        cache.release(handle);
+
+        verifyStatic();
+        GLFS.glfs_h_close(2);
+    }
+
+    @Test
+    public void testInvalidate() {
+        lookup(1, "ab", 5);
+        cache.release(cache.acquire(path("/a/b/c")));
+        cache.release(cache.acquire(path("/ab")));
+
+        cache.invalidate("/a");
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.acquire("/ab"));
+        verifyStatic();
+        GLFS.glfs_h_close(4);
+    }
+
+    @Test
+    public void testAcquire_whenFile() {
+        assertNull(cache.acquire(path("/a/b/f")));
+
+        assertEquals(3, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(5);
+    }
+
+    @Test
+    public void testStat() {
+        stat stat = new stat();
+
+        assertEquals(0, GlusterHandleCache.stat(path("/a/b/f"), stat));
+
+        assertEquals(0100644, stat.st_mode);
+        assertEquals(3, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(5);
+    }
+
+    @Test
+    public void testStat_looksLeafUpEachTime() {
+        GlusterHandleCache.stat(path("/a/b/f"), new stat());
+        GlusterHandleCache.stat(path("/a/b/f"), new stat());
+
+        verifyStatic(times(2));
+        GLFS.glfs_h_lookupat(eq(volptr), eq(3L), eq("f"), any(stat.class), eq(1));
+        verifyStatic(times(1));
+        GLFS.glfs_h_lookupat(eq(volptr), eq(2L), eq("b"), any(stat.class), eq(1));
+    }
+
+    @Test
+    public void testStat_whenMissing() {
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        assertEquals(-1, GlusterHandleCache.stat(path("/a/b/missing"), new stat()));
+
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testLookupStat_whenMissing_oneRoundTrip() {
+        GlusterHandleCache.stat(path("/a/b/f"), new stat());
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        assertNull(((GlusterFileSystemProvider) fileSystem.provider()).lookupStat(path("/a/b/missing"), true));
+
+        verifyStatic(times(1));
+        GLFS.glfs_h_lookupat(eq(volptr), eq(3L), eq("missing"), any(stat.class), eq(1));
+        verifyStatic(never());
+        GLFS.glfs_stat(anyLong(), anyString(), any(stat.class));
+    }
+
+    @Test
+    public void testStat_whenParentStale() {
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ESTALE);
+
+        assertEquals(GlusterHandleCache.NO_HANDLE, GlusterHandleCache.stat(path("/a/b/missing"), new stat()));
+
+        assertEquals(2, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(3);
+    }
+
+    @Test
+    public void testStat_root() {
+        assertEquals(0, GlusterHandleCache.stat(path("/"), new stat()));
+        verifyStatic();
+        GLFS.glfs_h_close(1);
+    }
+
+    @Test
+    public void testStat_whenFileSystemClosed() {
+        fileSystem.setVolptr(-1);
+        assertEquals(GlusterHandleCache.NO_HANDLE, GlusterHandleCache.stat(path("/a/b/f"), new stat()));
+    }
+
+    @Test
+    public void testSetattrs() throws Exception {
+        stat stat = new stat();
+        when(GLFS.glfs_h_setattrs(volptr, 5, stat, 0x1)).thenReturn(0);
+
+        assertTrue(GlusterHandleCache.setattrs(path("/a/b/f"), stat, 0x1));
+
+        verifyStatic();
+        GLFS.glfs_h_close(5);
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testSetattrs_whenMissing() throws Exception {
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        GlusterHandleCache.setattrs(path("/a/b/missing"), new stat(), 0x1);
+    }
+
+    @Test
+    public void testOpen() {
+        when(GLFS.glfs_h_open(volptr, 5, 2)).thenReturn(77L);
+
+        assertEquals(77, GlusterHandleCache.open(path("/a/b/f"), 2));
+
+        verifyStatic();
+        GLFS.glfs_h_close(5);
+    }
+
+    @Test
+    public void testOpen_whenFails() {
+        when(GLFS.glfs_h_open(volptr, 5, 2)).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.EACCES);
+
+        assertEquals(-1, GlusterHandleCache.open(path("/a/b/f"), 2));
+
+        assertEquals(3, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(5);
+    }
+
+    @Test
+    public void testOpen_whenStale() {
+        when(GLFS.glfs_h_open(volptr, 5, 2)).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ESTALE);
+
+        assertEquals(0, GlusterHandleCache.open(path("/a/b/f"), 2));
+    }
+
+    @Test
+    public void testOpen_whenMissing() {
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        assertEquals(-1, GlusterHandleCache.open(path("/a/b/missing"), 2));
+
+        verifyStatic(never());
+        GLFS.glfs_h_open(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testOpendir() {
+        when(GLFS.glfs_h_opendir(volptr, 3)).thenReturn(78L);
+        assertEquals(78, GlusterHandleCache.opendir(path("/a/b")));
+    }
+
+    @Test
+    public void testOpendir_whenMissing() {
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        assertEquals(-1, GlusterHandleCache.opendir(path("/a/b/missing")));
+
+        verifyStatic(never());
+        GLFS.glfs_h_opendir(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testMkdir() throws Exception {
+        when(GLFS.glfs_h_mkdir(eq(volptr), eq(3L), eq("new"), eq(0775), any(stat.class))).thenReturn(9L);
+
+        assertTrue(GlusterHandleCache.mkdir(path("/a/b/new"), 0775));
+
+        assertEquals(9, cache.acquire("/a/b/new").object);
+    }
+
+    @Test
+    public void testUnlink() throws Exception {
+        cache.release(cache.acquire(path("/a/b/c")));
+        when(GLFS.glfs_h_unlink(volptr, 3, "c")).thenReturn(0);
+
+        assertTrue(GlusterHandleCache.unlink(path("/a/b/c")));
+
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testMkdir_whenExists() throws Exception {
+        when(GLFS.glfs_h_mkdir(eq(volptr), eq(3L), eq("c"), eq(0775), any(stat.class))).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.EEXIST);
+
+        try {
+            GlusterHandleCache.mkdir(path("/a/b/c"), 0775);
+            fail();
+        } catch (FileAlreadyExistsException e) {
+            assertEquals("/a/b/c", e.getFile());
+        }
+
+        assertEquals(3, cache.size());
+        verifyStatic(never());
+        GLFS.glfs_h_close(anyLong());
+    }
+
+    @Test
+    public void testMkdir_whenParentStale() throws Exception {
+        when(GLFS.glfs_h_mkdir(eq(volptr), eq(3L), eq("new"), eq(0775), any(stat.class))).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ESTALE);
+
+        assertFalse(GlusterHandleCache.mkdir(path("/a/b/new"), 0775));
+
+        assertEquals(2, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(3);
+    }
+
+    @Test
+    public void testMkdir_whenParentGone() throws Exception {
+        when(GLFS.glfs_h_mkdir(eq(volptr), eq(3L), eq("new"), eq(0775), any(stat.class))).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        assertFalse(GlusterHandleCache.mkdir(path("/a/b/new"), 0775));
+
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testUnlink_whenMissing() throws Exception {
+        when(GLFS.glfs_h_unlink(volptr, 3, "missing")).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        try {
+            GlusterHandleCache.unlink(path("/a/b/missing"));
+            fail();
+        } catch (NoSuchFileException e) {
+            assertEquals("/a/b/missing", e.getFile());
+        }
+
+        assertEquals(3, cache.size());
+        verifyStatic(never());
+        GLFS.glfs_h_close(anyLong());
+    }
+
+    @Test(expected = DirectoryNotEmptyException.class)
+    public void testUnlink_whenNotEmpty() throws Exception {
+        when(GLFS.glfs_h_unlink(volptr, 2, "b")).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOTEMPTY);
+
+        GlusterHandleCache.unlink(path("/a/b"));
+    }
+
+    @Test
+    public void testUnlink_whenParentStale() throws Exception {
+        when(GLFS.glfs_h_unlink(volptr, 3, "c")).thenReturn(-1);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ESTALE);
+
+        assertFalse(GlusterHandleCache.unlink(path("/a/b/c")));
+
+        assertEquals(2, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(3);
+    }
+
+    @Test
+    public void testClose_clearsHandles() throws Exception {
+        cache.release(cache.acquire(path("/a")));
+        when(GLFS.glfs_fini(volptr)).thenReturn(0);
+
+        fileSystem.close();
+
+        assertEquals(0, cache.size());
+        verifyStatic();
+        GLFS.glfs_h_close(2);
+    }
+}
@@ -0,0 +1,226 @@
+package com.peircean.glusterfs;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GlusterFileChannel.class, GlusterInputStream.class})
+public class GlusterInputStreamTest {
+    private GlusterFileChannel mockChannel;
+    private GlusterInputStream stream;
+
+    @Before
+    public void setUp() {
+        mockChannel = PowerMockito.mock(GlusterFileChannel.class);
+        stream = new GlusterInputStream(mockChannel);
+    }
+
+    /**
+     * Makes the channel fill reads with the bytes of their file offsets, up to count bytes per read.
+     */
+    private void channelReads(final int count) throws IOException {
+        doAnswer(new Answer<Integer>() {
+            private long position;
+
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int read = Math.min(count, buffer.remaining());
+                for (int i = 0; i < read; i++) {
+                    buffer.put((byte) position++);
+                }
+                return read;
+            }
+        }).when(mockChannel).read(any(ByteBuffer.class));
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        byte[] bytes = new byte[10];
+        channelReads(4);
+
+        assertEquals(4, stream.read(bytes, 2, 6));
+
+        assertEquals(3, bytes[5]);
+        verify(mockChannel).read(same(stream.getBuffer()));
+    }
+
+    @Test
+    public void testRead_fromBuffer() throws IOException {
+        channelReads(100);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, stream.read());
+        }
+
+        verify(mockChannel, times(1)).read(any(ByteBuffer.class));
+    }
+
+    @Test
+    public void testRead_whenLargerThanBuffer() throws IOException {
+        stream = new GlusterInputStream(mockChannel, 16);
+        channelReads(32);
+        byte[] bytes = new byte[32];
+
+        assertEquals(32, stream.read(bytes, 0, 32));
+
+        verify(mockChannel, never()).read(same(stream.getBuffer()));
+    }
+
+    @Test
+    public void testRead_whenEmpty() throws IOException {
+        assertEquals(0, stream.read(new byte[10], 0, 0));
+        verify(mockChannel, never()).read(any(ByteBuffer.class));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRead_whenOutOfBounds() throws IOException {
+        stream.read(new byte[10], 5, 6);
+    }
+
+    @Test
+    public void testRead_singleByte() throws IOException {
+        channelReads(1);
+        assertEquals(0, stream.read());
+    }
+
+    @Test
+    public void testRead_singleByteAtEndOfFile() throws IOException {
+        doReturn(-1).when(mockChannel).read(any(ByteBuffer.class));
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void testSkip_withinBuffer() throws IOException {
+        channelReads(100);
+        stream.read();
+
+        assertEquals(50, stream.skip(50));
+
+        assertEquals(51, stream.read());
+        verify(mockChannel, never()).position(anyLong());
+    }
+
+    @Test
+    public void testSkip_pastBuffer() throws IOException {
+        channelReads(100);
+        stream.read();
+        doReturn(100L).when(mockChannel).position();
+        doReturn(1000L).when(mockChannel).size();
+
+        assertEquals(399, stream.skip(399));
+
+        verify(mockChannel).position(400L);
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        doReturn(100L).when(mockChannel).position();
+        doReturn(1000L).when(mockChannel).size();
+
+        assertEquals(300, stream.skip(300));
+
+        verify(mockChannel).position(400L);
+    }
+
+    @Test
+    public void testSkip_pastEndOfFile() throws IOException {
+        doReturn(900L).when(mockChannel).position();
+        doReturn(1000L).when(mockChannel).size();
+
+        assertEquals(100, stream.skip(300));
+
+        verify(mockChannel).position(1000L);
+    }
+
+    @Test
+    public void testSkip_whenNegative() throws IOException {
+        assertEquals(0, stream.skip(-1));
+        verify(mockChannel, never()).position(anyLong());
+    }
+
+    @Test
+    public void testAvailable() throws IOException {
+        doReturn(100L).when(mockChannel).position();
+        doReturn(1000L).when(mockChannel).size();
+        assertEquals(900, stream.available());
+    }
+
+    @Test
+    public void testAvailable_withBuffer() throws IOException {
+        channelReads(100);
+        stream.read();
+        doReturn(100L).when(mockChannel).position();
+        doReturn(1000L).when(mockChannel).size();
+
+        assertEquals(999, stream.available());
+    }
+
+    @Test
+    public void testAvailable_whenLarge() throws IOException {
+        doReturn(0L).when(mockChannel).position();
+        doReturn(Long.MAX_VALUE).when(mockChannel).size();
+        assertEquals(Integer.MAX_VALUE, stream.available());
+    }
+
+    @Test
+    public void testTransferTo() throws IOException {
+        doReturn(10L).when(mockChannel).position();
+        doReturn(500L).doReturn(0L).when(mockChannel).transferTo(anyLong(), anyLong(), any(WritableByteChannel.class));
+
+        assertEquals(500, stream.transferTo(new ByteArrayOutputStream()));
+
+        verify(mockChannel).transferTo(eq(10L), eq(Long.MAX_VALUE), any(WritableByteChannel.class));
+        verify(mockChannel).transferTo(eq(510L), eq(Long.MAX_VALUE), any(WritableByteChannel.class));
+        verify(mockChannel).position(510L);
+    }
+
+    @Test
+    public void testTransferTo_withBuffer() throws IOException {
+        channelReads(100);
+        stream.read();
+        doReturn(100L).when(mockChannel).position();
+        doReturn(0L).when(mockChannel).transferTo(anyLong(), anyLong(), any(WritableByteChannel.class));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(99, stream.transferTo(out));
+
+        assertEquals(99, out.size());
+        assertEquals(1, out.toByteArray()[0]);
+    }
+
+    @Test
+    public void testTransferTo_whenGlusterStream() throws IOException {
+        GlusterFileChannel target = PowerMockito.mock(GlusterFileChannel.class);
+        doReturn(0L).when(mockChannel).position();
+        doReturn(0L).when(mockChannel).transferTo(0L, Long.MAX_VALUE, target);
+
+        assertEquals(0, stream.transferTo(new GlusterOutputStream(target)));
+
+        verify(mockChannel).transferTo(0L, Long.MAX_VALUE, target);
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        PowerMockito.doNothing().when(mockChannel).close();
+        stream.close();
+        verify(mockChannel).close();
+    }
+}
@@ -0,0 +1,150 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GlusterMappedRegionTest {
+    private static final int FILE_SIZE = 3 * GlusterMappedRegion.PAGE_SIZE + 100;
+
+    @Mock
+    private GlusterFileChannel mockChannel;
+    @Mock
+    private GlusterPath mockPath;
+
+    @Before
+    public void setUp() throws IOException {
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                long offset = (Long) invocation.getArguments()[1];
+                int read = (int) Math.min(buffer.remaining(), FILE_SIZE - offset);
+                if (read <= 0) {
+                    return -1;
+                }
+                for (int i = 0; i < read; i++) {
+                    buffer.put((byte) (offset + i));
+                }
+                return read;
+            }
+        }).when(mockChannel).read(any(ByteBuffer.class), anyLong());
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int written = buffer.remaining();
+                buffer.position(buffer.limit());
+                return written;
+            }
+        }).when(mockChannel).write(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        MappedByteBuffer buffer = GlusterMappedRegion.load(mockChannel, 10, FILE_SIZE);
+
+        assertTrue(buffer.isDirect());
+        assertEquals(0, buffer.position());
+        assertEquals(FILE_SIZE, buffer.limit());
+        assertEquals((byte) 10, buffer.get(0));
+        assertEquals((byte) (FILE_SIZE - 1), buffer.get(FILE_SIZE - 11));
+        assertEquals(0, buffer.get(FILE_SIZE - 1));
+    }
+
+    @Test
+    public void testWriteBack_whenClean() throws IOException {
+        GlusterMappedRegion region = new GlusterMappedRegion(mockChannel, 0, GlusterMappedRegion.load(mockChannel, 0, FILE_SIZE));
+
+        assertEquals(0, region.writeBack());
+        verify(mockChannel, never()).write(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void testWriteBack_writesDirtyRuns() throws IOException {
+        int page = GlusterMappedRegion.PAGE_SIZE;
+        GlusterMappedRegion region = new GlusterMappedRegion(mockChannel, 1000, GlusterMappedRegion.load(mockChannel, 1000, FILE_SIZE));
+        region.getBuffer().put(1, (byte) 0xff);
+        region.getBuffer().put(page + 1, (byte) 0xff);
+        region.getBuffer().put(FILE_SIZE - 1, (byte) 0xff);
+
+        assertEquals(3, region.writeBack());
+
+        verify(mockChannel).write(any(ByteBuffer.class), eq(1000L));
+        verify(mockChannel).write(any(ByteBuffer.class), eq(1000L + 3 * page));
+        verify(mockChannel, times(2)).write(any(ByteBuffer.class), anyLong());
+        assertEquals(0, region.writeBack());
+    }
+
+    @Test
+    public void testView_whenUnreachable() throws IOException {
+        GlusterMappedRegion region = new GlusterMappedRegion(mockChannel, 0, GlusterMappedRegion.load(mockChannel, 0, FILE_SIZE));
+        assertFalse(region.isMapped());
+        MappedByteBuffer view = region.view();
+        assertTrue(region.isMapped());
+        view.put(1, (byte) 0xff);
+
+        view = null;
+        for (int i = 0; i < 100 && region.isMapped(); i++) {
+            System.gc();
+        }
+
+        assertFalse(region.isMapped());
+        assertEquals(1, region.writeBack());
+        verify(mockChannel).write(any(ByteBuffer.class), eq(0L));
+    }
+
+    @Test
+    public void testView_forceDoesntWriteBack() throws IOException {
+        GlusterMappedRegion region = new GlusterMappedRegion(mockChannel, 0, GlusterMappedRegion.load(mockChannel, 0, FILE_SIZE));
+        MappedByteBuffer view = region.view();
+        view.put(1, (byte) 0xff);
+
+        try {
+            view.force();
+        } catch (UnsupportedOperationException e) {
+            // Java 8, where a buffer that isn't backed by a file can't be forced
+        }
+
+        verify(mockChannel, never()).write(any(ByteBuffer.class), anyLong());
+        assertEquals(1, region.writeBack());
+    }
+
+    @Test
+    public void testReadOnly_isShared() throws IOException {
+        stat stat = new stat();
+        stat.st_size = FILE_SIZE;
+        doReturn(stat).when(mockChannel).fstat();
+        doReturn(mockPath).when(mockChannel).getPath();
+        doReturn(URI.create("gluster://server:volume/shared")).when(mockPath).toUri();
+
+        MappedByteBuffer first = GlusterMappedRegion.readOnly(mockChannel, 0, 100);
+        MappedByteBuffer second = GlusterMappedRegion.readOnly(mockChannel, 0, 100);
+
+        assertTrue(first.isReadOnly());
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        verify(mockChannel, times(1)).read(any(ByteBuffer.class), eq(0L));
+
+        stat.mtime = 1;
+        GlusterMappedRegion.readOnly(mockChannel, 0, 100);
+        verify(mockChannel, times(2)).read(any(ByteBuffer.class), eq(0L));
+    }
+}
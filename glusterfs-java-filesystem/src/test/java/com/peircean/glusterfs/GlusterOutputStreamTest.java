@@ -0,0 +1,82 @@
+package com.peircean.glusterfs;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GlusterFileChannel.class, GlusterOutputStream.class})
+public class GlusterOutputStreamTest {
+    private GlusterFileChannel mockChannel;
+    private GlusterOutputStream stream;
+
+    @Before
+    public void setUp() {
+        mockChannel = PowerMockito.mock(GlusterFileChannel.class);
+        stream = new GlusterOutputStream(mockChannel);
+    }
+
+    private void writesAtMost(final int count) throws IOException {
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int written = Math.min(count, buffer.remaining());
+                buffer.position(buffer.position() + written);
+                return written;
+            }
+        }).when(mockChannel).write(any(ByteBuffer.class));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        writesAtMost(3);
+
+        stream.write(new byte[10], 2, 7);
+
+        verify(mockChannel, times(3)).write(any(ByteBuffer.class));
+    }
+
+    @Test
+    public void testWrite_singleByte() throws IOException {
+        writesAtMost(3);
+        stream.write(42);
+        verify(mockChannel).write(any(ByteBuffer.class));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrite_whenWriteFails() throws IOException {
+        doReturn(0).when(mockChannel).write(any(ByteBuffer.class));
+        stream.write(new byte[10]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testWrite_whenOutOfBounds() throws IOException {
+        stream.write(new byte[10], -1, 5);
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        stream.flush();
+        verify(mockChannel).guardClosed();
+        verify(mockChannel).flushWriteBehind();
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        PowerMockito.doNothing().when(mockChannel).close();
+        stream.close();
+        verify(mockChannel).close();
+    }
+}
@@ -0,0 +1,168 @@
+package com.peircean.glusterfs;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GlusterParallelCopyTest {
+
+    private GlusterParallelCopy parallelCopy = new GlusterParallelCopy();
+
+    @Test
+    public void testAccepts() {
+        assertFalse(parallelCopy.accepts(GlusterParallelCopy.DEFAULT_THRESHOLD - 1));
+        assertTrue(parallelCopy.accepts(GlusterParallelCopy.DEFAULT_THRESHOLD));
+
+        parallelCopy.setParallelism(1);
+        assertFalse(parallelCopy.accepts(GlusterParallelCopy.DEFAULT_THRESHOLD));
+    }
+
+    @Test
+    public void testSplit() {
+        long size = 4 * GlusterParallelCopy.MIN_RANGE + 3;
+
+        List<long[]> ranges = parallelCopy.split(size);
+
+        assertEquals(4, ranges.size());
+        long expectedStart = 0;
+        for (long[] range : ranges) {
+            assertEquals(expectedStart, range[0]);
+            expectedStart += range[1];
+        }
+        assertEquals(size, expectedStart);
+    }
+
+    @Test
+    public void testSplit_whenSmall() {
+        List<long[]> ranges = parallelCopy.split(GlusterParallelCopy.MIN_RANGE + 1);
+
+        assertEquals(2, ranges.size());
+        assertEquals(GlusterParallelCopy.MIN_RANGE, ranges.get(0)[1]);
+        assertEquals(1, ranges.get(1)[1]);
+        assertTrue(parallelCopy.split(0).isEmpty());
+    }
+
+    @Test
+    public void testBufferSize() {
+        parallelCopy.setMemoryBudget(64 * 1024 * 1024);
+        assertEquals(16 * 1024 * 1024, parallelCopy.bufferSize(4));
+
+        parallelCopy.setMemoryBudget(1024);
+        assertEquals(GlusterParallelCopy.MIN_BUFFER, parallelCopy.bufferSize(4));
+    }
+
+    @Test
+    public void testCopyRange() throws IOException {
+        FileChannel in = mock(FileChannel.class);
+        FileChannel out = mock(FileChannel.class);
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int read = buffer.remaining();
+                buffer.position(buffer.limit());
+                return read;
+            }
+        }).when(in).read(any(ByteBuffer.class), anyLong());
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int written = buffer.remaining();
+                buffer.position(buffer.limit());
+                return written;
+            }
+        }).when(out).write(any(ByteBuffer.class), anyLong());
+
+        long copied = GlusterParallelCopy.copyRange(in, out, 1000, 2500, 1024);
+
+        assertEquals(2500, copied);
+        verify(in).read(any(ByteBuffer.class), eq(1000L));
+        verify(in).read(any(ByteBuffer.class), eq(2024L));
+        verify(in).read(any(ByteBuffer.class), eq(3048L));
+        verify(out).write(any(ByteBuffer.class), eq(3048L));
+    }
+
+    @Test
+    public void testCopyRange_whenSourceEnds() throws IOException {
+        FileChannel in = mock(FileChannel.class);
+        FileChannel out = mock(FileChannel.class);
+        when(in.read(any(ByteBuffer.class), anyLong())).thenReturn(-1);
+
+        long copied = GlusterParallelCopy.copyRange(in, out, 0, 100, 1024);
+
+        assertEquals(0, copied);
+        verify(out, never()).write(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCopyRanges_whenRangeFails() throws IOException {
+        Path source = mock(Path.class);
+        Path target = mock(Path.class);
+        File file = File.createTempFile("parallel-copy", null);
+        file.deleteOnExit();
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        GlusterParallelCopy spy = spy(parallelCopy);
+        doReturn(channel).when(spy).open(eq(target), any(EnumSet.class), any(FileAttribute.class));
+        doThrow(new IOException()).when(spy).open(source, EnumSet.of(StandardOpenOption.READ));
+
+        spy.copyRanges(source, target, 2 * GlusterParallelCopy.MIN_RANGE, null);
+    }
+
+    @Test
+    public void testCopyRanges_whenSourceShrinks() throws IOException {
+        File source = File.createTempFile("parallel-copy", null);
+        source.deleteOnExit();
+        File target = File.createTempFile("parallel-copy", null);
+        target.deleteOnExit();
+        Files.write(source.toPath(), new byte[10]);
+
+        try {
+            parallelCopy.copyRanges(source.toPath(), target.toPath(), 20,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("10 of 20"));
+        }
+    }
+
+    @Test
+    public void testCopy_keepsSourcePermissions() throws IOException {
+        Path directory = Files.createTempDirectory("parallel-copy");
+        Path source = directory.resolve("source");
+        Path target = directory.resolve("target");
+        Files.write(source, new byte[]{1, 2, 3});
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwx------");
+        Files.setPosixFilePermissions(source, permissions);
+        try {
+            assertEquals(3, parallelCopy.copy(source, target));
+
+            assertEquals(permissions, Files.getPosixFilePermissions(target));
+            assertEquals(3, Files.size(target));
+        } finally {
+            Files.deleteIfExists(target);
+            Files.delete(source);
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.peircean.glusterfs;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GlusterReadAheadTest {
+    private static final long FILE_SIZE = 1024 * 1024;
+
+    @Mock
+    private GlusterFileChannel mockChannel;
+
+    private GlusterReadAhead readAhead;
+
+    @Before
+    public void setUp() {
+        readAhead = new GlusterReadAhead(mockChannel, 256 * 1024);
+        doAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                long offset = (Long) invocation.getArguments()[1];
+                long read = Math.max(0, Math.min(buffer.remaining(), FILE_SIZE - offset));
+                for (int i = 0; i < read; i++) {
+                    buffer.put((byte) (offset + i));
+                }
+                return read;
+            }
+        }).when(mockChannel).readBuffer(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void testRead_whenNotYetSequential() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        long read = readAhead.read(buffer, 100);
+
+        assertEquals(8192, read);
+        assertEquals(8292, readAhead.getExpected());
+        assertNull(readAhead.getCurrent());
+        verify(mockChannel).readBuffer(buffer, 100);
+    }
+
+    @Test
+    public void testRead_whenSequential() throws Exception {
+        for (int i = 0; i < GlusterReadAhead.SEQUENTIAL_READS; i++) {
+            readAhead.read(ByteBuffer.allocate(8192), i * 8192);
+        }
+
+        long offset = GlusterReadAhead.SEQUENTIAL_READS * 8192;
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long read = readAhead.read(buffer, offset);
+
+        assertEquals(8192, read);
+        assertEquals((byte) offset, buffer.get(0));
+        assertEquals((byte) (offset + 8191), buffer.get(8191));
+        assertEquals(offset, readAhead.getCurrentStart());
+        assertEquals(GlusterReadAhead.MIN_WINDOW, readAhead.getCurrent().capacity());
+        assertEquals(2 * GlusterReadAhead.MIN_WINDOW, readAhead.getWindow());
+        assertEquals(offset + GlusterReadAhead.MIN_WINDOW, readAhead.getPendingStart());
+        assertNotNull(readAhead.getPending());
+
+        readAhead.read(ByteBuffer.allocate(8192), offset + 8192);
+        verify(mockChannel, times(GlusterReadAhead.SEQUENTIAL_READS)).readBuffer(argThat(new HeapBuffer()), anyLong());
+
+        readAhead.close();
+    }
+
+    @Test
+    public void testRead_acrossWindows() throws IOException {
+        long offset = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(100000);
+        while (offset < FILE_SIZE) {
+            buffer.clear();
+            long read = readAhead.read(buffer, offset);
+            assertTrue(read > 0);
+            for (int i = 0; i < read; i++) {
+                assertEquals((byte) (offset + i), buffer.get(i));
+            }
+            offset += read;
+        }
+        assertEquals(FILE_SIZE, offset);
+        assertEquals(256 * 1024, readAhead.getWindow());
+
+        buffer.clear();
+        assertEquals(0, readAhead.read(buffer, offset));
+        readAhead.close();
+    }
+
+    @Test
+    public void testRead_whenRandom() throws IOException {
+        for (int i = 0; i <= GlusterReadAhead.SEQUENTIAL_READS; i++) {
+            readAhead.read(ByteBuffer.allocate(8192), i * 8192);
+        }
+        assertNotNull(readAhead.getCurrent());
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long read = readAhead.read(buffer, 500000);
+
+        assertEquals(4096, read);
+        assertNull(readAhead.getCurrent());
+        assertNull(readAhead.getPending());
+        assertEquals(1, readAhead.getSequentialReads());
+        assertEquals(GlusterReadAhead.MIN_WINDOW, readAhead.getWindow());
+        verify(mockChannel).readBuffer(buffer, 500000);
+        readAhead.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_whenReadFails() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        doReturn(-1L).when(mockChannel).readBuffer(buffer, 0);
+        readAhead.read(buffer, 0);
+    }
+
+    @Test
+    public void testRead_afterSkipWithinWindow() throws IOException {
+        for (int i = 0; i <= GlusterReadAhead.SEQUENTIAL_READS; i++) {
+            readAhead.read(ByteBuffer.allocate(8192), i * 8192);
+        }
+        long offset = (GlusterReadAhead.SEQUENTIAL_READS + 1) * 8192 + 1000;
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+
+        assertEquals(100, readAhead.read(buffer, offset));
+
+        assertEquals((byte) offset, buffer.get(0));
+        assertNotNull(readAhead.getCurrent());
+        assertEquals(offset + 100, readAhead.getExpected());
+        readAhead.close();
+    }
+
+    @Test
+    public void testSkipTo() throws IOException {
+        assertFalse(readAhead.skipTo(0));
+        for (int i = 0; i <= GlusterReadAhead.SEQUENTIAL_READS; i++) {
+            readAhead.read(ByteBuffer.allocate(8192), i * 8192);
+        }
+        long end = readAhead.getCurrentStart() + readAhead.getCurrent().limit();
+
+        assertFalse(readAhead.skipTo(readAhead.getExpected() - 1));
+        assertFalse(readAhead.skipTo(end + 1));
+        assertTrue(readAhead.skipTo(end));
+        assertEquals(end, readAhead.getExpected());
+        readAhead.close();
+    }
+
+    @Test
+    public void testDiscard() throws IOException {
+        for (int i = 0; i <= GlusterReadAhead.SEQUENTIAL_READS; i++) {
+            readAhead.read(ByteBuffer.allocate(8192), i * 8192);
+        }
+
+        readAhead.discard();
+
+        assertNull(readAhead.getCurrent());
+        assertNull(readAhead.getPending());
+        assertEquals(-1, readAhead.getExpected());
+        readAhead.close();
+        assertTrue(readAhead.getAbandoned().isEmpty());
+    }
+
+    @Test
+    public void testClose_releasesWindows() throws IOException {
+        long inUse = GlusterBufferPool.getInstance().getInUseBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(100000);
+        for (long offset = 0; offset < FILE_SIZE / 2; offset += buffer.limit()) {
+            buffer.clear();
+            readAhead.read(buffer, offset);
+        }
+        readAhead.read(ByteBuffer.allocate(10), 10);
+
+        readAhead.close();
+
+        assertEquals(inUse, GlusterBufferPool.getInstance().getInUseBytes());
+    }
+
+    @Test
+    public void testFetch_whenEndOfFile() throws IOException {
+        ByteBuffer fetched = readAhead.fetch(FILE_SIZE - 10, 100);
+        assertEquals(10, fetched.limit());
+        assertTrue(fetched.isDirect());
+        GlusterBufferPool.getInstance().release(fetched);
+    }
+
+    private static class HeapBuffer extends org.mockito.ArgumentMatcher<ByteBuffer> {
+        @Override
+        public boolean matches(Object argument) {
+            return !((ByteBuffer) argument).isDirect();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.*;
+
+public class GlusterStatCacheTest {
+    private GlusterStatCache cache = new GlusterStatCache();
+    private stat stat = new stat();
+
+    @Before
+    public void setUp() {
+        cache.setTtl(60000);
+    }
+
+    @Test
+    public void testGet() {
+        cache.put("/a", true, stat);
+
+        assertSame(stat, cache.get("/a", true));
+        assertNull(cache.get("/a", false));
+        assertNull(cache.get("/b", true));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testGet_whenOff() {
+        cache.setTtl(0);
+        cache.put("/a", true, stat);
+
+        assertNull(cache.get("/a", true));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testGet_whenExpired() throws InterruptedException {
+        cache.setTtl(1);
+        cache.put("/a", true, stat);
+        Thread.sleep(5);
+
+        assertNull(cache.get("/a", true));
+    }
+
+    @Test
+    public void testPut_dropsLeastRecentlyUsed() {
+        cache.setMaxEntries(2);
+        cache.put("/a", true, stat);
+        cache.put("/b", true, stat);
+        cache.get("/a", true);
+        cache.put("/c", true, stat);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("/a", true));
+        assertNull(cache.get("/b", true));
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.put("/", true, stat);
+        cache.put("/a", true, stat);
+        cache.put("/a/b", true, stat);
+        cache.put("/a/b/c", false, stat);
+        cache.put("/ab", true, stat);
+
+        cache.invalidate("/a/b");
+
+        assertNotNull(cache.get("/", true));
+        assertNull(cache.get("/a", true));
+        assertNull(cache.get("/a/b", true));
+        assertNull(cache.get("/a/b/c", false));
+        assertNotNull(cache.get("/ab", true));
+    }
+
+    @Test
+    public void testInvalidate_parentIsRoot() {
+        cache.put("/", true, stat);
+        cache.put("/a", true, stat);
+
+        cache.invalidate("/a");
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetTtl_whenNegative() {
+        cache.setTtl(-1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.peircean.glusterfs;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static junit.framework.Assert.*;
+
+public class GlusterTransferTest {
+
+    private static class FakeSource implements GlusterTransfer.Source {
+        private final long size;
+        private int calls;
+
+        FakeSource(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer, long offset) {
+            calls++;
+            int read = (int) Math.min(Math.min(buffer.remaining(), 300 * 1024), size - offset);
+            if (read <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < read; i++) {
+                buffer.put((byte) (offset + i));
+            }
+            return read;
+        }
+    }
+
+    private static class FakeSink implements GlusterTransfer.Sink {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final long capacity;
+
+        FakeSink(long capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public int write(ByteBuffer buffer, long offset) {
+            assertEquals(out.size(), offset);
+            int written = (int) Math.min(buffer.remaining(), capacity - out.size());
+            for (int i = 0; i < written; i++) {
+                out.write(buffer.get());
+            }
+            return written;
+        }
+    }
+
+    @Test
+    public void testCopy() throws IOException {
+        long size = 3 * GlusterTransfer.BUFFER_SIZE + 12345;
+        FakeSink sink = new FakeSink(Long.MAX_VALUE);
+
+        long copied = GlusterTransfer.copy(new FakeSource(size), sink, Long.MAX_VALUE);
+
+        assertEquals(size, copied);
+        byte[] bytes = sink.out.toByteArray();
+        assertEquals(size, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            if ((byte) i != bytes[i]) {
+                fail("Mismatch at " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testCopy_stopsAtCount() throws IOException {
+        FakeSource source = new FakeSource(10 * GlusterTransfer.BUFFER_SIZE);
+        FakeSink sink = new FakeSink(Long.MAX_VALUE);
+
+        long copied = GlusterTransfer.copy(source, sink, GlusterTransfer.BUFFER_SIZE + 10);
+
+        assertEquals(GlusterTransfer.BUFFER_SIZE + 10, copied);
+        assertEquals(GlusterTransfer.BUFFER_SIZE + 10, sink.out.size());
+    }
+
+    @Test
+    public void testCopy_whenSinkFull() throws IOException {
+        FakeSink sink = new FakeSink(1000);
+
+        long copied = GlusterTransfer.copy(new FakeSource(5000), sink, 5000);
+
+        assertEquals(1000, copied);
+    }
+
+    @Test
+    public void testCopy_whenSourceEmpty() throws IOException {
+        FakeSource source = new FakeSource(0);
+
+        long copied = GlusterTransfer.copy(source, new FakeSink(Long.MAX_VALUE), 100);
+
+        assertEquals(0, copied);
+        assertEquals(1, source.calls);
+    }
+
+    @Test(expected = IOException.class)
+    public void testCopy_whenReadFails() throws IOException {
+        GlusterTransfer.copy(new GlusterTransfer.Source() {
+            @Override
+            public int read(ByteBuffer buffer, long offset) throws IOException {
+                throw new IOException();
+            }
+        }, new FakeSink(Long.MAX_VALUE), 100);
+    }
+
+    @Test
+    public void testRelease_poolsBuffers() {
+        ByteBuffer buffer = GlusterTransfer.acquire();
+        assertTrue(buffer.isDirect());
+        assertEquals(GlusterTransfer.BUFFER_SIZE, buffer.capacity());
+
+        long inUse = GlusterBufferPool.getInstance().getInUseBytes();
+
+        GlusterTransfer.release(buffer);
+
+        assertEquals(inUse - GlusterTransfer.BUFFER_SIZE, GlusterBufferPool.getInstance().getInUseBytes());
+    }
+
+    @Test
+    public void testChunkSize() {
+        assertEquals(GlusterTransfer.BUFFER_SIZE, GlusterTransfer.chunkSize(0));
+        assertEquals(GlusterTransfer.BUFFER_SIZE, GlusterTransfer.chunkSize(4096));
+        assertEquals(GlusterTransfer.BUFFER_SIZE - GlusterTransfer.BUFFER_SIZE % 3000, GlusterTransfer.chunkSize(3000));
+        assertEquals(GlusterTransfer.BUFFER_SIZE, GlusterTransfer.chunkSize(4 * GlusterTransfer.BUFFER_SIZE));
+    }
+}
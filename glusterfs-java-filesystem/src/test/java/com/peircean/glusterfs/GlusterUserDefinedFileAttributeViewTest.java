@@ -0,0 +1,182 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.UtilJNI;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GLFS.class, UtilJNI.class, GlusterUserDefinedFileAttributeView.class})
+public class GlusterUserDefinedFileAttributeViewTest {
+    private static final int SIZE = GlusterUserDefinedFileAttributeView.INITIAL_SIZE;
+    private long volptr = 123l;
+    private GlusterUserDefinedFileAttributeView view;
+
+    @Before
+    public void setUp() {
+        GlusterFileSystem fileSystem = new GlusterFileSystem(new GlusterFileSystemProvider(), "host", "vol", volptr);
+        fileSystem.getHandleCache().setMaxHandles(0);
+        view = new GlusterUserDefinedFileAttributeView(new GlusterPath(fileSystem, "/a"), true);
+        mockStatic(GLFS.class);
+        mockStatic(UtilJNI.class);
+    }
+
+    /**
+     * Leaves bytes in the pooled buffer the view's next call on this thread will be handed, standing in for what
+     * gfapi would have written there.
+     */
+    private void prefill(byte[] bytes) {
+        GlusterBufferPool pool = GlusterBufferPool.getInstance();
+        ByteBuffer buffer = pool.acquire(SIZE);
+        buffer.put(bytes);
+        pool.release(buffer);
+    }
+
+    @Test
+    public void testList() throws IOException {
+        byte[] names = "user.a\0trusted.x\0user.bb\0".getBytes(StandardCharsets.UTF_8);
+        prefill(names);
+        when(GLFS.glfs_listxattr(eq(volptr), eq("/a"), anyLong(), eq((long) SIZE))).thenReturn((long) names.length);
+
+        assertEquals(Arrays.asList("a", "bb"), view.list());
+
+        verifyStatic(times(1));
+        GLFS.glfs_listxattr(eq(volptr), eq("/a"), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testList_whenLargerThanBuffer() throws IOException {
+        when(GLFS.glfs_listxattr(eq(volptr), eq("/a"), anyLong(), eq((long) SIZE))).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ERANGE);
+        when(GLFS.glfs_listxattr(volptr, "/a", 0, 0)).thenReturn(3L * SIZE);
+        when(GLFS.glfs_listxattr(eq(volptr), eq("/a"), anyLong(), eq(3L * SIZE))).thenReturn(0L);
+
+        assertTrue(view.list().isEmpty());
+
+        verifyStatic();
+        GLFS.glfs_listxattr(eq(volptr), eq("/a"), anyLong(), eq(3L * SIZE));
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testList_whenNoSuchFile() throws IOException {
+        when(GLFS.glfs_listxattr(eq(volptr), eq("/a"), anyLong(), anyLong())).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENOENT);
+
+        view.list();
+    }
+
+    @Test
+    public void testSize() throws IOException {
+        when(GLFS.glfs_getxattr(volptr, "/a", "user.x", 0, 0)).thenReturn(12L);
+        assertEquals(12, view.size("x"));
+    }
+
+    @Test
+    public void testRead_intoDirectBuffer() throws IOException {
+        ByteBuffer dst = ByteBuffer.allocateDirect(16);
+        dst.position(4);
+        long address = GlusterFileChannel.bufferAddress(dst);
+        when(GLFS.glfs_getxattr(volptr, "/a", "user.x", address, 12)).thenReturn(5L);
+
+        assertEquals(5, view.read("x", dst));
+
+        assertEquals(9, dst.position());
+        verifyStatic(times(1));
+        GLFS.glfs_getxattr(anyLong(), anyString(), anyString(), anyLong(), anyLong());
+    }
+
+    @Test(expected = FileSystemException.class)
+    public void testRead_intoDirectBuffer_whenTooSmall() throws IOException {
+        when(GLFS.glfs_getxattr(eq(volptr), eq("/a"), eq("user.x"), anyLong(), eq(2L))).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ERANGE);
+
+        view.read("x", ByteBuffer.allocateDirect(2));
+    }
+
+    @Test
+    public void testRead_intoHeapBuffer() throws IOException {
+        prefill("hello".getBytes(StandardCharsets.UTF_8));
+        when(GLFS.glfs_getxattr(eq(volptr), eq("/a"), eq("user.x"), anyLong(), eq((long) SIZE))).thenReturn(5L);
+        ByteBuffer dst = ByteBuffer.allocate(8);
+
+        assertEquals(5, view.read("x", dst));
+
+        assertEquals("hello", new String(dst.array(), 0, dst.position(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWrite_fromHeapBuffer() throws IOException {
+        ByteBuffer src = ByteBuffer.wrap("value".getBytes(StandardCharsets.UTF_8));
+        when(GLFS.glfs_setxattr(eq(volptr), eq("/a"), eq("user.x"), anyLong(), eq(5L), eq(0))).thenReturn(0);
+
+        assertEquals(5, view.write("x", src));
+
+        assertEquals(5, src.position());
+        ByteBuffer staged = GlusterBufferPool.getInstance().acquire(5);
+        byte[] bytes = new byte[5];
+        staged.get(bytes);
+        GlusterBufferPool.getInstance().release(staged);
+        assertEquals("value", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWrite_fromDirectBuffer() throws IOException {
+        ByteBuffer src = ByteBuffer.allocateDirect(8);
+        long address = GlusterFileChannel.bufferAddress(src);
+        when(GLFS.glfs_setxattr(volptr, "/a", "user.x", address, 8, 0)).thenReturn(0);
+
+        assertEquals(8, view.write("x", src));
+
+        assertEquals(8, src.position());
+    }
+
+    @Test
+    public void testDelete_dontFollowLinks() throws IOException {
+        view = new GlusterUserDefinedFileAttributeView(view.getPath(), false);
+        when(GLFS.glfs_lremovexattr(volptr, "/a", "user.x")).thenReturn(0);
+
+        view.delete("x");
+
+        verifyStatic();
+        GLFS.glfs_lremovexattr(volptr, "/a", "user.x");
+        verifyStatic(never());
+        GLFS.glfs_removexattr(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    public void testReadAll_skipsRemoved() throws IOException {
+        byte[] names = "user.a\0user.b\0".getBytes(StandardCharsets.UTF_8);
+        prefill(names);
+        when(GLFS.glfs_listxattr(eq(volptr), eq("/a"), anyLong(), eq((long) SIZE))).thenReturn((long) names.length);
+        when(GLFS.glfs_getxattr(eq(volptr), eq("/a"), eq("user.a"), anyLong(), eq((long) SIZE))).thenReturn(1L);
+        when(GLFS.glfs_getxattr(eq(volptr), eq("/a"), eq("user.b"), anyLong(), eq((long) SIZE))).thenReturn(-1L);
+        when(UtilJNI.errno()).thenReturn(GlusterErrno.ENODATA);
+
+        Map<String, byte[]> values = view.readAll();
+
+        assertEquals(1, values.size());
+        assertEquals(1, values.get("a").length);
+    }
+}
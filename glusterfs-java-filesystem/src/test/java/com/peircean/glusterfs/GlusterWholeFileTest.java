@@ -0,0 +1,213 @@
+package com.peircean.glusterfs;
+
+import com.peircean.libgfapi_jni.internal.GLFS;
+import com.peircean.libgfapi_jni.internal.structs.stat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({GLFS.class, GlusterFileChannel.class, GlusterWholeFile.class})
+public class GlusterWholeFileTest {
+    @Mock
+    private GlusterPath mockPath;
+
+    private GlusterFileChannel mockChannel;
+    private GlusterWholeFile wholeFile;
+    private long fileptr = 1234l;
+
+    @Before
+    public void setUp() throws IOException {
+        mockChannel = PowerMockito.mock(GlusterFileChannel.class);
+        wholeFile = PowerMockito.spy(new GlusterWholeFile());
+        doReturn(fileptr).when(mockChannel).getFileptr();
+        doReturn(new HashSet<OpenOption>()).when(mockChannel).getOptions();
+        PowerMockito.doNothing().when(mockChannel).close();
+        mockStatic(GLFS.class);
+    }
+
+    private void fileSize(long size) throws IOException {
+        stat stat = new stat();
+        stat.st_size = size;
+        doReturn(stat).when(mockChannel).fstat();
+        doReturn(mockChannel).when(wholeFile).open(mockPath, EnumSet.of(StandardOpenOption.READ));
+    }
+
+    @Test
+    public void testReadAllBytes() throws IOException {
+        fileSize(5);
+        when(GLFS.glfs_pread(eq(fileptr), any(byte[].class), eq(5L), eq(0L), eq(0))).thenReturn(5L);
+
+        byte[] bytes = wholeFile.readAllBytes(mockPath);
+
+        assertEquals(5, bytes.length);
+        verify(mockChannel, never()).read(any(ByteBuffer.class), anyLong());
+        verify(mockChannel).close();
+    }
+
+    @Test
+    public void testReadAllBytes_whenShortRead() throws IOException {
+        fileSize(5);
+        when(GLFS.glfs_pread(eq(fileptr), any(byte[].class), eq(5L), eq(0L), eq(0))).thenReturn(3L);
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                buffer.put((byte) 7);
+                return 1;
+            }
+        }).when(mockChannel).read(any(ByteBuffer.class), anyLong());
+
+        byte[] bytes = wholeFile.readAllBytes(mockPath);
+
+        assertArrayEquals(new byte[]{0, 0, 0, 7, 7}, bytes);
+        verify(mockChannel).read(any(ByteBuffer.class), eq(3L));
+        verify(mockChannel).read(any(ByteBuffer.class), eq(4L));
+    }
+
+    @Test
+    public void testReadAllBytes_whenFileShrinks() throws IOException {
+        fileSize(5);
+        when(GLFS.glfs_pread(eq(fileptr), any(byte[].class), eq(5L), eq(0L), eq(0))).thenReturn(3L);
+        doReturn(-1).when(mockChannel).read(any(ByteBuffer.class), anyLong());
+
+        assertEquals(3, wholeFile.readAllBytes(mockPath).length);
+    }
+
+    @Test
+    public void testReadAllBytes_whenEmpty() throws IOException {
+        fileSize(0);
+
+        assertEquals(0, wholeFile.readAllBytes(mockPath).length);
+
+        verifyStatic(never());
+        GLFS.glfs_pread(anyLong(), any(byte[].class), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadAllBytes_whenReadFails() throws IOException {
+        fileSize(5);
+        when(GLFS.glfs_pread(eq(fileptr), any(byte[].class), eq(5L), eq(0L), eq(0))).thenReturn(-1L);
+        wholeFile.readAllBytes(mockPath);
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        Set<OpenOption> options = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        doReturn(mockChannel).when(wholeFile).open(mockPath, options);
+        byte[] bytes = new byte[]{1, 2, 3};
+        when(GLFS.glfs_pwrite(fileptr, bytes, 3, 0, 0)).thenReturn(3);
+
+        wholeFile.write(mockPath, bytes, false);
+
+        verify(mockChannel).written(0, 3);
+        verify(mockChannel, never()).write(any(ByteBuffer.class), anyLong());
+        verify(mockChannel, never()).force(anyBoolean());
+        verify(mockChannel).close();
+    }
+
+    @Test
+    public void testWrite_whenSync() throws IOException {
+        doReturn(mockChannel).when(wholeFile).open(eq(mockPath), any(Set.class));
+        byte[] bytes = new byte[]{1, 2, 3};
+        when(GLFS.glfs_pwrite(fileptr, bytes, 3, 0, 0)).thenReturn(3);
+
+        wholeFile.write(mockPath, bytes, true);
+
+        verify(mockChannel).force(true);
+    }
+
+    @Test
+    public void testWrite_whenShortWrite() throws IOException {
+        doReturn(mockChannel).when(wholeFile).open(eq(mockPath), any(Set.class));
+        byte[] bytes = new byte[]{1, 2, 3};
+        when(GLFS.glfs_pwrite(fileptr, bytes, 3, 0, 0)).thenReturn(2);
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                buffer.position(buffer.limit());
+                return 1;
+            }
+        }).when(mockChannel).write(any(ByteBuffer.class), eq(2L));
+
+        wholeFile.write(mockPath, bytes, false);
+
+        verify(mockChannel).write(any(ByteBuffer.class), eq(2L));
+    }
+
+    @Test
+    public void testWrite_whenAppend() throws IOException {
+        Set<OpenOption> options = new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.APPEND,
+                StandardOpenOption.WRITE));
+        doReturn(mockChannel).when(wholeFile).open(mockPath, options);
+        doReturn(options).when(mockChannel).getOptions();
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int written = buffer.remaining();
+                buffer.position(buffer.limit());
+                return written;
+            }
+        }).when(mockChannel).write(any(ByteBuffer.class));
+
+        wholeFile.write(mockPath, new byte[]{1, 2, 3}, false, StandardOpenOption.APPEND);
+
+        verify(mockChannel).write(any(ByteBuffer.class));
+        verifyStatic(never());
+        GLFS.glfs_pwrite(anyLong(), any(byte[].class), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testBatch_whenNotGluster() throws IOException {
+        File dir = Files.createTempDirectory("whole-file").toFile();
+        try {
+            Map<Path, byte[]> contents = new LinkedHashMap<Path, byte[]>();
+            for (int i = 0; i < 20; i++) {
+                contents.put(new File(dir, "file" + i).toPath(), ("content " + i).getBytes());
+            }
+            wholeFile.setParallelism(4);
+
+            wholeFile.write(contents, false);
+            Map<Path, byte[]> read = wholeFile.readAllBytes(contents.keySet());
+
+            assertEquals(new ArrayList<Path>(contents.keySet()), new ArrayList<Path>(read.keySet()));
+            for (Path path : contents.keySet()) {
+                assertArrayEquals(contents.get(path), read.get(path));
+            }
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testBatch_whenReadFails() throws IOException {
+        wholeFile.readAllBytes(Arrays.asList(Paths.get("/no/such/whole-file")));
+    }
+}
@@ -0,0 +1,168 @@
+package com.peircean.glusterfs;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GlusterWriteBehindTest {
+    private static final int SIZE = 16;
+
+    @Mock
+    private GlusterFileChannel mockChannel;
+
+    private GlusterWriteBehind writeBehind;
+    private List<Long> offsets = new ArrayList<>();
+    private ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private int result = Integer.MAX_VALUE;
+
+    @Before
+    public void setUp() {
+        writeBehind = new GlusterWriteBehind(mockChannel, SIZE, 0, false);
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                if (result <= 0) {
+                    return result;
+                }
+                offsets.add((Long) invocation.getArguments()[1]);
+                int length = buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    written.write(buffer.get());
+                }
+                return length;
+            }
+        }).when(mockChannel).writeBuffer(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void testWrite_buffersSmallWrites() throws IOException {
+        int taken = writeBehind.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), 0);
+        taken += writeBehind.write(ByteBuffer.wrap(new byte[]{4, 5}), 3);
+
+        assertEquals(5, taken);
+        assertEquals(5, writeBehind.getBuffer().position());
+        verify(mockChannel, never()).writeBuffer(any(ByteBuffer.class), anyLong());
+
+        writeBehind.flush();
+
+        assertEquals(0, writeBehind.getBuffer().position());
+        assertEquals(0L, (long) offsets.get(0));
+        assertEquals(5, written.size());
+        assertEquals(5, written.toByteArray()[4]);
+    }
+
+    @Test
+    public void testWrite_flushesAtAlignedBoundary() throws IOException {
+        writeBehind.write(ByteBuffer.wrap(new byte[10]), 10);
+
+        assertEquals(6, written.size());
+        assertEquals(10L, (long) offsets.get(0));
+        assertEquals(4, writeBehind.getBuffer().position());
+        assertEquals(16, writeBehind.getStart());
+    }
+
+    @Test
+    public void testWrite_whenNotContiguous() throws IOException {
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 0);
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 100);
+
+        assertEquals(1, offsets.size());
+        assertEquals(0L, (long) offsets.get(0));
+        assertEquals(100, writeBehind.getStart());
+        assertEquals(4, writeBehind.getBuffer().position());
+    }
+
+    @Test
+    public void testWrite_whenLargerThanBuffer() throws IOException {
+        ByteBuffer large = ByteBuffer.wrap(new byte[SIZE]);
+
+        int taken = writeBehind.write(large, 0);
+
+        assertEquals(0, taken);
+        assertEquals(SIZE, large.remaining());
+        verify(mockChannel, never()).writeBuffer(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void testFlushIfDue_reportsFailureOnNextCall() throws IOException {
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 0);
+        result = -1;
+
+        writeBehind.flushIfDue();
+
+        assertNotNull(writeBehind.getFailure());
+        assertEquals(0, writeBehind.getBuffer().position());
+        try {
+            writeBehind.write(ByteBuffer.wrap(new byte[4]), 4);
+            fail();
+        } catch (IOException e) {
+            assertNull(writeBehind.getFailure());
+        }
+    }
+
+    @Test
+    public void testFlushIfDue_whileStillWriting() throws IOException {
+        writeBehind = new GlusterWriteBehind(mockChannel, SIZE, 1000, false);
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 0);
+        writeBehind.setFirstWrite(System.currentTimeMillis() - 2000);
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 4);
+
+        writeBehind.flushIfDue();
+
+        assertEquals(8, written.size());
+        writeBehind.close();
+    }
+
+    @Test
+    public void testFlushIfDue_whenRecent() throws IOException {
+        writeBehind = new GlusterWriteBehind(mockChannel, SIZE, 1000, false);
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 0);
+
+        writeBehind.flushIfDue();
+
+        assertEquals(0, written.size());
+        writeBehind.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testFlush_whenNothingWritten() throws IOException {
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 0);
+        result = 0;
+
+        try {
+            writeBehind.flush();
+            fail();
+        } catch (IOException e) {
+            assertEquals(0, writeBehind.getBuffer().position());
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        writeBehind.write(ByteBuffer.wrap(new byte[4]), 0);
+
+        writeBehind.close();
+        writeBehind.close();
+
+        assertTrue(writeBehind.isClosed());
+        assertEquals(1, offsets.size());
+        assertEquals(4, written.size());
+    }
+}